@@ -1,48 +1,47 @@
 package Diadoc.Api;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.KeyStore;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.Signature;
+import java.security.SignatureException;
 import java.security.cert.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
 
+import Diadoc.Api.sign.CmsSignerCertificate;
 import Diadoc.Api.sign.GOSTSignInfoProvider;
 import org.apache.commons.codec.binary.Hex;
 
 import ru.CryptoPro.JCP.JCP;
-import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.CMSVersion;
-import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.CertificateChoices;
-import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.CertificateSet;
-import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.ContentInfo;
-import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.DigestAlgorithmIdentifier;
-import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.DigestAlgorithmIdentifiers;
-import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.EncapsulatedContentInfo;
-import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.IssuerAndSerialNumber;
-import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.SignatureAlgorithmIdentifier;
-import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.SignatureValue;
-import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.SignedData;
-import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.SignerIdentifier;
-import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.SignerInfo;
-import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.SignerInfos;
-import ru.CryptoPro.JCP.ASN.PKIX1Explicit88.CertificateSerialNumber;
-import ru.CryptoPro.JCP.ASN.PKIX1Explicit88.Name;
 import ru.CryptoPro.JCP.params.AlgIdSpec;
-import ru.CryptoPro.JCP.params.OID;
-import com.objsys.asn1j.runtime.Asn1BerDecodeBuffer;
-import com.objsys.asn1j.runtime.Asn1BerEncodeBuffer;
-import com.objsys.asn1j.runtime.Asn1Null;
-import com.objsys.asn1j.runtime.Asn1ObjectIdentifier;
-import com.objsys.asn1j.runtime.Asn1OctetString;
 
 public class CertificateHelper {
 
-    private static final String STR_CMS_OID_DATA = "1.2.840.113549.1.7.1";
-    private static final String STR_CMS_OID_SIGNED = "1.2.840.113549.1.7.2";
+    private static final int SIGN_STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final long SIGN_FILE_CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final long KEY_STORE_RELOAD_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private static final Map<X509Certificate, String> thumbprints = Collections.synchronizedMap(new WeakHashMap<>());
+    private static final Object keyStoreLock = new Object();
+    private static KeyStore keyStore;
+    private static Map<String, String> keyStoreAliases;
+    private static long keyStoreLoadedAt;
+    private static final Map<String, CachedPrivateKey> privateKeys = new HashMap<>();
 
     public static byte[] createCMS(
             byte[] buffer,
@@ -50,64 +49,15 @@ public class CertificateHelper {
             Certificate cert,
             boolean detached,
             GOSTSignInfoProvider gostSignInfoProvider) throws Exception {
-        final ContentInfo all = new ContentInfo();
-        all.contentType = new Asn1ObjectIdentifier(new OID(STR_CMS_OID_SIGNED).value);
-        final SignedData cms = new SignedData();
-        all.content = cms;
-        cms.version = new CMSVersion(1);
-        // digest
-        cms.digestAlgorithms = new DigestAlgorithmIdentifiers(1);
-        final DigestAlgorithmIdentifier a = new DigestAlgorithmIdentifier(
-                new OID(gostSignInfoProvider.getDigestOID()).value);
-        a.parameters = new Asn1Null();
-        cms.digestAlgorithms.elements[0] = a;
-        if (detached) {
-            cms.encapContentInfo = new EncapsulatedContentInfo(
-                    new Asn1ObjectIdentifier(
-                            new OID(STR_CMS_OID_DATA).value), null);
-        } else {
-            cms.encapContentInfo = new EncapsulatedContentInfo(
-                    new Asn1ObjectIdentifier(
-                            new OID(STR_CMS_OID_DATA).value),
-                    new Asn1OctetString(buffer));
-        }
-        // certificate
-        cms.certificates = new CertificateSet(1);
-        final ru.CryptoPro.JCP.ASN.PKIX1Explicit88.Certificate certificate = new ru.CryptoPro.JCP.ASN.PKIX1Explicit88.Certificate();
-        final Asn1BerDecodeBuffer decodeBuffer = new Asn1BerDecodeBuffer(
-                cert.getEncoded());
-        certificate.decode(decodeBuffer);
-        cms.certificates.elements = new CertificateChoices[1];
-        cms.certificates.elements[0] = new CertificateChoices();
-        cms.certificates.elements[0].set_certificate(certificate);
-
-        // signer info
-        cms.signerInfos = new SignerInfos(1);
-        cms.signerInfos.elements[0] = new SignerInfo();
-        cms.signerInfos.elements[0].version = new CMSVersion(1);
-        cms.signerInfos.elements[0].sid = new SignerIdentifier();
-
-        final byte[] encodedName = ((X509Certificate) cert)
-                .getIssuerX500Principal().getEncoded();
-        final Asn1BerDecodeBuffer nameBuf = new Asn1BerDecodeBuffer(encodedName);
-        final Name name = new Name();
-        name.decode(nameBuf);
-
-        final CertificateSerialNumber num = new CertificateSerialNumber(
-                ((X509Certificate) cert).getSerialNumber());
-        cms.signerInfos.elements[0].sid
-                .set_issuerAndSerialNumber(new IssuerAndSerialNumber(name, num));
-        cms.signerInfos.elements[0].digestAlgorithm = new DigestAlgorithmIdentifier(
-                new OID(gostSignInfoProvider.getDigestOID()).value);
-        cms.signerInfos.elements[0].digestAlgorithm.parameters = new Asn1Null();
-        cms.signerInfos.elements[0].signatureAlgorithm = new SignatureAlgorithmIdentifier(
-                new OID(gostSignInfoProvider.getSignOID()).value);
-        cms.signerInfos.elements[0].signatureAlgorithm.parameters = new Asn1Null();
-        cms.signerInfos.elements[0].signature = new SignatureValue(sign);
-        // encode
-        final Asn1BerEncodeBuffer asnBuf = new Asn1BerEncodeBuffer();
-        all.encode(asnBuf, true);
-        return asnBuf.getMsgCopy();
+        return createCMS(buffer, sign, new CmsSignerCertificate((X509Certificate) cert, gostSignInfoProvider), detached);
+    }
+
+    public static byte[] createCMS(
+            byte[] buffer,
+            byte[] sign,
+            CmsSignerCertificate signerCertificate,
+            boolean detached) throws Exception {
+        return signerCertificate.createCMS(buffer, sign, detached);
     }
 
     public static byte[] CMSSign(byte[] data, PrivateKey key, Certificate cert,
@@ -124,6 +74,54 @@ public class CertificateHelper {
         return createCMS(data, sign, cert, detached, signatureInfoProvider);
     }
 
+    /**
+     * Detached signature of the stream content, the content is not kept in memory
+     */
+    public static byte[] CMSSign(InputStream data, PrivateKey key, Certificate cert) throws Exception {
+        var signatureInfoProvider = new GOSTSignInfoProvider((X509Certificate) cert);
+        final Signature signature = signatureInfoProvider.getSignatureInstance();
+
+        signature.initSign(key);
+        updateSignature(signature, data);
+        return createCMS(null, signature.sign(), cert, true, signatureInfoProvider);
+    }
+
+    /**
+     * Detached signature of the file content, the file is read in memory-mapped chunks
+     */
+    public static byte[] CMSSign(Path file, PrivateKey key, Certificate cert) throws Exception {
+        var signatureInfoProvider = new GOSTSignInfoProvider((X509Certificate) cert);
+        final Signature signature = signatureInfoProvider.getSignatureInstance();
+
+        signature.initSign(key);
+        updateSignature(signature, file);
+        return createCMS(null, signature.sign(), cert, true, signatureInfoProvider);
+    }
+
+    public static byte[] sign(X509Certificate cert, InputStream data) throws Exception {
+        return CMSSign(data, getPrivateKey(cert, null), cert);
+    }
+
+    public static byte[] sign(X509Certificate cert, Path file) throws Exception {
+        return CMSSign(file, getPrivateKey(cert, null), cert);
+    }
+
+    public static void updateSignature(Signature signature, InputStream data) throws IOException, SignatureException {
+        var buffer = new byte[SIGN_STREAM_BUFFER_SIZE];
+        int read;
+        while ((read = data.read(buffer)) != -1)
+            signature.update(buffer, 0, read);
+    }
+
+    public static void updateSignature(Signature signature, Path file) throws IOException, SignatureException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            for (long offset = 0; offset < length; offset += SIGN_FILE_CHUNK_SIZE) {
+                signature.update(channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(SIGN_FILE_CHUNK_SIZE, length - offset)));
+            }
+        }
+    }
+
     public static byte[] sign(X509Certificate cert, byte[] data) throws Exception {
 
         PrivateKey privateKey = getPrivateKey(cert, null);
@@ -134,30 +132,82 @@ public class CertificateHelper {
 
     public static PrivateKey getPrivateKey(X509Certificate cert, char[] password) {
         try {
+            var thumbprint = getThumbPrint(cert);
+            synchronized (keyStoreLock) {
+                var cachedKey = privateKeys.get(thumbprint);
+                if (cachedKey != null && Arrays.equals(cachedKey.password, password))
+                    return cachedKey.key;
+
+                var alias = getKeyStoreAlias(thumbprint, false);
+                //the container may have been added after the store was loaded,
+                //misses reload the store at most once per interval, so unknown certificates do not rescan it on every call
+                if (alias == null && System.nanoTime() - keyStoreLoadedAt >= KEY_STORE_RELOAD_INTERVAL_NANOS)
+                    alias = getKeyStoreAlias(thumbprint, true);
+                if (alias == null)
+                    return null;
+
+                var key = (PrivateKey) keyStore.getKey(alias, password);
+                if (key != null)
+                    privateKeys.put(thumbprint, new CachedPrivateKey(password, key));
+                return key;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Drops the loaded key store and cached private keys, e.g. after a container was removed or its password changed
+     */
+    public static void invalidateKeyCache() {
+        synchronized (keyStoreLock) {
+            keyStore = null;
+            keyStoreAliases = null;
+            privateKeys.clear();
+        }
+    }
+
+    public static void invalidateKeyCache(X509Certificate cert) throws NoSuchAlgorithmException, CertificateEncodingException {
+        var thumbprint = getThumbPrint(cert);
+        synchronized (keyStoreLock) {
+            privateKeys.remove(thumbprint);
+        }
+    }
+
+    private static String getKeyStoreAlias(String thumbprint, boolean reload) throws Exception {
+        if (keyStore == null || reload) {
             KeyStore keystore = KeyStore.getInstance("HDImageStore");
             keystore.load(null, null);
+            Map<String, String> aliases = new HashMap<>();
             for (Enumeration<String> en = keystore.aliases(); en.hasMoreElements(); ) {
                 String s = en.nextElement();
                 if (keystore.isKeyEntry(s)) {
                     Certificate kcerts[] = keystore.getCertificateChain(s);
-                    if (kcerts[0] instanceof X509Certificate) {
-                        X509Certificate x509 = (X509Certificate) kcerts[0];
-                        if (getThumbPrint(x509).startsWith(getThumbPrint(cert)))
-                            return (PrivateKey) keystore.getKey(s, password);
-                    }
+                    if (kcerts != null && kcerts[0] instanceof X509Certificate)
+                        aliases.putIfAbsent(getThumbPrint((X509Certificate) kcerts[0]), s);
                 }
                 if (keystore.isCertificateEntry(s)) {
                     Certificate c = keystore.getCertificate(s);
-                    if (c instanceof X509Certificate) {
-                        if (getThumbPrint((X509Certificate) c).startsWith(getThumbPrint(cert)))
-                            return (PrivateKey) keystore.getKey(s, password);
-                    }
+                    if (c instanceof X509Certificate)
+                        aliases.putIfAbsent(getThumbPrint((X509Certificate) c), s);
                 }
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+            keyStore = keystore;
+            keyStoreAliases = aliases;
+            keyStoreLoadedAt = System.nanoTime();
+        }
+        return keyStoreAliases.get(thumbprint);
+    }
+
+    private static class CachedPrivateKey {
+        private final char[] password;
+        private final PrivateKey key;
+
+        CachedPrivateKey(char[] password, PrivateKey key) {
+            this.password = password != null ? password.clone() : null;
+            this.key = key;
         }
-        return null;
     }
 
     public static String CertificateToString(X509Certificate certificate) {
@@ -174,6 +224,16 @@ public class CertificateHelper {
 
     public static String getThumbPrint(X509Certificate cert)
             throws NoSuchAlgorithmException, CertificateEncodingException {
+        var thumbprint = thumbprints.get(cert);
+        if (thumbprint == null) {
+            thumbprint = computeThumbPrint(cert);
+            thumbprints.put(cert, thumbprint);
+        }
+        return thumbprint;
+    }
+
+    private static String computeThumbPrint(X509Certificate cert)
+            throws NoSuchAlgorithmException, CertificateEncodingException {
         MessageDigest md = MessageDigest.getInstance("SHA-1");
         byte[] der = cert.getEncoded();
         md.update(der);
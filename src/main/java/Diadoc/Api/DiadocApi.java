@@ -42,12 +42,14 @@ import Diadoc.Api.sign.SignClient;
 import Diadoc.Api.template.TemplateClient;
 import Diadoc.Api.user.UserClient;
 import Diadoc.Api.httpClient.DiadocHttpClient;
+import Diadoc.Api.httpClient.DiadocHttpClientConfig;
 import Diadoc.Api.httpClient.FileContent;
 import Diadoc.Api.httpClient.GeneratedFile;
 import org.apache.http.HttpHost;
 import org.jetbrains.annotations.Nullable;
 
 import javax.mail.internet.ParseException;
+import java.io.Closeable;
 import java.io.IOException;
 import java.security.cert.X509Certificate;
 import java.util.*;
@@ -58,7 +60,7 @@ import static Diadoc.Api.Proto.Departments.DepartmentToUpdateProtos.*;
 import static Diadoc.Api.Proto.GetOrganizationsByInnListProtos.*;
 import static Diadoc.Api.Proto.Invoicing.InvoiceInfoProtos.*;
 
-public class DiadocApi {
+public class DiadocApi implements Closeable {
 
     private AuthManager authManager;
     private AuthenticateClient authClient;
@@ -79,6 +81,7 @@ public class DiadocApi {
     private DocumentTypeClient documentTypeClient;
     private DocflowClient docflowClient;
     private DocflowHttpApiV3 docflow;
+    private DiadocHttpClient diadocHttpClient;
 
     @Deprecated
     public boolean IsAuthenticated() {
@@ -91,11 +94,18 @@ public class DiadocApi {
     }
 
     public DiadocApi(String apiClientId, String url, @Nullable HttpHost proxyHost) {
+        this(apiClientId, url, proxyHost, new DiadocHttpClientConfig());
+    }
+
+    public DiadocApi(String apiClientId, String url, @Nullable HttpHost proxyHost, DiadocHttpClientConfig httpClientConfig) {
         if (url == null) {
             throw new IllegalArgumentException("url");
         }
+        if (httpClientConfig == null) {
+            throw new IllegalArgumentException("httpClientConfig");
+        }
         authManager = new AuthManager(apiClientId);
-        DiadocHttpClient diadocHttpClient = new DiadocHttpClient(authManager.getCredentialsProvider(), url, proxyHost);
+        diadocHttpClient = new DiadocHttpClient(authManager.getCredentialsProvider(), url, proxyHost, httpClientConfig);
         authClient = new AuthenticateClient(authManager, diadocHttpClient);
         organizationClient = new OrganizationClient(diadocHttpClient);
         departmentClient = new DepartmentClient(diadocHttpClient);
@@ -121,6 +131,21 @@ public class DiadocApi {
         this(apiClientId, url, null);
     }
 
+    /**
+     * Closes the http client shared by all clients of the api, with its connection pools and threads
+     */
+    @Override
+    public void close() throws IOException {
+        diadocHttpClient.close();
+    }
+
+    /**
+     * Shared by all clients of the api, e.g. for its connection pool stats
+     */
+    public DiadocHttpClient getHttpClient() {
+        return diadocHttpClient;
+    }
+
     public AuthenticateClient getAuthClient() {
         return authClient;
     }
@@ -11,6 +11,8 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static Diadoc.Api.Proto.AcquireCounteragentProtos.*;
 import static Diadoc.Api.Proto.AsyncMethodResultProtos.*;
@@ -67,72 +69,70 @@ public class CounteragentClient {
         }
     }
 
-    public Counteragent getCounteragent(String myOrgId, String counteragentOrgId) throws DiadocSdkException {
-        if (Tools.isNullOrEmpty(myOrgId)) {
-            throw new IllegalArgumentException("myOrgId");
-        }
-        if (Tools.isNullOrEmpty(counteragentOrgId)) {
-            throw new IllegalArgumentException("counteragentOrgId");
-        }
+    public CompletableFuture<AcquireCounteragentResult> waitAcquireCounteragentResultAsync(String taskId, Integer timeoutInMillis) {
+        return diadocHttpClient.waitTaskResultAsync("/AcquireCounteragentResult", taskId, timeoutInMillis).thenApply(data -> {
+            try {
+                return AcquireCounteragentResult.parseFrom(data);
+            } catch (IOException e) {
+                throw new CompletionException(new DiadocSdkException(e));
+            }
+        });
+    }
 
+    public Counteragent getCounteragent(String myOrgId, String counteragentOrgId) throws DiadocSdkException {
         try {
-            var request = RequestBuilder
-                    .get(new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/V2/GetCounteragent")
-                            .addParameter("myOrgId", myOrgId)
-                            .addParameter("counteragentOrgId", counteragentOrgId)
-                            .build());
-            return Counteragent.parseFrom(diadocHttpClient.performRequest(request));
+            return Counteragent.parseFrom(diadocHttpClient.performRequest(buildCounteragentRequest("/V2/GetCounteragent", myOrgId, counteragentOrgId)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
-    public CounteragentCertificateList getCounteragentCertificates(String myOrgId, String counteragentOrgId) throws DiadocSdkException {
-        if (Tools.isNullOrEmpty(myOrgId)) {
-            throw new IllegalArgumentException("myOrgId");
-        }
-        if (Tools.isNullOrEmpty(counteragentOrgId)) {
-            throw new IllegalArgumentException("counteragentOrgId");
+    public CompletableFuture<Counteragent> getCounteragentAsync(String myOrgId, String counteragentOrgId) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildCounteragentRequest("/V2/GetCounteragent", myOrgId, counteragentOrgId), Counteragent::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
         }
+    }
 
+    public CounteragentCertificateList getCounteragentCertificates(String myOrgId, String counteragentOrgId) throws DiadocSdkException {
         try {
-            var request = RequestBuilder
-                    .get(new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/GetCounteragentCertificates")
-                            .addParameter("myOrgId", myOrgId)
-                            .addParameter("counteragentOrgId", counteragentOrgId)
-                            .build());
-            return CounteragentCertificateList.parseFrom(diadocHttpClient.performRequest(request));
+            return CounteragentCertificateList.parseFrom(diadocHttpClient.performRequest(buildCounteragentRequest("/GetCounteragentCertificates", myOrgId, counteragentOrgId)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
-    public CounteragentList getCounteragents(String myOrgId, @Nullable String counteragentStatus, @Nullable String afterIndexKey) throws DiadocSdkException {
-        if (Tools.isNullOrEmpty(myOrgId)) {
-            throw new IllegalArgumentException("myOrgId");
-        }
+    public CompletableFuture<CounteragentCertificateList> getCounteragentCertificatesAsync(String myOrgId, String counteragentOrgId) {
         try {
-            var url = new URIBuilder(diadocHttpClient.getBaseUrl())
-                    .setPath("/V2/GetCounteragents")
-                    .addParameter("myOrgId", myOrgId);
-
-            if (!Tools.isNullOrEmpty(counteragentStatus)) {
-                url.addParameter("counteragentStatus", counteragentStatus);
-            }
-
-            if (afterIndexKey != null) {
-                url.addParameter("afterIndexKey", afterIndexKey);
-            }
+            return diadocHttpClient.performRequestAsync(buildCounteragentRequest("/GetCounteragentCertificates", myOrgId, counteragentOrgId), CounteragentCertificateList::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
-            var request = RequestBuilder.get(url.build());
-            return CounteragentList.parseFrom(diadocHttpClient.performRequest(request));
+    public CounteragentList getCounteragents(String myOrgId, @Nullable String counteragentStatus, @Nullable String afterIndexKey) throws DiadocSdkException {
+        try {
+            return CounteragentList.parseFrom(diadocHttpClient.performRequest(buildGetCounteragentsRequest(myOrgId, counteragentStatus, afterIndexKey)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<CounteragentList> getCounteragentsAsync(String myOrgId, @Nullable String counteragentStatus, @Nullable String afterIndexKey) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildGetCounteragentsRequest(myOrgId, counteragentStatus, afterIndexKey), CounteragentList::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     public void breakWithCounteragent(String myOrgId, String counteragentOrgId, @Nullable String comment) throws DiadocSdkException {
         if (Tools.isNullOrEmpty(myOrgId)) {
             throw new IllegalArgumentException("myOrgId");
@@ -157,4 +157,39 @@ public class CounteragentClient {
             throw new DiadocSdkException(e);
         }
     }
+
+    private RequestBuilder buildCounteragentRequest(String path, String myOrgId, String counteragentOrgId) throws URISyntaxException {
+        if (Tools.isNullOrEmpty(myOrgId)) {
+            throw new IllegalArgumentException("myOrgId");
+        }
+        if (Tools.isNullOrEmpty(counteragentOrgId)) {
+            throw new IllegalArgumentException("counteragentOrgId");
+        }
+
+        return RequestBuilder
+                .get(new URIBuilder(diadocHttpClient.getBaseUrl())
+                        .setPath(path)
+                        .addParameter("myOrgId", myOrgId)
+                        .addParameter("counteragentOrgId", counteragentOrgId)
+                        .build());
+    }
+
+    private RequestBuilder buildGetCounteragentsRequest(String myOrgId, @Nullable String counteragentStatus, @Nullable String afterIndexKey) throws URISyntaxException {
+        if (Tools.isNullOrEmpty(myOrgId)) {
+            throw new IllegalArgumentException("myOrgId");
+        }
+        var url = new URIBuilder(diadocHttpClient.getBaseUrl())
+                .setPath("/V2/GetCounteragents")
+                .addParameter("myOrgId", myOrgId);
+
+        if (!Tools.isNullOrEmpty(counteragentStatus)) {
+            url.addParameter("counteragentStatus", counteragentStatus);
+        }
+
+        if (afterIndexKey != null) {
+            url.addParameter("afterIndexKey", afterIndexKey);
+        }
+
+        return RequestBuilder.get(url.build());
+    }
 }
@@ -0,0 +1,21 @@
+package Diadoc.Api.cursor;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Keeps the position of a feed consumer, e.g. the last EventId of a box or the last IndexKey of docflow events
+ */
+public interface CursorStore extends Closeable {
+    @Nullable
+    String load(String feed) throws IOException;
+
+    /**
+     * The cursor may be buffered, it is durable after the next flush
+     */
+    void save(String feed, String cursor) throws IOException;
+
+    void flush() throws IOException;
+}
@@ -0,0 +1,219 @@
+package Diadoc.Api.cursor;
+
+import Diadoc.Api.helpers.DaemonThreadFactory;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of cursor records. Records are written and synced in batches,
+ * a torn record at the end of the log is dropped on open, and the log is rewritten when it grows too large
+ */
+public class FileCursorStore implements CursorStore {
+    private static final int RECORD_HEADER_LENGTH = 8;
+    private static final int MAX_RECORD_LENGTH = 64 * 1024;
+    private static final int MAX_PENDING_LENGTH = 256 * 1024;
+    private static final long MIN_COMPACTION_LENGTH = 1024 * 1024;
+
+    private final Path path;
+    private final Map<String, String> cursors = new HashMap<>();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    @Nullable
+    private final ScheduledExecutorService flusher;
+    private FileChannel channel;
+    private long logLength;
+    private long compactionLength = MIN_COMPACTION_LENGTH;
+    private boolean dirty;
+
+    public FileCursorStore(Path path) throws IOException {
+        this(path, Duration.ofMillis(200));
+    }
+
+    /**
+     * @param flushInterval saved cursors are synced to disk at least this often, zero disables background flushes
+     */
+    public FileCursorStore(Path path, Duration flushInterval) throws IOException {
+        if (path == null)
+            throw new IllegalArgumentException("path");
+        if (flushInterval == null || flushInterval.isNegative())
+            throw new IllegalArgumentException("flushInterval");
+
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        logLength = replay();
+        channel.truncate(logLength);
+        channel.position(logLength);
+        compactionLength = Math.max(MIN_COMPACTION_LENGTH, 4 * logLength);
+
+        if (flushInterval.isZero()) {
+            flusher = null;
+        } else {
+            flusher = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("diadoc-cursor-store"));
+            flusher.scheduleWithFixedDelay(this::flushInBackground, flushInterval.toNanos(), flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    @Nullable
+    public synchronized String load(String feed) {
+        return cursors.get(feed);
+    }
+
+    @Override
+    public synchronized void save(String feed, String cursor) throws IOException {
+        if (feed == null)
+            throw new IllegalArgumentException("feed");
+        if (cursor == null)
+            throw new IllegalArgumentException("cursor");
+
+        writeRecord(new DataOutputStream(pending), feed, cursor);
+        cursors.put(feed, cursor);
+        dirty = true;
+        if (pending.size() >= MAX_PENDING_LENGTH)
+            writePending();
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (!dirty)
+            return;
+        writePending();
+        channel.force(false);
+        dirty = false;
+        if (logLength >= compactionLength)
+            compact();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (flusher != null)
+            flusher.shutdownNow();
+        synchronized (this) {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    private void flushInBackground() {
+        try {
+            flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writePending() throws IOException {
+        if (pending.size() == 0)
+            return;
+        var buffer = ByteBuffer.wrap(pending.toByteArray());
+        try {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        } catch (IOException e) {
+            //a half written batch would hide the batches written after it
+            channel.truncate(logLength);
+            channel.position(logLength);
+            throw e;
+        }
+        logLength += buffer.capacity();
+        pending.reset();
+    }
+
+    //the log is rewritten with the last cursor of every feed and swapped in atomically
+    private void compact() throws IOException {
+        var compactPath = path.resolveSibling(path.getFileName() + ".compact");
+        var snapshot = new ByteArrayOutputStream();
+        var output = new DataOutputStream(snapshot);
+        for (var cursor : cursors.entrySet())
+            writeRecord(output, cursor.getKey(), cursor.getValue());
+
+        try (var compactChannel = FileChannel.open(compactPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            var buffer = ByteBuffer.wrap(snapshot.toByteArray());
+            while (buffer.hasRemaining())
+                compactChannel.write(buffer);
+            compactChannel.force(false);
+        }
+        channel.close();
+        try {
+            Files.move(compactPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            logLength = channel.size();
+            channel.position(logLength);
+        }
+        compactionLength = Math.max(MIN_COMPACTION_LENGTH, 4 * logLength);
+    }
+
+    private long replay() throws IOException {
+        long validLength = 0;
+        var input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        var crc = new CRC32();
+        while (true) {
+            try {
+                int length = input.readInt();
+                int checksum = input.readInt();
+                if (length <= 0 || length > MAX_RECORD_LENGTH)
+                    break;
+                var payload = new byte[length];
+                input.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum)
+                    break;
+
+                var record = ByteBuffer.wrap(payload);
+                var feed = new byte[record.getShort() & 0xFFFF];
+                record.get(feed);
+                var cursor = new byte[record.remaining()];
+                record.get(cursor);
+                cursors.put(new String(feed, StandardCharsets.UTF_8), new String(cursor, StandardCharsets.UTF_8));
+                validLength += RECORD_HEADER_LENGTH + length;
+            } catch (EOFException e) {
+                break;
+            }
+        }
+        return validLength;
+    }
+
+    private static void writeRecord(DataOutputStream output, String feed, String cursor) throws IOException {
+        var feedBytes = feed.getBytes(StandardCharsets.UTF_8);
+        var cursorBytes = cursor.getBytes(StandardCharsets.UTF_8);
+        int length = 2 + feedBytes.length + cursorBytes.length;
+        if (feedBytes.length > 0xFFFF || length > MAX_RECORD_LENGTH)
+            throw new IllegalArgumentException("cursor record is too long");
+
+        var payload = ByteBuffer.allocate(length)
+                .putShort((short) feedBytes.length)
+                .put(feedBytes)
+                .put(cursorBytes)
+                .array();
+        var crc = new CRC32();
+        crc.update(payload);
+        output.writeInt(length);
+        output.writeInt((int) crc.getValue());
+        output.write(payload);
+    }
+}
@@ -10,6 +10,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.concurrent.CompletableFuture;
 
 import static Diadoc.Api.Proto.Departments.DepartmentListProtos.*;
 import static Diadoc.Api.Proto.Departments.DepartmentProtos.Department;
@@ -90,26 +91,23 @@ public class DepartmentClient {
     }
 
     public Department getDepartmentByFullId(String boxId, String departmentId) throws DiadocSdkException {
-        if (boxId == null) {
-            throw new IllegalArgumentException("boxId");
-        }
-        if (departmentId == null) {
-            throw new IllegalArgumentException("departmentId");
-        }
-
         try {
-            var request = RequestBuilder.get(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/admin/GetDepartment")
-                            .addParameter("boxId", boxId)
-                            .addParameter("departmentId", departmentId)
-                            .build());
-            return Department.parseFrom(diadocHttpClient.performRequest(request));
+            return Department.parseFrom(diadocHttpClient.performRequest(buildGetDepartmentByFullIdRequest(boxId, departmentId)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<Department> getDepartmentByFullIdAsync(String boxId, String departmentId) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildGetDepartmentByFullIdRequest(boxId, departmentId), Department::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     public DepartmentList getDepartments(String boxId) throws DiadocSdkException {
         if (boxId == null) {
             throw new IllegalArgumentException("boxId");
@@ -125,38 +123,23 @@ public class DepartmentClient {
     }
 
     public DepartmentList getDepartments(String boxId, @Nullable Integer page, @Nullable Integer count) throws DiadocSdkException {
-        if(boxId == null) {
-            throw new IllegalArgumentException("boxId");
-        }
-
-        if(page != null && page < 1) {
-            throw new IllegalArgumentException("page must be 1 or greater");
-        }
-
-        if(count != null && count < 1) {
-            throw new IllegalArgumentException("count must be 1 or greater");
-        }
-
         try {
-            var url = new URIBuilder(diadocHttpClient.getBaseUrl())
-                    .setPath("/admin/GetDepartments")
-                    .addParameter("boxId", boxId);
-
-            if (page != null) {
-                url.addParameter("page", Integer.toString(page));
-            }
-
-            if (count != null) {
-                url.addParameter("count", Integer.toString(count));
-            }
-
-            var request = RequestBuilder.get(url.build());
-            return DepartmentList.parseFrom(diadocHttpClient.performRequest(request));
+            return DepartmentList.parseFrom(diadocHttpClient.performRequest(buildGetDepartmentsRequest(boxId, page, count)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<DepartmentList> getDepartmentsAsync(String boxId, @Nullable Integer page, @Nullable Integer count) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildGetDepartmentsRequest(boxId, page, count), DepartmentList::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     public OrganizationProtos.Department getDepartment(String orgId, String departmentId) throws DiadocSdkException {
         if (orgId == null) {
             throw new IllegalArgumentException("orgId");
@@ -176,4 +159,46 @@ public class DepartmentClient {
             throw new DiadocSdkException(e);
         }
     }
+
+    private RequestBuilder buildGetDepartmentByFullIdRequest(String boxId, String departmentId) throws URISyntaxException {
+        if (boxId == null) {
+            throw new IllegalArgumentException("boxId");
+        }
+        if (departmentId == null) {
+            throw new IllegalArgumentException("departmentId");
+        }
+
+        return RequestBuilder.get(
+                new URIBuilder(diadocHttpClient.getBaseUrl())
+                        .setPath("/admin/GetDepartment")
+                        .addParameter("boxId", boxId)
+                        .addParameter("departmentId", departmentId)
+                        .build());
+    }
+
+    private RequestBuilder buildGetDepartmentsRequest(String boxId, @Nullable Integer page, @Nullable Integer count) throws URISyntaxException {
+        if (boxId == null) {
+            throw new IllegalArgumentException("boxId");
+        }
+        if (page != null && page < 1) {
+            throw new IllegalArgumentException("page must be 1 or greater");
+        }
+        if (count != null && count < 1) {
+            throw new IllegalArgumentException("count must be 1 or greater");
+        }
+
+        var url = new URIBuilder(diadocHttpClient.getBaseUrl())
+                .setPath("/admin/GetDepartments")
+                .addParameter("boxId", boxId);
+
+        if (page != null) {
+            url.addParameter("page", Integer.toString(page));
+        }
+
+        if (count != null) {
+            url.addParameter("count", Integer.toString(count));
+        }
+
+        return RequestBuilder.get(url.build());
+    }
 }
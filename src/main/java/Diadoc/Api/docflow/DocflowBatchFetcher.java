@@ -0,0 +1,149 @@
+package Diadoc.Api.docflow;
+
+import Diadoc.Api.exceptions.DiadocSdkException;
+import Diadoc.Api.helpers.Tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static Diadoc.Api.Proto.Docflow.DocflowApiProtos.*;
+import static Diadoc.Api.Proto.Docflow.DocflowApiV3Protos.*;
+
+/**
+ * Sends any number of GetDocflowRequest as several GetDocflows batches, a few of them at a time.
+ * Batches are of equal size, so there is no small tail batch
+ */
+public class DocflowBatchFetcher {
+    private final DocflowClient docflowClient;
+    private int maxBatchSize = 100;
+    private int maxBatchesInFlight = 4;
+
+    public DocflowBatchFetcher(DocflowClient docflowClient) {
+        if (docflowClient == null)
+            throw new IllegalArgumentException("docflowClient");
+        this.docflowClient = docflowClient;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public DocflowBatchFetcher setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1)
+            throw new IllegalArgumentException("maxBatchSize < 1");
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    public int getMaxBatchesInFlight() {
+        return maxBatchesInFlight;
+    }
+
+    public DocflowBatchFetcher setMaxBatchesInFlight(int maxBatchesInFlight) {
+        if (maxBatchesInFlight < 1)
+            throw new IllegalArgumentException("maxBatchesInFlight < 1");
+        this.maxBatchesInFlight = maxBatchesInFlight;
+        return this;
+    }
+
+    public GetDocflowBatchResponseV3 getDocflows(String boxId, List<GetDocflowRequest> requests) throws DiadocSdkException {
+        try {
+            return getDocflowsAsync(boxId, requests).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof DiadocSdkException
+                    ? (DiadocSdkException) e.getCause()
+                    : new DiadocSdkException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DiadocSdkException(e);
+        }
+    }
+
+    /**
+     * @return documents of all batches in the order of requests
+     */
+    public CompletableFuture<GetDocflowBatchResponseV3> getDocflowsAsync(String boxId, List<GetDocflowRequest> requests) {
+        if (Tools.isNullOrEmpty(boxId))
+            throw new IllegalArgumentException("boxId");
+        if (requests == null)
+            throw new IllegalArgumentException("requests");
+
+        var batches = splitIntoBatches(requests);
+        var responses = new ArrayList<CompletableFuture<GetDocflowBatchResponseV3>>(batches.size());
+        for (int i = 0; i < batches.size(); i++)
+            responses.add(new CompletableFuture<>());
+
+        var result = new CompletableFuture<GetDocflowBatchResponseV3>();
+        var nextBatch = new AtomicInteger();
+        var sentBatches = new ConcurrentLinkedQueue<CompletableFuture<GetDocflowBatchResponseV3>>();
+        //cancelling the result stops sending and cancels the batches already in flight
+        result.whenComplete((documents, e) -> {
+            if (!result.isCancelled())
+                return;
+            nextBatch.set(batches.size());
+            for (var sentBatch : sentBatches)
+                sentBatch.cancel(false);
+        });
+        for (int i = 0; i < Math.min(maxBatchesInFlight, batches.size()); i++)
+            sendNextBatch(boxId, batches, responses, nextBatch, sentBatches, result);
+
+        CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+            var documents = GetDocflowBatchResponseV3.newBuilder();
+            for (var response : responses)
+                documents.addAllDocuments(response.join().getDocumentsList());
+            //the batches are parsed responses, so they need no second check of required fields
+            result.complete(documents.buildPartial());
+        });
+        return result;
+    }
+
+    //every completed batch starts the next one, so at most maxBatchesInFlight are sent at a time.
+    //the first failure fails the result at once and cancels the batches not sent yet
+    private void sendNextBatch(
+            String boxId,
+            List<GetDocflowBatchRequest> batches,
+            List<CompletableFuture<GetDocflowBatchResponseV3>> responses,
+            AtomicInteger nextBatch,
+            Queue<CompletableFuture<GetDocflowBatchResponseV3>> sentBatches,
+            CompletableFuture<GetDocflowBatchResponseV3> result) {
+        int batchIndex = nextBatch.getAndIncrement();
+        if (batchIndex >= batches.size())
+            return;
+
+        var response = responses.get(batchIndex);
+        var sentBatch = docflowClient.getDocflowsAsync(boxId, batches.get(batchIndex));
+        sentBatches.add(sentBatch);
+        //the result may be cancelled while this batch was being sent
+        if (result.isCancelled())
+            sentBatch.cancel(false);
+        sentBatch.whenComplete((batchResponse, e) -> {
+            if (e != null) {
+                response.completeExceptionally(e);
+                result.completeExceptionally(e);
+                for (int i = nextBatch.getAndSet(batches.size()); i < batches.size(); i++)
+                    responses.get(i).cancel(false);
+                return;
+            }
+            response.complete(batchResponse);
+            sendNextBatch(boxId, batches, responses, nextBatch, sentBatches, result);
+        });
+    }
+
+    private List<GetDocflowBatchRequest> splitIntoBatches(List<GetDocflowRequest> requests) {
+        int batchesCount = (requests.size() + maxBatchSize - 1) / maxBatchSize;
+        var batches = new ArrayList<GetDocflowBatchRequest>(batchesCount);
+        for (int i = 0; i < batchesCount; i++) {
+            int from = requests.size() * i / batchesCount;
+            int to = requests.size() * (i + 1) / batchesCount;
+            batches.add(GetDocflowBatchRequest.newBuilder()
+                    .addAllRequests(requests.subList(from, to))
+                    .build());
+        }
+        return batches;
+    }
+}
@@ -1,5 +1,6 @@
 package Diadoc.Api.docflow;
 
+import Diadoc.Api.cursor.CursorStore;
 import Diadoc.Api.exceptions.DiadocSdkException;
 import Diadoc.Api.helpers.Tools;
 import Diadoc.Api.httpClient.DiadocHttpClient;
@@ -9,6 +10,9 @@ import org.apache.http.entity.ByteArrayEntity;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 import static Diadoc.Api.Proto.Docflow.DocflowApiProtos.*;
 import static Diadoc.Api.Proto.Docflow.DocflowApiV3Protos.*;
@@ -21,104 +25,192 @@ public class DocflowClient {
     }
 
     public SearchDocflowsResponse searchDocflows(String boxId, SearchDocflowsRequest searchDocflowsRequest) throws DiadocSdkException {
-        if (Tools.isNullOrEmpty(boxId)) {
-            throw new IllegalArgumentException("boxId");
-        }
         try {
-            var request = RequestBuilder.post(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/SearchDocflows")
-                            .addParameter("boxId", boxId)
-                            .build())
-                    .setEntity(new ByteArrayEntity(searchDocflowsRequest.toByteArray()));
+            var request = buildPostRequest("/SearchDocflows", boxId, searchDocflowsRequest.toByteArray());
             return SearchDocflowsResponse.parseFrom(diadocHttpClient.performRequest(request));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
-    public GetDocflowsByPacketIdResponse getDocflowsByPacketId(String boxId, GetDocflowsByPacketIdRequest packetIdRequest) throws DiadocSdkException {
-        if (Tools.isNullOrEmpty(boxId)) {
-            throw new IllegalArgumentException("boxId");
+    public CompletableFuture<SearchDocflowsResponse> searchDocflowsAsync(String boxId, SearchDocflowsRequest searchDocflowsRequest) {
+        try {
+            var request = buildPostRequest("/SearchDocflows", boxId, searchDocflowsRequest.toByteArray());
+            return diadocHttpClient.performRequestAsync(request, SearchDocflowsResponse::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
         }
+    }
+
+    public GetDocflowsByPacketIdResponse getDocflowsByPacketId(String boxId, GetDocflowsByPacketIdRequest packetIdRequest) throws DiadocSdkException {
         try {
-            var request = RequestBuilder.post(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/V2/GetDocflowsByPacketId")
-                            .addParameter("boxId", boxId)
-                            .build())
-                    .setEntity(new ByteArrayEntity(packetIdRequest.toByteArray()));
+            var request = buildPostRequest("/V2/GetDocflowsByPacketId", boxId, packetIdRequest.toByteArray());
             return GetDocflowsByPacketIdResponse.parseFrom(diadocHttpClient.performRequest(request));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
-    public GetDocflowBatchResponseV3 getDocflows(String boxId, GetDocflowBatchRequest getDocflowBatchRequest) throws DiadocSdkException {
-        if (Tools.isNullOrEmpty(boxId)) {
-            throw new IllegalArgumentException("boxId");
+    public CompletableFuture<GetDocflowsByPacketIdResponse> getDocflowsByPacketIdAsync(String boxId, GetDocflowsByPacketIdRequest packetIdRequest) {
+        try {
+            var request = buildPostRequest("/V2/GetDocflowsByPacketId", boxId, packetIdRequest.toByteArray());
+            return diadocHttpClient.performRequestAsync(request, GetDocflowsByPacketIdResponse::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
         }
+    }
+
+    public GetDocflowBatchResponseV3 getDocflows(String boxId, GetDocflowBatchRequest getDocflowBatchRequest) throws DiadocSdkException {
         try {
-            var request = RequestBuilder.post(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/V3/GetDocflows")
-                            .addParameter("boxId", boxId)
-                            .build())
-                    .setEntity(new ByteArrayEntity(getDocflowBatchRequest.toByteArray()));
+            var request = buildPostRequest("/V3/GetDocflows", boxId, getDocflowBatchRequest.toByteArray());
             return GetDocflowBatchResponseV3.parseFrom(diadocHttpClient.performRequest(request));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
-    public GetDocflowEventsResponseV3 getDocflowEvents(String boxId, GetDocflowEventsRequest getDocflowEventsRequest) throws DiadocSdkException {
-        if (Tools.isNullOrEmpty(boxId)) {
-            throw new IllegalArgumentException("boxId");
+    /**
+     * Any number of requests, split into several GetDocflows batches sent concurrently
+     */
+    public GetDocflowBatchResponseV3 getDocflows(String boxId, List<GetDocflowRequest> requests) throws DiadocSdkException {
+        return new DocflowBatchFetcher(this).getDocflows(boxId, requests);
+    }
+
+    public CompletableFuture<GetDocflowBatchResponseV3> getDocflowsAsync(String boxId, GetDocflowBatchRequest getDocflowBatchRequest) {
+        try {
+            var request = buildPostRequest("/V3/GetDocflows", boxId, getDocflowBatchRequest.toByteArray());
+            return diadocHttpClient.performRequestAsync(request, GetDocflowBatchResponseV3::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
         }
+    }
+
+    public GetDocflowEventsResponseV3 getDocflowEvents(String boxId, GetDocflowEventsRequest getDocflowEventsRequest) throws DiadocSdkException {
         try {
-            var request = RequestBuilder.post(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/V3/GetDocflowEvents")
-                            .addParameter("boxId", boxId)
-                            .build())
-                    .setEntity(new ByteArrayEntity(getDocflowEventsRequest.toByteArray()));
+            var request = buildPostRequest("/V3/GetDocflowEvents", boxId, getDocflowEventsRequest.toByteArray());
             return GetDocflowEventsResponseV3.parseFrom(diadocHttpClient.performRequest(request));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
-    public SearchDocflowsResponseV3 searchDocflowsV3(String boxId, SearchDocflowsRequest docflowsRequest) throws IOException, DiadocSdkException {
+    public CompletableFuture<GetDocflowEventsResponseV3> getDocflowEventsAsync(String boxId, GetDocflowEventsRequest getDocflowEventsRequest) {
+        try {
+            var request = buildPostRequest("/V3/GetDocflowEvents", boxId, getDocflowEventsRequest.toByteArray());
+            return diadocHttpClient.performRequestAsync(request, GetDocflowEventsResponseV3::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Events of the box page by page, the next page is downloaded while the current one is processed.
+     * With populateDocumentsInBatches documents requested by PopulateDocuments are fetched by separate GetDocflows batches per page
+     */
+    public DocflowEventsCursor openDocflowEventsCursor(String boxId, GetDocflowEventsRequest getDocflowEventsRequest, boolean populateDocumentsInBatches) {
+        if (Tools.isNullOrEmpty(boxId)) {
+            throw new IllegalArgumentException("boxId");
+        }
+        if (getDocflowEventsRequest == null) {
+            throw new IllegalArgumentException("getDocflowEventsRequest");
+        }
+        return new DocflowEventsCursor(this, boxId, getDocflowEventsRequest, populateDocumentsInBatches);
+    }
+
+    /**
+     * Resumes the feed after the IndexKey saved in the cursor store, or after AfterIndexKey of the request when nothing is saved yet.
+     * The cursor saves the IndexKey of every handled event under the feed name
+     */
+    public DocflowEventsCursor openDocflowEventsCursor(
+            String boxId,
+            GetDocflowEventsRequest getDocflowEventsRequest,
+            boolean populateDocumentsInBatches,
+            CursorStore cursorStore,
+            String feed) throws DiadocSdkException {
         if (Tools.isNullOrEmpty(boxId)) {
             throw new IllegalArgumentException("boxId");
         }
+        if (getDocflowEventsRequest == null) {
+            throw new IllegalArgumentException("getDocflowEventsRequest");
+        }
+        if (cursorStore == null) {
+            throw new IllegalArgumentException("cursorStore");
+        }
+        if (Tools.isNullOrEmpty(feed)) {
+            throw new IllegalArgumentException("feed");
+        }
+        try {
+            var indexKey = DocflowEventsCursor.loadIndexKey(cursorStore, feed);
+            var request = indexKey != null
+                    ? getDocflowEventsRequest.toBuilder().setAfterIndexKey(indexKey).build()
+                    : getDocflowEventsRequest;
+            return new DocflowEventsCursor(this, boxId, request, populateDocumentsInBatches, cursorStore, feed);
+        } catch (IOException e) {
+            throw new DiadocSdkException(e);
+        }
+    }
+
+    public Stream<DocflowEventV3> streamDocflowEvents(String boxId, GetDocflowEventsRequest getDocflowEventsRequest) {
+        return openDocflowEventsCursor(boxId, getDocflowEventsRequest, false).stream();
+    }
+
+    public SearchDocflowsResponseV3 searchDocflowsV3(String boxId, SearchDocflowsRequest docflowsRequest) throws IOException, DiadocSdkException {
         try {
-            var request = RequestBuilder.post(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/V3/SearchDocflows")
-                            .addParameter("boxId", boxId)
-                            .build())
-                    .setEntity(new ByteArrayEntity(docflowsRequest.toByteArray()));
+            var request = buildPostRequest("/V3/SearchDocflows", boxId, docflowsRequest.toByteArray());
             return SearchDocflowsResponseV3.parseFrom(diadocHttpClient.performRequest(request));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
-    public GetDocflowsByPacketIdResponseV3 getDocflowsByPacketIdV3(String boxId, GetDocflowsByPacketIdRequest docflowsByPacketIdRequest) throws IOException, DiadocSdkException {
-        if (Tools.isNullOrEmpty(boxId)) {
-            throw new IllegalArgumentException("boxId");
+    public CompletableFuture<SearchDocflowsResponseV3> searchDocflowsV3Async(String boxId, SearchDocflowsRequest docflowsRequest) {
+        try {
+            var request = buildPostRequest("/V3/SearchDocflows", boxId, docflowsRequest.toByteArray());
+            return diadocHttpClient.performRequestAsync(request, SearchDocflowsResponseV3::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
         }
+    }
+
+    public GetDocflowsByPacketIdResponseV3 getDocflowsByPacketIdV3(String boxId, GetDocflowsByPacketIdRequest docflowsByPacketIdRequest) throws IOException, DiadocSdkException {
         try {
-            var request = RequestBuilder.post(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/V3/GetDocflowsByPacketId")
-                            .addParameter("boxId", boxId)
-                            .build())
-                    .setEntity(new ByteArrayEntity(docflowsByPacketIdRequest.toByteArray()));
+            var request = buildPostRequest("/V3/GetDocflowsByPacketId", boxId, docflowsByPacketIdRequest.toByteArray());
             return GetDocflowsByPacketIdResponseV3.parseFrom(diadocHttpClient.performRequest(request));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
+
+    public CompletableFuture<GetDocflowsByPacketIdResponseV3> getDocflowsByPacketIdV3Async(String boxId, GetDocflowsByPacketIdRequest docflowsByPacketIdRequest) {
+        try {
+            var request = buildPostRequest("/V3/GetDocflowsByPacketId", boxId, docflowsByPacketIdRequest.toByteArray());
+            return diadocHttpClient.performRequestAsync(request, GetDocflowsByPacketIdResponseV3::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private RequestBuilder buildPostRequest(String path, String boxId, byte[] content) throws URISyntaxException {
+        if (Tools.isNullOrEmpty(boxId)) {
+            throw new IllegalArgumentException("boxId");
+        }
+        return RequestBuilder.post(
+                new URIBuilder(diadocHttpClient.getBaseUrl())
+                        .setPath(path)
+                        .addParameter("boxId", boxId)
+                        .build())
+                .setEntity(new ByteArrayEntity(content));
+    }
 }
@@ -0,0 +1,234 @@
+package Diadoc.Api.docflow;
+
+import Diadoc.Api.cursor.CursorStore;
+import Diadoc.Api.exceptions.DiadocSdkException;
+import com.google.protobuf.ByteString;
+import org.apache.commons.codec.binary.Base64;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static Diadoc.Api.Proto.Docflow.DocflowApiProtos.*;
+import static Diadoc.Api.Proto.Docflow.DocflowApiV3Protos.*;
+import static Diadoc.Api.Proto.Docflow.DocumentWithDocflowV3Protos.*;
+import static Diadoc.Api.Proto.DocumentIdProtos.*;
+
+/**
+ * Pages through getDocflowEvents by AfterIndexKey. The next page is requested as soon as the current one arrives.
+ * Errors are thrown as CompletionException with DiadocSdkException cause.
+ * With a cursor store the IndexKey of an event is saved, Base64 encoded, once the next event is requested or the feed ends,
+ * so the event being handled when the process stops is returned again after a restart
+ */
+public class DocflowEventsCursor implements Iterator<DocflowEventV3>, AutoCloseable {
+    private final DocflowClient docflowClient;
+    private final String boxId;
+    private final GetDocflowEventsRequest request;
+    private final boolean populateDocumentsInBatches;
+    private final DocflowBatchFetcher docflowBatchFetcher;
+    @Nullable
+    private final CursorStore cursorStore;
+    @Nullable
+    private final String feed;
+    @Nullable
+    private CompletableFuture<EventsPage> nextPage;
+    private Iterator<DocflowEventV3> currentPage = Collections.emptyIterator();
+    @Nullable
+    private volatile ByteString lastIndexKey;
+    @Nullable
+    private ByteString savedIndexKey;
+    private boolean closed;
+
+    DocflowEventsCursor(DocflowClient docflowClient, String boxId, GetDocflowEventsRequest request, boolean populateDocumentsInBatches) {
+        this(docflowClient, boxId, request, populateDocumentsInBatches, null, null);
+    }
+
+    DocflowEventsCursor(
+            DocflowClient docflowClient,
+            String boxId,
+            GetDocflowEventsRequest request,
+            boolean populateDocumentsInBatches,
+            @Nullable CursorStore cursorStore,
+            @Nullable String feed) {
+        this.docflowClient = docflowClient;
+        this.boxId = boxId;
+        this.cursorStore = cursorStore;
+        this.feed = feed;
+        this.populateDocumentsInBatches = populateDocumentsInBatches && request.getPopulateDocuments();
+        this.docflowBatchFetcher = new DocflowBatchFetcher(docflowClient);
+        this.request = this.populateDocumentsInBatches
+                ? request.toBuilder().setPopulateDocuments(false).build()
+                : request;
+        this.lastIndexKey = request.hasAfterIndexKey() ? request.getAfterIndexKey() : null;
+        this.savedIndexKey = lastIndexKey;
+        this.nextPage = fetchPage(lastIndexKey);
+    }
+
+    /**
+     * @return IndexKey of the last returned event, passed as AfterIndexKey it resumes the feed right after that event
+     */
+    @Nullable
+    public ByteString getLastIndexKey() {
+        return lastIndexKey;
+    }
+
+    /**
+     * @return IndexKey saved for the feed, it is passed as AfterIndexKey to resume the feed
+     */
+    @Nullable
+    static ByteString loadIndexKey(CursorStore cursorStore, String feed) throws IOException {
+        var cursor = cursorStore.load(feed);
+        return cursor != null ? ByteString.copyFrom(Base64.decodeBase64(cursor)) : null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!closed && !currentPage.hasNext()) {
+            if (nextPage == null) {
+                saveIndexKey(true);
+                return false;
+            }
+            var page = awaitPage(nextPage);
+            nextPage = page.hasMore ? fetchPage(page.events.get(page.events.size() - 1).getIndexKey()) : null;
+            currentPage = page.events.iterator();
+        }
+        return !closed && currentPage.hasNext();
+    }
+
+    @Override
+    public DocflowEventV3 next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        saveIndexKey(false);
+        var event = currentPage.next();
+        lastIndexKey = event.getIndexKey();
+        return event;
+    }
+
+    public Stream<DocflowEventV3> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (nextPage != null) {
+            nextPage.cancel(false);
+            nextPage = null;
+        }
+    }
+
+    //the key of the returned event is saved when the consumer comes back for more, i.e. after it has handled the event
+    private void saveIndexKey(boolean flush) {
+        var indexKey = lastIndexKey;
+        if (cursorStore == null || indexKey == null || indexKey.equals(savedIndexKey))
+            return;
+        try {
+            cursorStore.save(feed, Base64.encodeBase64String(indexKey.toByteArray()));
+            if (flush)
+                cursorStore.flush();
+            savedIndexKey = indexKey;
+        } catch (IOException e) {
+            close();
+            throw new CompletionException(new DiadocSdkException(e));
+        }
+    }
+
+    private CompletableFuture<EventsPage> fetchPage(@Nullable ByteString afterIndexKey) {
+        var pageRequest = afterIndexKey != null
+                ? request.toBuilder().setAfterIndexKey(afterIndexKey).build()
+                : request;
+        var response = docflowClient.getDocflowEventsAsync(boxId, pageRequest);
+        if (!populateDocumentsInBatches)
+            return response.thenApply(page -> new EventsPage(page.getEventsList(), hasMore(page)));
+        return response.thenCompose(page -> populateDocuments(page.getEventsList())
+                .thenApply(events -> new EventsPage(events, hasMore(page))));
+    }
+
+    //an empty page ends the feed, as does a page holding all of TotalCount
+    private static boolean hasMore(GetDocflowEventsResponseV3 page) {
+        return page.getEventsCount() > 0 && page.getTotalCount() > page.getEventsCount();
+    }
+
+    //documents of the page are requested by GetDocflows batches, each as of its event
+    private CompletableFuture<List<DocflowEventV3>> populateDocuments(List<DocflowEventV3> events) {
+        var requests = new ArrayList<GetDocflowRequest>(events.size());
+        for (var event : events) {
+            if (event.hasDocumentId()) {
+                requests.add(GetDocflowRequest.newBuilder()
+                        .setDocumentId(event.getDocumentId())
+                        .setLastEventId(event.getEventId())
+                        .setInjectEntityContent(request.getInjectEntityContent())
+                        .build());
+            }
+        }
+        if (requests.isEmpty())
+            return CompletableFuture.completedFuture(events);
+
+        int requestsCount = requests.size();
+        return docflowBatchFetcher.getDocflowsAsync(boxId, requests).thenApply(response -> {
+            //documents come in the order of requests, a partial answer is matched by DocumentId
+            boolean isComplete = response.getDocumentsCount() == requestsCount;
+            var documents = new HashMap<String, DocumentWithDocflowV3>();
+            if (!isComplete) {
+                for (var document : response.getDocumentsList())
+                    documents.put(toKey(document.getDocumentId()), document);
+            }
+
+            var populatedEvents = new ArrayList<DocflowEventV3>(events.size());
+            int documentIndex = 0;
+            for (var event : events) {
+                DocumentWithDocflowV3 document = null;
+                if (event.hasDocumentId()) {
+                    document = isComplete
+                            ? response.getDocuments(documentIndex++)
+                            : documents.get(toKey(event.getDocumentId()));
+                }
+                populatedEvents.add(document != null ? event.toBuilder().setDocument(document).build() : event);
+            }
+            return populatedEvents;
+        });
+    }
+
+    private static String toKey(DocumentId documentId) {
+        return documentId.getMessageId() + "/" + documentId.getEntityId();
+    }
+
+    private EventsPage awaitPage(CompletableFuture<EventsPage> page) {
+        try {
+            return page.get();
+        } catch (ExecutionException e) {
+            close();
+            throw e.getCause() instanceof DiadocSdkException
+                    ? new CompletionException(e.getCause())
+                    : new CompletionException(new DiadocSdkException(e));
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new CompletionException(new DiadocSdkException(e));
+        }
+    }
+
+    private static class EventsPage {
+        private final List<DocflowEventV3> events;
+        private final boolean hasMore;
+
+        EventsPage(List<DocflowEventV3> events, boolean hasMore) {
+            this.events = events;
+            this.hasMore = hasMore;
+        }
+    }
+}
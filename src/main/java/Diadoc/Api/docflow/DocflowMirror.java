@@ -0,0 +1,513 @@
+package Diadoc.Api.docflow;
+
+import Diadoc.Api.cursor.CursorStore;
+import Diadoc.Api.exceptions.DiadocSdkException;
+import Diadoc.Api.helpers.Tools;
+import com.google.protobuf.ByteString;
+import org.apache.commons.codec.binary.Base64;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import static Diadoc.Api.Proto.Docflow.DocflowApiProtos.*;
+import static Diadoc.Api.Proto.Docflow.DocumentInfoV3Protos.*;
+import static Diadoc.Api.Proto.Docflow.DocumentWithDocflowV3Protos.*;
+import static Diadoc.Api.Proto.Documents.DocumentProtos.*;
+import static Diadoc.Api.Proto.DocumentIdProtos.*;
+import static Diadoc.Api.Proto.TimeBasedFilterProtos.*;
+
+/**
+ * Local copy of the box documents, kept current by getDocflowEvents.
+ * Documents are stored in an append-only log and indexed in memory by counteragent, document type,
+ * recipient response status and last event time, so a query reads from disk only the documents it returns.
+ * A torn record at the end of the log is dropped on open, and the log is rewritten when it grows too large
+ */
+public class DocflowMirror implements AutoCloseable {
+    private static final String LOG_FILE_NAME = "docflows.log";
+    private static final int RECORD_HEADER_LENGTH = 8;
+    private static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+    private static final int MAX_PENDING_LENGTH = 1024 * 1024;
+    private static final long MIN_COMPACTION_LENGTH = 16 * 1024 * 1024;
+
+    private final DocflowClient docflowClient;
+    private final String boxId;
+    private final Path path;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, Set<Entry>> byCounteragent = new HashMap<>();
+    private final Map<String, Set<Entry>> byDocumentType = new HashMap<>();
+    private final Map<RecipientResponseStatus, Set<Entry>> byStatus = new EnumMap<>(RecipientResponseStatus.class);
+    private final TreeMap<Long, Set<Entry>> byLastEventTicks = new TreeMap<>();
+    private FileChannel channel;
+    private long logLength;
+    private long liveLength;
+    @Nullable
+    private ByteString lastIndexKey;
+    @Nullable
+    private CursorStore cursorStore;
+    @Nullable
+    private String feed;
+
+    /**
+     * @param directory the mirror keeps its log in this directory, one directory per box
+     */
+    public DocflowMirror(DocflowClient docflowClient, String boxId, Path directory) throws IOException {
+        if (docflowClient == null)
+            throw new IllegalArgumentException("docflowClient");
+        if (Tools.isNullOrEmpty(boxId))
+            throw new IllegalArgumentException("boxId");
+        if (directory == null)
+            throw new IllegalArgumentException("directory");
+
+        this.docflowClient = docflowClient;
+        this.boxId = boxId;
+        this.path = Files.createDirectories(directory).resolve(LOG_FILE_NAME);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            logLength = replay();
+            channel.truncate(logLength);
+            channel.position(logLength);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * After every sync the IndexKey of the last synced event is saved, Base64 encoded, to the cursor store under the feed name,
+     * so a docflow events cursor opened with the same feed continues from the mirror.
+     * The mirror itself resumes from its own log, which keeps the cursor together with the documents
+     */
+    public synchronized DocflowMirror setCursorStore(CursorStore cursorStore, String feed) {
+        if (cursorStore == null)
+            throw new IllegalArgumentException("cursorStore");
+        if (Tools.isNullOrEmpty(feed))
+            throw new IllegalArgumentException("feed");
+        this.cursorStore = cursorStore;
+        this.feed = feed;
+        return this;
+    }
+
+    /**
+     * Applies the events that happened since the previous sync
+     * @return number of applied events
+     */
+    public synchronized int sync() throws DiadocSdkException {
+        var request = GetDocflowEventsRequest.newBuilder()
+                .setFilter(TimeBasedFilter.newBuilder().setSortDirection(SortDirection.Ascending))
+                .setPopulateDocuments(true);
+        if (lastIndexKey != null)
+            request.setAfterIndexKey(lastIndexKey);
+
+        int applied = 0;
+        var pending = new ByteArrayOutputStream();
+        var pendingEntries = new ArrayList<Entry>();
+        try (var cursor = docflowClient.openDocflowEventsCursor(boxId, request.build(), true)) {
+            while (cursor.hasNext()) {
+                var event = cursor.next();
+                var document = event.hasDocument() ? event.getDocument() : null;
+                var entry = writeRecord(new DataOutputStream(pending), logLength + pending.size(), event.getIndexKey(), document);
+                if (entry != null)
+                    pendingEntries.add(entry);
+                applied++;
+                if (pending.size() >= MAX_PENDING_LENGTH)
+                    writePending(pending, pendingEntries, event.getIndexKey());
+            }
+            if (applied > 0) {
+                writePending(pending, pendingEntries, cursor.getLastIndexKey());
+                channel.force(false);
+                saveCursor();
+            }
+            if (logLength >= Math.max(MIN_COMPACTION_LENGTH, 2 * liveLength))
+                compact();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof DiadocSdkException
+                    ? (DiadocSdkException) e.getCause()
+                    : new DiadocSdkException(e);
+        } catch (IOException e) {
+            throw new DiadocSdkException(e);
+        }
+        return applied;
+    }
+
+    /**
+     * @return IndexKey of the last synced event
+     */
+    @Nullable
+    public ByteString getLastIndexKey() {
+        lock.readLock().lock();
+        try {
+            return lastIndexKey;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getDocumentsCount() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Nullable
+    public DocumentWithDocflowV3 getDocument(DocumentId documentId) throws DiadocSdkException {
+        if (documentId == null)
+            throw new IllegalArgumentException("documentId");
+
+        lock.readLock().lock();
+        try {
+            var entry = entries.get(toKey(documentId));
+            return entry != null ? readDocument(entry) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return documents sent to or received from the box
+     */
+    public List<DocumentWithDocflowV3> findByCounteragent(String counteragentBoxId) throws DiadocSdkException {
+        if (Tools.isNullOrEmpty(counteragentBoxId))
+            throw new IllegalArgumentException("counteragentBoxId");
+        return find(byCounteragent, counteragentBoxId);
+    }
+
+    /**
+     * @param typeNamedId TypeNamedId of the document FullVersion
+     */
+    public List<DocumentWithDocflowV3> findByDocumentType(String typeNamedId) throws DiadocSdkException {
+        if (Tools.isNullOrEmpty(typeNamedId))
+            throw new IllegalArgumentException("typeNamedId");
+        return find(byDocumentType, typeNamedId);
+    }
+
+    /**
+     * Documents without a recipient response have RecipientResponseStatusUnknown status
+     */
+    public List<DocumentWithDocflowV3> findByStatus(RecipientResponseStatus status) throws DiadocSdkException {
+        if (status == null)
+            throw new IllegalArgumentException("status");
+        return find(byStatus, status);
+    }
+
+    /**
+     * @return documents whose last event happened in [from, to), ordered by the last event time
+     */
+    public List<DocumentWithDocflowV3> findByLastEventTime(Date from, Date to) throws DiadocSdkException {
+        if (from == null)
+            throw new IllegalArgumentException("from");
+        if (to == null)
+            throw new IllegalArgumentException("to");
+
+        lock.readLock().lock();
+        try {
+            var documents = new ArrayList<DocumentWithDocflowV3>();
+            var fromTicks = Tools.toCsTicks(from.getTime());
+            var toTicks = Tools.toCsTicks(to.getTime());
+            if (fromTicks >= toTicks)
+                return documents;
+            for (var sameTicks : byLastEventTicks.subMap(fromTicks, toTicks).values()) {
+                for (var entry : sameTicks)
+                    documents.add(readDocument(entry));
+            }
+            return documents;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //the cursor is published only after the records are synced, so the store never runs ahead of the log
+    private void saveCursor() throws IOException {
+        if (cursorStore == null || lastIndexKey == null)
+            return;
+        cursorStore.save(feed, Base64.encodeBase64String(lastIndexKey.toByteArray()));
+        cursorStore.flush();
+    }
+
+    private <K> List<DocumentWithDocflowV3> find(Map<K, Set<Entry>> index, K value) throws DiadocSdkException {
+        lock.readLock().lock();
+        try {
+            var matches = index.get(value);
+            if (matches == null)
+                return new ArrayList<>();
+            //records are read in the log order, which keeps the disk access sequential
+            var sorted = new ArrayList<>(matches);
+            sorted.sort(Comparator.comparingLong(entry -> entry.recordOffset));
+            var documents = new ArrayList<DocumentWithDocflowV3>(sorted.size());
+            for (var entry : sorted)
+                documents.add(readDocument(entry));
+            return documents;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private DocumentWithDocflowV3 readDocument(Entry entry) throws DiadocSdkException {
+        try {
+            var buffer = ByteBuffer.allocate(entry.documentLength);
+            long position = entry.recordOffset + entry.recordLength - entry.documentLength;
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0)
+                    throw new EOFException("Docflow mirror log is truncated");
+            }
+            return DocumentWithDocflowV3.parseFrom(buffer.array());
+        } catch (IOException e) {
+            throw new DiadocSdkException(e);
+        }
+    }
+
+    //documents become visible to queries only after their records are written
+    private void writePending(ByteArrayOutputStream pending, List<Entry> pendingEntries, @Nullable ByteString indexKey) throws IOException {
+        if (pending.size() > 0) {
+            var buffer = ByteBuffer.wrap(pending.toByteArray());
+            try {
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+            } catch (IOException e) {
+                channel.truncate(logLength);
+                channel.position(logLength);
+                throw e;
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            logLength += pending.size();
+            for (var entry : pendingEntries)
+                put(entry);
+            if (indexKey != null)
+                lastIndexKey = indexKey;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        pending.reset();
+        pendingEntries.clear();
+    }
+
+    //the log is rewritten with the last record of every document and the cursor, then swapped in atomically
+    private void compact() throws IOException {
+        var compactPath = path.resolveSibling(LOG_FILE_NAME + ".compact");
+        lock.writeLock().lock();
+        try {
+            var live = new ArrayList<>(entries.values());
+            live.sort(Comparator.comparingLong(entry -> entry.recordOffset));
+            var offsets = new long[live.size()];
+            long compactLength = 0;
+            try (var compactChannel = FileChannel.open(compactPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (int i = 0; i < live.size(); i++) {
+                    var entry = live.get(i);
+                    offsets[i] = compactLength;
+                    long copied = 0;
+                    while (copied < entry.recordLength)
+                        copied += channel.transferTo(entry.recordOffset + copied, entry.recordLength - copied, compactChannel);
+                    compactLength += entry.recordLength;
+                }
+                if (lastIndexKey != null) {
+                    var cursorRecord = new ByteArrayOutputStream();
+                    writeRecord(new DataOutputStream(cursorRecord), compactLength, lastIndexKey, null);
+                    var buffer = ByteBuffer.wrap(cursorRecord.toByteArray());
+                    while (buffer.hasRemaining())
+                        compactChannel.write(buffer);
+                    compactLength += cursorRecord.size();
+                }
+                compactChannel.force(false);
+            }
+
+            channel.close();
+            try {
+                Files.move(compactPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                for (int i = 0; i < live.size(); i++)
+                    live.get(i).recordOffset = offsets[i];
+            } finally {
+                channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                logLength = channel.size();
+                channel.position(logLength);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private long replay() throws IOException {
+        long validLength = 0;
+        var input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        var crc = new CRC32();
+        while (true) {
+            try {
+                int length = input.readInt();
+                int checksum = input.readInt();
+                if (length <= 0 || length > MAX_RECORD_LENGTH)
+                    break;
+                var payload = new byte[length];
+                input.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum)
+                    break;
+
+                var record = ByteBuffer.wrap(payload);
+                var indexKey = new byte[record.getShort() & 0xFFFF];
+                record.get(indexKey);
+                if (indexKey.length > 0)
+                    lastIndexKey = ByteString.copyFrom(indexKey);
+                if (record.hasRemaining()) {
+                    var document = DocumentWithDocflowV3.parseFrom(ByteString.copyFrom(record));
+                    put(toEntry(document, validLength, RECORD_HEADER_LENGTH + length, record.remaining()));
+                }
+                validLength += RECORD_HEADER_LENGTH + length;
+            } catch (EOFException e) {
+                break;
+            }
+        }
+        return validLength;
+    }
+
+    //the record is [length][crc32][index key length][index key][document], a record without a document only moves the cursor
+    @Nullable
+    private Entry writeRecord(DataOutputStream output, long offset, ByteString indexKey, @Nullable DocumentWithDocflowV3 document) throws IOException {
+        var documentBytes = document != null ? document.toByteArray() : new byte[0];
+        int length = 2 + indexKey.size() + documentBytes.length;
+        if (indexKey.size() > 0xFFFF || length > MAX_RECORD_LENGTH)
+            throw new IOException("Docflow mirror record is too long");
+
+        var payload = ByteBuffer.allocate(length)
+                .putShort((short) indexKey.size())
+                .put(indexKey.toByteArray())
+                .put(documentBytes)
+                .array();
+        var crc = new CRC32();
+        crc.update(payload);
+        output.writeInt(length);
+        output.writeInt((int) crc.getValue());
+        output.write(payload);
+        return document != null && documentBytes.length > 0
+                ? toEntry(document, offset, RECORD_HEADER_LENGTH + length, documentBytes.length)
+                : null;
+    }
+
+    private Entry toEntry(DocumentWithDocflowV3 document, long recordOffset, int recordLength, int documentLength) {
+        var info = document.getDocumentInfo();
+        var typeNamedId = info.getFullVersion().getTypeNamedId();
+        return new Entry(
+                toKey(document.getDocumentId()),
+                recordOffset,
+                recordLength,
+                documentLength,
+                getCounteragentBoxId(info.getParticipants()),
+                Tools.isNullOrEmpty(typeNamedId) ? null : typeNamedId,
+                document.getDocflow().getRecipientResponse().getResponseStatus(),
+                document.getLastEvent().getTimestamp().getTicks());
+    }
+
+    //the counteragent is the participant other than the box itself
+    @Nullable
+    private String getCounteragentBoxId(DocumentParticipants participants) {
+        var senderBoxId = participants.getSender().getBoxId();
+        var recipientBoxId = participants.getRecipient().getBoxId();
+        var counteragentBoxId = boxId.equals(senderBoxId) ? recipientBoxId : senderBoxId;
+        return Tools.isNullOrEmpty(counteragentBoxId) ? null : counteragentBoxId;
+    }
+
+    private void put(Entry entry) {
+        var previous = entries.put(entry.key, entry);
+        if (previous != null) {
+            liveLength -= previous.recordLength;
+            removeFromIndex(byCounteragent, previous.counteragentBoxId, previous);
+            removeFromIndex(byDocumentType, previous.typeNamedId, previous);
+            removeFromIndex(byStatus, previous.status, previous);
+            removeFromIndex(byLastEventTicks, previous.lastEventTicks, previous);
+        }
+        liveLength += entry.recordLength;
+        addToIndex(byCounteragent, entry.counteragentBoxId, entry);
+        addToIndex(byDocumentType, entry.typeNamedId, entry);
+        addToIndex(byStatus, entry.status, entry);
+        addToIndex(byLastEventTicks, entry.lastEventTicks, entry);
+    }
+
+    private static <K> void addToIndex(Map<K, Set<Entry>> index, @Nullable K value, Entry entry) {
+        if (value != null)
+            index.computeIfAbsent(value, ignored -> new HashSet<>()).add(entry);
+    }
+
+    private static <K> void removeFromIndex(Map<K, Set<Entry>> index, @Nullable K value, Entry entry) {
+        if (value == null)
+            return;
+        var entries = index.get(value);
+        if (entries != null && entries.remove(entry) && entries.isEmpty())
+            index.remove(value);
+    }
+
+    private static String toKey(DocumentId documentId) {
+        return documentId.getMessageId() + "/" + documentId.getEntityId();
+    }
+
+    private static class Entry {
+        private final String key;
+        private long recordOffset;
+        private final int recordLength;
+        private final int documentLength;
+        @Nullable
+        private final String counteragentBoxId;
+        @Nullable
+        private final String typeNamedId;
+        private final RecipientResponseStatus status;
+        private final long lastEventTicks;
+
+        Entry(
+                String key,
+                long recordOffset,
+                int recordLength,
+                int documentLength,
+                @Nullable String counteragentBoxId,
+                @Nullable String typeNamedId,
+                RecipientResponseStatus status,
+                long lastEventTicks) {
+            this.key = key;
+            this.recordOffset = recordOffset;
+            this.recordLength = recordLength;
+            this.documentLength = documentLength;
+            this.counteragentBoxId = counteragentBoxId;
+            this.typeNamedId = typeNamedId;
+            this.status = status;
+            this.lastEventTicks = lastEventTicks;
+        }
+    }
+}
@@ -11,10 +11,18 @@ import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.message.BasicNameValuePair;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static Diadoc.Api.Proto.Documents.DocumentListProtos.*;
 import static Diadoc.Api.Proto.Documents.DocumentProtos.*;
@@ -30,67 +38,39 @@ public class DocumentClient {
     }
 
     public DocumentList getDocuments(DocumentsFilter filter) throws DiadocSdkException {
-        if (filter.getBoxId() == null) {
-            throw new IllegalArgumentException("boxId");
-        }
-        if (filter.getFilterCategory() == null) {
-            throw new IllegalArgumentException("filterCategory");
-        }
-
         try {
-            var url = new URIBuilder(diadocHttpClient.getBaseUrl())
-                    .setPath("/V3/GetDocuments")
-                    .addParameter("boxId", filter.getBoxId())
-                    .addParameter("filterCategory", filter.getFilterCategory());
-
-            if (!Tools.isNullOrEmpty(filter.getCounteragentBoxId())) {
-                url.addParameter("counteragentBoxId", filter.getCounteragentBoxId());
-            }
-
-            if (filter.getTimestampFrom() != null) {
-                var fromTicks = Tools.toCsTicks(filter.getTimestampFrom().getTime());
-                url.addParameter("timestampFromTicks", Long.toString(fromTicks));
-            }
-
-            if (filter.getTimestampTo() != null) {
-                var toTicks = Tools.toCsTicks(filter.getTimestampTo().getTime());
-                url.addParameter("timestampToTicks", Long.toString(toTicks));
-            }
-
-            if (!Tools.isNullOrEmpty(filter.getFromDocumentDate())) {
-                url.addParameter("fromDocumentDate", filter.getFromDocumentDate());
-            }
-
-            if (!Tools.isNullOrEmpty(filter.getToDocumentDate())) {
-                url.addParameter("toDocumentDate", filter.getToDocumentDate());
-            }
-            if (!Tools.isNullOrEmpty(filter.getDepartmentId())) {
-                url.addParameter("departmentId", filter.getDepartmentId());
-            }
-
-            if (filter.isExcludeSubdepartments()) {
-                url.addParameter("excludeSubdepartments", null);
-            }
-
-            if (!Tools.isNullOrEmpty(filter.getSortDirection())) {
-                url.addParameter("sortDirection", filter.getSortDirection());
-            }
-
-            if (filter.getAfterIndexKey() != null) {
-                url.addParameter("afterIndexKey", filter.getAfterIndexKey());
-            }
-            if (filter.getCount() != null) {
-                url.addParameter("count", filter.getCount().toString());
-            }
-
-            var request = RequestBuilder.get(url.build());
-
-            return DocumentList.parseFrom(diadocHttpClient.performRequest(request));
+            return DocumentList.parseFrom(diadocHttpClient.performRequest(buildGetDocumentsRequest(filter)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<DocumentList> getDocumentsAsync(DocumentsFilter filter) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildGetDocumentsRequest(filter), DocumentList::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * All documents matching the filter, page by page. The iterator should be closed if it is not read to the end
+     */
+    public DocumentsIterator iterateDocuments(DocumentsFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("filter");
+        }
+        return new DocumentsIterator(this, filter);
+    }
+
+    public Stream<Document> streamDocuments(DocumentsFilter filter) {
+        var iterator = iterateDocuments(filter);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
     public DocumentList getDocuments(
             String boxId,
             String filterCategory,
@@ -142,30 +122,23 @@ public class DocumentClient {
     }
 
     public Document getDocument(String boxId, String messageId, String entityId) throws DiadocSdkException {
-        if (boxId == null) {
-            throw new IllegalArgumentException("boxId");
-        }
-        if (messageId == null) {
-            throw new IllegalArgumentException("messageId");
-        }
-        if (entityId == null) {
-            throw new IllegalArgumentException("entityId");
-        }
-
         try {
-            var request = RequestBuilder.get(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/V3/GetDocument")
-                            .addParameter("boxId", boxId)
-                            .addParameter("messageId", messageId)
-                            .addParameter("entityId", entityId)
-                            .build());
-            return Document.parseFrom(diadocHttpClient.performRequest(request));
+            return Document.parseFrom(diadocHttpClient.performRequest(buildEntityRequest("/V3/GetDocument", boxId, messageId, entityId)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<Document> getDocumentAsync(String boxId, String messageId, String entityId) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildEntityRequest("/V3/GetDocument", boxId, messageId, entityId), Document::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     public void moveDocuments(DocumentsMoveOperation operation) throws DiadocSdkException {
         if (operation == null) {
             throw new IllegalArgumentException("operation");
@@ -183,25 +156,23 @@ public class DocumentClient {
     }
 
     public DocumentList getDocumentsByMessageId(String boxId, String messageId) throws DiadocSdkException {
-        if (boxId == null) {
-            throw new IllegalArgumentException("boxId");
-        }
-        if (messageId == null) {
-            throw new IllegalArgumentException("messageId");
-        }
         try {
-            var request = RequestBuilder.get(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/GetDocumentsByMessageId")
-                            .addParameter("boxId", boxId)
-                            .addParameter("messageId", messageId)
-                            .build());
-            return DocumentList.parseFrom(diadocHttpClient.performRequest(request));
+            return DocumentList.parseFrom(diadocHttpClient.performRequest(buildGetDocumentsByMessageIdRequest(boxId, messageId)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<DocumentList> getDocumentsByMessageIdAsync(String boxId, String messageId) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildGetDocumentsByMessageIdRequest(boxId, messageId), DocumentList::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     public PrepareDocumentsToSignResponse prepareDocumentsToSign(PrepareDocumentsToSignRequest documentsToSignRequest) throws DiadocSdkException {
         if (documentsToSignRequest == null) {
             throw new IllegalArgumentException("documentsToSignRequest");
@@ -220,30 +191,147 @@ public class DocumentClient {
     }
 
     public byte[] getEntityContent(String currentBoxId, String messageId, String entityId) throws IOException, DiadocSdkException {
-        if (currentBoxId == null) {
-            throw new IllegalArgumentException("boxId");
+        try {
+            return diadocHttpClient.performRequest(buildEntityRequest("/V4/GetEntityContent", currentBoxId, messageId, entityId));
+        } catch (URISyntaxException | IOException e) {
+            throw new DiadocSdkException(e);
         }
-        if (messageId == null) {
-            throw new IllegalArgumentException("messageId");
+    }
+
+    public long getEntityContent(String currentBoxId, String messageId, String entityId, Path target) throws DiadocSdkException {
+        if (target == null)
+            throw new IllegalArgumentException("target");
+
+        try {
+            return diadocHttpClient.performRequest(buildEntityRequest("/V4/GetEntityContent", currentBoxId, messageId, entityId), target);
+        } catch (URISyntaxException | IOException e) {
+            throw new DiadocSdkException(e);
         }
-        if (entityId == null) {
-            throw new IllegalArgumentException("entityId");
+    }
+
+    public long getEntityContent(String currentBoxId, String messageId, String entityId, WritableByteChannel target) throws DiadocSdkException {
+        if (target == null)
+            throw new IllegalArgumentException("target");
+
+        try {
+            return diadocHttpClient.performRequest(buildEntityRequest("/V4/GetEntityContent", currentBoxId, messageId, entityId), target);
+        } catch (URISyntaxException | IOException e) {
+            throw new DiadocSdkException(e);
         }
+    }
+
+    /**
+     * The returned stream holds an http connection until it is closed
+     */
+    public InputStream getEntityContentAsStream(String currentBoxId, String messageId, String entityId) throws DiadocSdkException {
         try {
-            var request = RequestBuilder.get(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/V4/GetEntityContent")
-                            .addParameter("boxId", currentBoxId)
-                            .addParameter("messageId", messageId)
-                            .addParameter("entityId", entityId)
-                            .build());
-            return diadocHttpClient.performRequest(request);
+            return diadocHttpClient.performRequestAsStream(buildEntityRequest("/V4/GetEntityContent", currentBoxId, messageId, entityId));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<byte[]> getEntityContentAsync(String currentBoxId, String messageId, String entityId) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildEntityRequest("/V4/GetEntityContent", currentBoxId, messageId, entityId));
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     public SignatureInfo getSignatureInfo(String boxId, String messageId, String entityId) throws DiadocSdkException {
+        try {
+            return SignatureInfo.parseFrom(diadocHttpClient.performRequest(buildEntityRequest("/GetSignatureInfo", boxId, messageId, entityId)));
+        } catch (URISyntaxException | IOException e) {
+            throw new DiadocSdkException(e);
+        }
+    }
+
+    public CompletableFuture<SignatureInfo> getSignatureInfoAsync(String boxId, String messageId, String entityId) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildEntityRequest("/GetSignatureInfo", boxId, messageId, entityId), SignatureInfo::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private RequestBuilder buildGetDocumentsRequest(DocumentsFilter filter) throws URISyntaxException {
+        if (filter.getBoxId() == null) {
+            throw new IllegalArgumentException("boxId");
+        }
+        if (filter.getFilterCategory() == null) {
+            throw new IllegalArgumentException("filterCategory");
+        }
+
+        var url = new URIBuilder(diadocHttpClient.getBaseUrl())
+                .setPath("/V3/GetDocuments")
+                .addParameter("boxId", filter.getBoxId())
+                .addParameter("filterCategory", filter.getFilterCategory());
+
+        if (!Tools.isNullOrEmpty(filter.getCounteragentBoxId())) {
+            url.addParameter("counteragentBoxId", filter.getCounteragentBoxId());
+        }
+
+        if (filter.getTimestampFrom() != null) {
+            var fromTicks = Tools.toCsTicks(filter.getTimestampFrom().getTime());
+            url.addParameter("timestampFromTicks", Long.toString(fromTicks));
+        }
+
+        if (filter.getTimestampTo() != null) {
+            var toTicks = Tools.toCsTicks(filter.getTimestampTo().getTime());
+            url.addParameter("timestampToTicks", Long.toString(toTicks));
+        }
+
+        if (!Tools.isNullOrEmpty(filter.getFromDocumentDate())) {
+            url.addParameter("fromDocumentDate", filter.getFromDocumentDate());
+        }
+
+        if (!Tools.isNullOrEmpty(filter.getToDocumentDate())) {
+            url.addParameter("toDocumentDate", filter.getToDocumentDate());
+        }
+        if (!Tools.isNullOrEmpty(filter.getDepartmentId())) {
+            url.addParameter("departmentId", filter.getDepartmentId());
+        }
+
+        if (filter.isExcludeSubdepartments()) {
+            url.addParameter("excludeSubdepartments", null);
+        }
+
+        if (!Tools.isNullOrEmpty(filter.getSortDirection())) {
+            url.addParameter("sortDirection", filter.getSortDirection());
+        }
+
+        if (filter.getAfterIndexKey() != null) {
+            url.addParameter("afterIndexKey", filter.getAfterIndexKey());
+        }
+        if (filter.getCount() != null) {
+            url.addParameter("count", filter.getCount().toString());
+        }
+
+        return RequestBuilder.get(url.build());
+    }
+
+    private RequestBuilder buildGetDocumentsByMessageIdRequest(String boxId, String messageId) throws URISyntaxException {
+        if (boxId == null) {
+            throw new IllegalArgumentException("boxId");
+        }
+        if (messageId == null) {
+            throw new IllegalArgumentException("messageId");
+        }
+
+        return RequestBuilder.get(
+                new URIBuilder(diadocHttpClient.getBaseUrl())
+                        .setPath("/GetDocumentsByMessageId")
+                        .addParameter("boxId", boxId)
+                        .addParameter("messageId", messageId)
+                        .build());
+    }
+
+    private RequestBuilder buildEntityRequest(String path, String boxId, String messageId, String entityId) throws URISyntaxException {
         if (boxId == null) {
             throw new IllegalArgumentException("boxId");
         }
@@ -254,19 +342,12 @@ public class DocumentClient {
             throw new IllegalArgumentException("entityId");
         }
 
-        try {
-            var request = RequestBuilder.get(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/GetSignatureInfo")
-                            .addParameter("boxId", boxId)
-                            .addParameter("messageId", messageId)
-                            .addParameter("entityId", entityId)
-                            .build());
-            return SignatureInfo.parseFrom(diadocHttpClient.performRequest(request));
-        } catch (URISyntaxException | IOException e) {
-            throw new DiadocSdkException(e);
-        }
+        return RequestBuilder.get(
+                new URIBuilder(diadocHttpClient.getBaseUrl())
+                        .setPath(path)
+                        .addParameter("boxId", boxId)
+                        .addParameter("messageId", messageId)
+                        .addParameter("entityId", entityId)
+                        .build());
     }
-
-
 }
@@ -153,4 +153,20 @@ public class DocumentsFilter {
         this.count = count;
         return this;
     }
+
+    public DocumentsFilter copy() {
+        return new DocumentsFilter(
+                boxId,
+                filterCategory,
+                counteragentBoxId,
+                timestampFrom,
+                timestampTo,
+                fromDocumentDate,
+                toDocumentDate,
+                departmentId,
+                excludeSubdepartments,
+                sortDirection,
+                afterIndexKey,
+                count);
+    }
 }
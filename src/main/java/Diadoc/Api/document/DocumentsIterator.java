@@ -0,0 +1,86 @@
+package Diadoc.Api.document;
+
+import Diadoc.Api.exceptions.DiadocSdkException;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+import static Diadoc.Api.Proto.Documents.DocumentListProtos.*;
+import static Diadoc.Api.Proto.Documents.DocumentProtos.*;
+
+/**
+ * Pages through getDocuments by afterIndexKey. The next page is requested as soon as the current one arrives,
+ * so it is downloaded while the current page is processed.
+ * Errors are thrown as CompletionException with DiadocSdkException cause
+ */
+public class DocumentsIterator implements Iterator<Document>, AutoCloseable {
+    private final DocumentClient documentClient;
+    private final DocumentsFilter filter;
+    @Nullable
+    private CompletableFuture<DocumentList> nextPage;
+    private Iterator<Document> currentPage;
+    private boolean closed;
+
+    DocumentsIterator(DocumentClient documentClient, DocumentsFilter filter) {
+        this.documentClient = documentClient;
+        this.filter = filter.copy();
+        this.currentPage = Collections.emptyIterator();
+        this.nextPage = documentClient.getDocumentsAsync(this.filter.copy());
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!closed && !currentPage.hasNext()) {
+            if (nextPage == null)
+                return false;
+            var page = awaitPage(nextPage);
+            nextPage = null;
+            var documents = page.getDocumentsList();
+            if (page.getHasMoreResults() && !documents.isEmpty()) {
+                filter.setAfterIndexKey(documents.get(documents.size() - 1).getIndexKey());
+                nextPage = documentClient.getDocumentsAsync(filter.copy());
+            }
+            currentPage = documents.iterator();
+        }
+        return !closed && currentPage.hasNext();
+    }
+
+    @Override
+    public Document next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return currentPage.next();
+    }
+
+    /**
+     * Stops paging, a page that is being downloaded is cancelled
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (nextPage != null) {
+            nextPage.cancel(false);
+            nextPage = null;
+        }
+    }
+
+    private DocumentList awaitPage(CompletableFuture<DocumentList> page) {
+        try {
+            return page.get();
+        } catch (ExecutionException e) {
+            close();
+            throw e.getCause() instanceof DiadocSdkException
+                    ? new CompletionException(e.getCause())
+                    : new CompletionException(new DiadocSdkException(e));
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new CompletionException(new DiadocSdkException(e));
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package Diadoc.Api.document;
+
+import Diadoc.Api.exceptions.DiadocSdkException;
+import Diadoc.Api.helpers.Tools;
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static Diadoc.Api.Proto.Events.DiadocMessage_GetApiProtos.*;
+
+/**
+ * Entity content keyed by box, message and entity, stored as one file per entity.
+ * Entity content never changes, so a cached file is served as is and only evicted when the cache outgrows maxSize.
+ * Several processes may share the directory: files are published by atomic moves,
+ * recency is kept in file modification times and eviction runs under a file lock
+ */
+public class EntityContentCache {
+    private static final String LOCK_FILE_NAME = ".lock";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private final DocumentClient documentClient;
+    private final Path directory;
+    private final long maxSize;
+    //size of this process' writes since the last eviction, other processes are accounted by the eviction scan
+    private final AtomicLong sizeEstimate = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public EntityContentCache(DocumentClient documentClient, Path directory, long maxSize) throws IOException {
+        if (documentClient == null)
+            throw new IllegalArgumentException("documentClient");
+        if (directory == null)
+            throw new IllegalArgumentException("directory");
+        if (maxSize < 1)
+            throw new IllegalArgumentException("maxSize < 1");
+
+        this.documentClient = documentClient;
+        this.directory = Files.createDirectories(directory);
+        this.maxSize = maxSize;
+        sizeEstimate.set(getCachedSize());
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public byte[] getEntityContent(String boxId, String messageId, String entityId) throws DiadocSdkException {
+        try {
+            var file = getCachedFile(boxId, messageId, entityId);
+            try {
+                return Files.readAllBytes(file);
+            } catch (NoSuchFileException e) {
+                //evicted by another process right after the lookup
+                return Files.readAllBytes(download(boxId, messageId, entityId, file));
+            }
+        } catch (IOException e) {
+            throw new DiadocSdkException(e);
+        }
+    }
+
+    /**
+     * @return number of bytes written
+     */
+    public long getEntityContent(String boxId, String messageId, String entityId, Path target) throws DiadocSdkException {
+        if (target == null)
+            throw new IllegalArgumentException("target");
+
+        try (var targetChannel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            return getEntityContent(boxId, messageId, entityId, targetChannel);
+        } catch (IOException e) {
+            throw new DiadocSdkException(e);
+        }
+    }
+
+    /**
+     * The cached file is transferred to the target without copying it through the java heap
+     * @return number of bytes written
+     */
+    public long getEntityContent(String boxId, String messageId, String entityId, WritableByteChannel target) throws DiadocSdkException {
+        if (target == null)
+            throw new IllegalArgumentException("target");
+
+        //an open file stays readable even if it is evicted meanwhile
+        try (var channel = openCachedFile(boxId, messageId, entityId)) {
+            long size = channel.size();
+            long transferred = 0;
+            while (transferred < size)
+                transferred += channel.transferTo(transferred, size - transferred, target);
+            return transferred;
+        } catch (IOException e) {
+            throw new DiadocSdkException(e);
+        }
+    }
+
+    /**
+     * Caches the content injected into the message entities by getMessage with injectEntityContent
+     */
+    public void put(String boxId, Message message) throws DiadocSdkException {
+        if (message == null)
+            throw new IllegalArgumentException("message");
+
+        for (var entity : message.getEntitiesList()) {
+            if (entity.hasContent() && entity.getContent().hasData())
+                put(boxId, message.getMessageId(), entity.getEntityId(), entity.getContent().getData().toByteArray());
+        }
+    }
+
+    public void put(String boxId, String messageId, String entityId, byte[] content) throws DiadocSdkException {
+        if (content == null)
+            throw new IllegalArgumentException("content");
+
+        try {
+            var file = getFile(boxId, messageId, entityId);
+            if (Files.exists(file))
+                return;
+            var tempFile = createTempFile(file);
+            try (var channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                var buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+            }
+            publish(tempFile, file);
+        } catch (IOException e) {
+            throw new DiadocSdkException(e);
+        }
+    }
+
+    public void invalidate(String boxId, String messageId, String entityId) throws DiadocSdkException {
+        try {
+            Files.deleteIfExists(getFile(boxId, messageId, entityId));
+        } catch (IOException e) {
+            throw new DiadocSdkException(e);
+        }
+    }
+
+    private FileChannel openCachedFile(String boxId, String messageId, String entityId) throws IOException, DiadocSdkException {
+        var file = getCachedFile(boxId, messageId, entityId);
+        try {
+            return FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            //evicted by another process right after the lookup
+            return FileChannel.open(download(boxId, messageId, entityId, file), StandardOpenOption.READ);
+        }
+    }
+
+    //a hit is marked as recently used for the eviction of every process sharing the directory
+    private Path getCachedFile(String boxId, String messageId, String entityId) throws IOException, DiadocSdkException {
+        var file = getFile(boxId, messageId, entityId);
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            hitCount.incrementAndGet();
+            return file;
+        } catch (NoSuchFileException e) {
+            return download(boxId, messageId, entityId, file);
+        }
+    }
+
+    private Path download(String boxId, String messageId, String entityId, Path file) throws IOException, DiadocSdkException {
+        missCount.incrementAndGet();
+        var tempFile = createTempFile(file);
+        try {
+            documentClient.getEntityContent(boxId, messageId, entityId, tempFile);
+        } catch (DiadocSdkException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        publish(tempFile, file);
+        return file;
+    }
+
+    private Path createTempFile(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        return Files.createFile(file.resolveSibling(file.getFileName() + "." + UUID.randomUUID() + TEMP_FILE_SUFFIX));
+    }
+
+    //concurrent writers of the same entity publish identical content, the last move wins
+    private void publish(Path tempFile, Path file) throws IOException {
+        long size;
+        try {
+            size = Files.size(tempFile);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        if (sizeEstimate.addAndGet(size) > maxSize)
+            evict();
+    }
+
+    //least recently used files are deleted until the cache shrinks to 90% of maxSize
+    private synchronized void evict() throws IOException {
+        if (sizeEstimate.get() <= maxSize)
+            return;
+
+        try (var lockChannel = FileChannel.open(directory.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            var lock = lockChannel.lock();
+            try {
+                var files = new ArrayList<CachedFile>();
+                long size = 0;
+                for (var file : listCachedFiles()) {
+                    try {
+                        var cachedFile = new CachedFile(file, Files.size(file), Files.getLastModifiedTime(file).toMillis());
+                        files.add(cachedFile);
+                        size += cachedFile.size;
+                    } catch (NoSuchFileException e) {
+                        //deleted meanwhile
+                    }
+                }
+
+                files.sort(Comparator.comparingLong(file -> file.lastUsedMillis));
+                long targetSize = maxSize / 10 * 9;
+                for (int i = 0; i < files.size() && size > targetSize; i++) {
+                    try {
+                        Files.deleteIfExists(files.get(i).path);
+                        size -= files.get(i).size;
+                    } catch (IOException e) {
+                        //the file is still open by a reader on a platform that forbids deleting it, it goes next time
+                    }
+                }
+                sizeEstimate.set(size);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    private long getCachedSize() throws IOException {
+        long size = 0;
+        for (var file : listCachedFiles()) {
+            try {
+                size += Files.size(file);
+            } catch (NoSuchFileException e) {
+                //deleted meanwhile
+            }
+        }
+        return size;
+    }
+
+    private ArrayList<Path> listCachedFiles() throws IOException {
+        try (var files = Files.walk(directory, 2)) {
+            return files
+                    .filter(file -> !file.getParent().equals(directory))
+                    //temporary files of downloads in progress have dotted names
+                    .filter(file -> file.getFileName().toString().indexOf('.') < 0)
+                    .filter(Files::isRegularFile)
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    //files are spread over 256 subdirectories by the first byte of the key hash
+    private Path getFile(String boxId, String messageId, String entityId) {
+        if (Tools.isNullOrEmpty(boxId))
+            throw new IllegalArgumentException("boxId");
+        if (Tools.isNullOrEmpty(messageId))
+            throw new IllegalArgumentException("messageId");
+        if (Tools.isNullOrEmpty(entityId))
+            throw new IllegalArgumentException("entityId");
+
+        var hash = Hex.encodeHexString(sha256(boxId + "\n" + messageId + "\n" + entityId));
+        return directory.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static byte[] sha256(String key) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class CachedFile {
+        private final Path path;
+        private final long size;
+        private final long lastUsedMillis;
+
+        CachedFile(Path path, long size, long lastUsedMillis) {
+            this.path = path;
+            this.size = size;
+            this.lastUsedMillis = lastUsedMillis;
+        }
+    }
+}
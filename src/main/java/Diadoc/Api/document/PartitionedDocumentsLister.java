@@ -0,0 +1,283 @@
+package Diadoc.Api.document;
+
+import Diadoc.Api.exceptions.DiadocSdkException;
+import Diadoc.Api.helpers.DaemonThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static Diadoc.Api.Proto.Documents.DocumentProtos.*;
+
+/**
+ * Lists documents of a time range by paging its sub-ranges concurrently.
+ * A sub-range with more than maxDocumentsPerRange documents is split further before it is paged.
+ * Documents are passed to the consumer in the order of a single getDocuments chain.
+ * A sub-range is paged at most maxBufferedPages ahead of the consumer, then its thread waits for the consumer,
+ * so no more than parallelism * maxBufferedPages pages are kept in memory
+ */
+public class PartitionedDocumentsLister implements AutoCloseable {
+    private static final long MIN_RANGE_MILLIS = 1000;
+    private static final int MAX_RANGE_SPLIT = 16;
+    private static final long CANCELLATION_CHECK_MILLIS = 100;
+
+    private final DocumentClient documentClient;
+    private final int parallelism;
+    private final ThreadPoolExecutor executor;
+    private int maxDocumentsPerRange = 10000;
+    private int maxBufferedPages = 10;
+
+    public PartitionedDocumentsLister(DocumentClient documentClient, int parallelism) {
+        if (documentClient == null)
+            throw new IllegalArgumentException("documentClient");
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism < 1");
+
+        this.documentClient = documentClient;
+        this.parallelism = parallelism;
+        //earlier ranges are taken first, so the consumer waits as little as possible
+        this.executor = new ThreadPoolExecutor(
+                parallelism,
+                parallelism,
+                0,
+                TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                new DaemonThreadFactory("diadoc-documents-lister"));
+    }
+
+    public int getMaxDocumentsPerRange() {
+        return maxDocumentsPerRange;
+    }
+
+    public PartitionedDocumentsLister setMaxDocumentsPerRange(int maxDocumentsPerRange) {
+        if (maxDocumentsPerRange < 1)
+            throw new IllegalArgumentException("maxDocumentsPerRange < 1");
+        this.maxDocumentsPerRange = maxDocumentsPerRange;
+        return this;
+    }
+
+    public int getMaxBufferedPages() {
+        return maxBufferedPages;
+    }
+
+    /**
+     * Pages of a sub-range fetched ahead of the consumer before the sub-range waits for it
+     */
+    public PartitionedDocumentsLister setMaxBufferedPages(int maxBufferedPages) {
+        if (maxBufferedPages < 1)
+            throw new IllegalArgumentException("maxBufferedPages < 1");
+        this.maxBufferedPages = maxBufferedPages;
+        return this;
+    }
+
+    /**
+     * @param filter timestampFrom and timestampTo are required, afterIndexKey is ignored
+     */
+    public void listDocuments(DocumentsFilter filter, Consumer<Document> consumer) throws DiadocSdkException {
+        if (filter == null)
+            throw new IllegalArgumentException("filter");
+        if (filter.getTimestampFrom() == null)
+            throw new IllegalArgumentException("timestampFrom");
+        if (filter.getTimestampTo() == null)
+            throw new IllegalArgumentException("timestampTo");
+        if (consumer == null)
+            throw new IllegalArgumentException("consumer");
+
+        var listing = new Listing(filter.copy().setAfterIndexKey(null));
+        var ranges = listing.split(filter.getTimestampFrom().getTime(), filter.getTimestampTo().getTime(), parallelism);
+        try {
+            for (var range : ranges)
+                listing.emit(range, consumer);
+        } finally {
+            listing.cancelled = true;
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private class Listing {
+        private final DocumentsFilter filter;
+        private final boolean descending;
+        private volatile boolean cancelled;
+        private Set<String> previousRangeKeys = Collections.emptySet();
+
+        Listing(DocumentsFilter filter) {
+            this.filter = filter;
+            this.descending = filter.getSortDirection() != null && filter.getSortDirection().toLowerCase().startsWith("desc");
+        }
+
+        //bounds of neighbouring ranges are shared, documents at a bound are dropped from the later of them
+        List<CompletableFuture<RangeResult>> split(long from, long to, int parts) {
+            parts = (int) Math.max(1, Math.min(parts, (to - from) / MIN_RANGE_MILLIS));
+            var ranges = new ArrayList<CompletableFuture<RangeResult>>(parts);
+            for (int i = 0; i < parts; i++) {
+                long rangeFrom = from + (to - from) * i / parts;
+                long rangeTo = from + (to - from) * (i + 1) / parts;
+                var range = new CompletableFuture<RangeResult>();
+                executor.execute(new RangeTask(this, rangeFrom, rangeTo, range));
+                ranges.add(range);
+            }
+            if (descending)
+                Collections.reverse(ranges);
+            return ranges;
+        }
+
+        void list(long from, long to, CompletableFuture<RangeResult> result) {
+            if (cancelled) {
+                result.cancel(false);
+                return;
+            }
+            BlockingQueue<RangePage> pages = null;
+            try {
+                var rangeFilter = filter.copy()
+                        .setTimestampFrom(new Date(from))
+                        .setTimestampTo(new Date(to));
+                var page = documentClient.getDocuments(rangeFilter);
+                if (page.getTotalCount() > maxDocumentsPerRange && to - from >= 2 * MIN_RANGE_MILLIS) {
+                    int parts = Math.min(MAX_RANGE_SPLIT, (page.getTotalCount() + maxDocumentsPerRange - 1) / maxDocumentsPerRange);
+                    result.complete(new RangeResult(null, split(from, to, Math.max(2, parts))));
+                    return;
+                }
+
+                pages = new ArrayBlockingQueue<>(maxBufferedPages);
+                result.complete(new RangeResult(pages, null));
+                if (!put(pages, new RangePage(page.getDocumentsList(), null)))
+                    return;
+                while (page.getHasMoreResults() && page.getDocumentsCount() > 0) {
+                    rangeFilter.setAfterIndexKey(page.getDocuments(page.getDocumentsCount() - 1).getIndexKey());
+                    page = documentClient.getDocuments(rangeFilter);
+                    if (!put(pages, new RangePage(page.getDocumentsList(), null)))
+                        return;
+                }
+                put(pages, RangePage.END);
+            } catch (DiadocSdkException | RuntimeException e) {
+                if (pages == null)
+                    result.completeExceptionally(e);
+                else
+                    put(pages, new RangePage(null, e));
+            }
+        }
+
+        //waits while the consumer is behind, gives up when the listing is over
+        private boolean put(BlockingQueue<RangePage> pages, RangePage page) {
+            try {
+                while (!pages.offer(page, CANCELLATION_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (cancelled)
+                        return false;
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        void emit(CompletableFuture<RangeResult> range, Consumer<Document> consumer) throws DiadocSdkException {
+            RangeResult result;
+            try {
+                result = range.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof DiadocSdkException
+                        ? (DiadocSdkException) e.getCause()
+                        : new DiadocSdkException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DiadocSdkException(e);
+            }
+
+            if (result.subRanges != null) {
+                for (var subRange : result.subRanges)
+                    emit(subRange, consumer);
+                return;
+            }
+
+            var keys = new HashSet<String>();
+            while (true) {
+                RangePage page;
+                try {
+                    page = result.pages.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new DiadocSdkException(e);
+                }
+                if (page == RangePage.END)
+                    break;
+                if (page.error != null) {
+                    throw page.error instanceof DiadocSdkException
+                            ? (DiadocSdkException) page.error
+                            : new DiadocSdkException(page.error);
+                }
+                for (var document : page.documents) {
+                    var key = document.getMessageId() + "/" + document.getEntityId();
+                    keys.add(key);
+                    if (!previousRangeKeys.contains(key))
+                        consumer.accept(document);
+                }
+            }
+            previousRangeKeys = keys;
+        }
+    }
+
+    private static class RangeResult {
+        private final BlockingQueue<RangePage> pages;
+        private final List<CompletableFuture<RangeResult>> subRanges;
+
+        RangeResult(BlockingQueue<RangePage> pages, List<CompletableFuture<RangeResult>> subRanges) {
+            this.pages = pages;
+            this.subRanges = subRanges;
+        }
+    }
+
+    //a page of a sub-range, its failure or END after the last page
+    private static class RangePage {
+        private static final RangePage END = new RangePage(Collections.emptyList(), null);
+
+        private final List<Document> documents;
+        private final Exception error;
+
+        RangePage(List<Document> documents, Exception error) {
+            this.documents = documents;
+            this.error = error;
+        }
+    }
+
+    private static class RangeTask implements Runnable, Comparable<RangeTask> {
+        private final Listing listing;
+        private final long from;
+        private final long to;
+        private final CompletableFuture<RangeResult> result;
+
+        RangeTask(Listing listing, long from, long to, CompletableFuture<RangeResult> result) {
+            this.listing = listing;
+            this.from = from;
+            this.to = to;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            listing.list(from, to, result);
+        }
+
+        @Override
+        public int compareTo(RangeTask other) {
+            return listing.descending
+                    ? Long.compare(other.to, to)
+                    : Long.compare(from, other.from);
+        }
+    }
+}
@@ -14,6 +14,7 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static Diadoc.Api.Proto.Documents.DetectTitleResponseProtos.*;
 import static Diadoc.Api.Proto.Documents.Types.DocumentTypeDescriptionProtos.*;
@@ -26,44 +27,42 @@ public class DocumentTypeClient {
     }
 
     public GetDocumentTypesResponse getDocumentTypes(String boxId) throws DiadocSdkException {
-        if (Tools.isNullOrEmpty(boxId)) {
-            throw new IllegalArgumentException("boxId");
-        }
         try {
-
-            var request = RequestBuilder.get(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/GetDocumentTypes")
-                            .addParameter("boxId", boxId)
-                            .build());
-            return GetDocumentTypesResponse.parseFrom(diadocHttpClient.performRequest(request));
+            return GetDocumentTypesResponse.parseFrom(diadocHttpClient.performRequest(buildGetDocumentTypesRequest(boxId)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
-    public DetectDocumentTypesResponse detectDocumentTypes(String boxId, String nameOnShelf) throws DiadocSdkException {
-        if (Tools.isNullOrEmpty(boxId)) {
-            throw new IllegalArgumentException("boxId");
-        }
-        if (Tools.isNullOrEmpty(nameOnShelf)) {
-            throw new IllegalArgumentException("nameOnShelf");
+    public CompletableFuture<GetDocumentTypesResponse> getDocumentTypesAsync(String boxId) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildGetDocumentTypesRequest(boxId), GetDocumentTypesResponse::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
         }
+    }
 
+    public DetectDocumentTypesResponse detectDocumentTypes(String boxId, String nameOnShelf) throws DiadocSdkException {
         try {
-            var request = RequestBuilder.get(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/DetectDocumentTypes")
-                            .addParameter("boxId", boxId)
-                            .addParameter("nameOnShelf", nameOnShelf)
-                            .build());
-            return DetectDocumentTypesResponse.parseFrom(diadocHttpClient.performRequest(request));
+            return DetectDocumentTypesResponse.parseFrom(diadocHttpClient.performRequest(buildDetectRequest("/DetectDocumentTypes", boxId, nameOnShelf)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
 
     }
 
+    public CompletableFuture<DetectDocumentTypesResponse> detectDocumentTypesAsync(String boxId, String nameOnShelf) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildDetectRequest("/DetectDocumentTypes", boxId, nameOnShelf), DetectDocumentTypesResponse::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     public DetectDocumentTypesResponse detectDocumentTypes(String boxId, byte[] content) throws DiadocSdkException {
         if (Tools.isNullOrEmpty(boxId)) {
             throw new IllegalArgumentException("boxId");
@@ -115,26 +114,23 @@ public class DocumentTypeClient {
     }
 
     public DetectTitleResponse detectDocumentTitles(String boxId, String nameOnShelf) throws DiadocSdkException {
-        if (Tools.isNullOrEmpty(boxId)) {
-            throw new IllegalArgumentException("boxId");
-        }
-        if (Tools.isNullOrEmpty(nameOnShelf)) {
-            throw new IllegalArgumentException("nameOnShelf");
-        }
-
         try {
-            var request = RequestBuilder.get(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/DetectDocumentTitles")
-                            .addParameter("boxId", boxId)
-                            .addParameter("nameOnShelf", nameOnShelf)
-                            .build());
-            return DetectTitleResponse.parseFrom(diadocHttpClient.performRequest(request));
+            return DetectTitleResponse.parseFrom(diadocHttpClient.performRequest(buildDetectRequest("/DetectDocumentTitles", boxId, nameOnShelf)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<DetectTitleResponse> detectDocumentTitlesAsync(String boxId, String nameOnShelf) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildDetectRequest("/DetectDocumentTitles", boxId, nameOnShelf), DetectTitleResponse::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     public DetectTitleResponse detectDocumentTitles(String boxId, byte[] content) throws DiadocSdkException {
         if (Tools.isNullOrEmpty(boxId)) {
             throw new IllegalArgumentException("boxId");
@@ -152,4 +148,30 @@ public class DocumentTypeClient {
             throw new DiadocSdkException(e);
         }
     }
+
+    private RequestBuilder buildGetDocumentTypesRequest(String boxId) throws URISyntaxException {
+        if (Tools.isNullOrEmpty(boxId)) {
+            throw new IllegalArgumentException("boxId");
+        }
+        return RequestBuilder.get(
+                new URIBuilder(diadocHttpClient.getBaseUrl())
+                        .setPath("/GetDocumentTypes")
+                        .addParameter("boxId", boxId)
+                        .build());
+    }
+
+    private RequestBuilder buildDetectRequest(String path, String boxId, String nameOnShelf) throws URISyntaxException {
+        if (Tools.isNullOrEmpty(boxId)) {
+            throw new IllegalArgumentException("boxId");
+        }
+        if (Tools.isNullOrEmpty(nameOnShelf)) {
+            throw new IllegalArgumentException("nameOnShelf");
+        }
+        return RequestBuilder.get(
+                new URIBuilder(diadocHttpClient.getBaseUrl())
+                        .setPath(path)
+                        .addParameter("boxId", boxId)
+                        .addParameter("nameOnShelf", nameOnShelf)
+                        .build());
+    }
 }
@@ -9,6 +9,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.concurrent.CompletableFuture;
 
 import static Diadoc.Api.Proto.Employees.EmployeeProtos.Employee;
 import static Diadoc.Api.Proto.Employees.EmployeeProtos.EmployeeList;
@@ -97,36 +98,23 @@ public class EmployeeClient {
     }
 
     public EmployeeList getEmployees(String boxId, @Nullable Integer page, @Nullable Integer count) throws DiadocSdkException {
-        if (boxId == null) {
-            throw new IllegalArgumentException("boxId");
-        }
-        if (page != null && page < 1) {
-            throw new IllegalArgumentException("page must be 1 or greater");
-        }
-        if (count != null && count < 1) {
-            throw new IllegalArgumentException("count must be 1 or greater");
-        }
-
         try {
-            var url = new URIBuilder(diadocHttpClient.getBaseUrl())
-                    .setPath("/GetEmployees")
-                    .addParameter("boxId", boxId);
-
-            if (page != null) {
-                url.addParameter("page", Integer.toString(page));
-            }
-
-            if (count != null) {
-                url.addParameter("count", Integer.toString(count));
-            }
-
-            var request = RequestBuilder.get(url.build());
-            return EmployeeList.parseFrom(diadocHttpClient.performRequest(request));
+            return EmployeeList.parseFrom(diadocHttpClient.performRequest(buildGetEmployeesRequest(boxId, page, count)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<EmployeeList> getEmployeesAsync(String boxId, @Nullable Integer page, @Nullable Integer count) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildGetEmployeesRequest(boxId, page, count), EmployeeList::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     public EmployeeList getEmployees(String boxId) throws DiadocSdkException {
         return getEmployees(boxId, null, null);
     }
@@ -136,63 +124,59 @@ public class EmployeeClient {
     }
 
     public Employee getEmployee(String boxId, String userId) throws DiadocSdkException {
-        if (boxId == null) {
-            throw new IllegalArgumentException("boxId");
-        }
-        if (userId == null) {
-            throw new IllegalArgumentException("userId");
-        }
-
         try {
-            var request = RequestBuilder.get(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/GetEmployee")
-                            .addParameter("boxId", boxId)
-                            .addParameter("userId", userId)
-                            .build());
-            return Employee.parseFrom(diadocHttpClient.performRequest(request));
+            return Employee.parseFrom(diadocHttpClient.performRequest(buildBoxRequest("/GetEmployee", boxId, "userId", userId)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
-    public Employee getMyEmployee(String boxId) throws DiadocSdkException {
-        if (boxId == null) {
-            throw new IllegalArgumentException("boxId");
+    public CompletableFuture<Employee> getEmployeeAsync(String boxId, String userId) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildBoxRequest("/GetEmployee", boxId, "userId", userId), Employee::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
         }
+    }
+
+    public Employee getMyEmployee(String boxId) throws DiadocSdkException {
         try {
-            var request = RequestBuilder.get(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/GetMyEmployee")
-                            .addParameter("boxId", boxId)
-                            .build());
-            return Employee.parseFrom(diadocHttpClient.performRequest(request));
+            return Employee.parseFrom(diadocHttpClient.performRequest(buildBoxRequest("/GetMyEmployee", boxId, null, null)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
-    public EmployeeSubscriptions getSubscriptions(String boxId, String userId) throws DiadocSdkException {
-        if (boxId == null) {
-            throw new IllegalArgumentException("boxId");
-        }
-        if (userId == null) {
-            throw new IllegalArgumentException("userId");
+    public CompletableFuture<Employee> getMyEmployeeAsync(String boxId) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildBoxRequest("/GetMyEmployee", boxId, null, null), Employee::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
         }
+    }
 
+    public EmployeeSubscriptions getSubscriptions(String boxId, String userId) throws DiadocSdkException {
         try {
-            var request = RequestBuilder.get(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/GetSubscriptions")
-                            .addParameter("boxId", boxId)
-                            .addParameter("userId", userId)
-                            .build());
-            return EmployeeSubscriptions.parseFrom(diadocHttpClient.performRequest(request));
+            return EmployeeSubscriptions.parseFrom(diadocHttpClient.performRequest(buildBoxRequest("/GetSubscriptions", boxId, "userId", userId)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<EmployeeSubscriptions> getSubscriptionsAsync(String boxId, String userId) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildBoxRequest("/GetSubscriptions", boxId, "userId", userId), EmployeeSubscriptions::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     public EmployeeSubscriptions updateSubscriptions(String boxId, String userId, SubscriptionsToUpdate subscriptionsToUpdate) throws DiadocSdkException {
         if (boxId == null) {
             throw new IllegalArgumentException("boxId");
@@ -218,4 +202,47 @@ public class EmployeeClient {
             throw new DiadocSdkException(e);
         }
     }
+
+    private RequestBuilder buildGetEmployeesRequest(String boxId, @Nullable Integer page, @Nullable Integer count) throws URISyntaxException {
+        if (boxId == null) {
+            throw new IllegalArgumentException("boxId");
+        }
+        if (page != null && page < 1) {
+            throw new IllegalArgumentException("page must be 1 or greater");
+        }
+        if (count != null && count < 1) {
+            throw new IllegalArgumentException("count must be 1 or greater");
+        }
+
+        var url = new URIBuilder(diadocHttpClient.getBaseUrl())
+                .setPath("/GetEmployees")
+                .addParameter("boxId", boxId);
+
+        if (page != null) {
+            url.addParameter("page", Integer.toString(page));
+        }
+
+        if (count != null) {
+            url.addParameter("count", Integer.toString(count));
+        }
+
+        return RequestBuilder.get(url.build());
+    }
+
+    private RequestBuilder buildBoxRequest(String path, String boxId, @Nullable String name, @Nullable String value) throws URISyntaxException {
+        if (boxId == null) {
+            throw new IllegalArgumentException("boxId");
+        }
+        if (name != null && value == null) {
+            throw new IllegalArgumentException(name);
+        }
+
+        var url = new URIBuilder(diadocHttpClient.getBaseUrl())
+                .setPath(path)
+                .addParameter("boxId", boxId);
+        if (name != null) {
+            url.addParameter(name, value);
+        }
+        return RequestBuilder.get(url.build());
+    }
 }
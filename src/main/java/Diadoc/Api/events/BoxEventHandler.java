@@ -0,0 +1,8 @@
+package Diadoc.Api.events;
+
+import static Diadoc.Api.Proto.Events.DiadocMessage_GetApiProtos.*;
+
+@FunctionalInterface
+public interface BoxEventHandler {
+    void handle(String boxId, BoxEvent event) throws Exception;
+}
@@ -8,6 +8,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.concurrent.CompletableFuture;
 
 import static Diadoc.Api.Proto.Events.DiadocMessage_GetApiProtos.*;
 
@@ -19,62 +20,101 @@ public class EventsClient {
     }
 
     public BoxEventList getNewEvents(String currentBoxId, @Nullable String eventIdCurrent) throws DiadocSdkException {
-        if (currentBoxId == null) {
-            throw new IllegalArgumentException("currentBoxId");
+        try {
+            return BoxEventList.parseFrom(diadocHttpClient.performRequest(buildGetNewEventsRequest(currentBoxId, eventIdCurrent)));
+        } catch (URISyntaxException | IOException e) {
+            throw new DiadocSdkException(e);
         }
+    }
 
+    public CompletableFuture<BoxEventList> getNewEventsAsync(String currentBoxId, @Nullable String eventIdCurrent) {
         try {
-            var url = new URIBuilder(diadocHttpClient.getBaseUrl())
-                    .setPath("/V6/GetNewEvents")
-                    .addParameter("boxId", currentBoxId)
-                    .addParameter("includeDrafts", null);
-
-            if (eventIdCurrent != null) {
-                url.addParameter("afterEventId", eventIdCurrent);
-            }
+            return diadocHttpClient.performRequestAsync(buildGetNewEventsRequest(currentBoxId, eventIdCurrent), BoxEventList::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
-            var request = RequestBuilder.get(url.build());
-            return BoxEventList.parseFrom(diadocHttpClient.performRequest(request));
+    public BoxEvent getLastEvent(String boxId) throws DiadocSdkException {
+        try {
+            return BoxEvent.parseFrom(diadocHttpClient.performRequest(buildGetLastEventRequest(boxId)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
-    public BoxEvent getLastEvent(String boxId) throws DiadocSdkException {
-        if (boxId == null) {
-            throw new IllegalArgumentException("boxId");
+    public CompletableFuture<BoxEvent> getLastEventAsync(String boxId) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildGetLastEventRequest(boxId), BoxEvent::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
         }
+    }
 
+    public BoxEvent getEvent(String boxId, String eventId) throws DiadocSdkException {
         try {
-            var request = RequestBuilder.get(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/GetLastEvent")
-                            .addParameter("boxId", boxId).build());
-            return BoxEvent.parseFrom(diadocHttpClient.performRequest(request));
+            return BoxEvent.parseFrom(diadocHttpClient.performRequest(buildGetEventRequest(boxId, eventId)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
-    public BoxEvent getEvent(String boxId, String eventId) throws DiadocSdkException {
+    public CompletableFuture<BoxEvent> getEventAsync(String boxId, String eventId) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildGetEventRequest(boxId, eventId), BoxEvent::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private RequestBuilder buildGetNewEventsRequest(String currentBoxId, @Nullable String eventIdCurrent) throws URISyntaxException {
+        if (currentBoxId == null) {
+            throw new IllegalArgumentException("currentBoxId");
+        }
+
+        var url = new URIBuilder(diadocHttpClient.getBaseUrl())
+                .setPath("/V6/GetNewEvents")
+                .addParameter("boxId", currentBoxId)
+                .addParameter("includeDrafts", null);
+
+        if (eventIdCurrent != null) {
+            url.addParameter("afterEventId", eventIdCurrent);
+        }
+
+        return RequestBuilder.get(url.build());
+    }
+
+    private RequestBuilder buildGetLastEventRequest(String boxId) throws URISyntaxException {
+        if (boxId == null) {
+            throw new IllegalArgumentException("boxId");
+        }
+
+        return RequestBuilder.get(
+                new URIBuilder(diadocHttpClient.getBaseUrl())
+                        .setPath("/GetLastEvent")
+                        .addParameter("boxId", boxId).build());
+    }
+
+    private RequestBuilder buildGetEventRequest(String boxId, String eventId) throws URISyntaxException {
         if (boxId == null) {
             throw new IllegalArgumentException("boxId");
         }
         if (eventId == null) {
             throw new IllegalArgumentException("eventId");
         }
-        try {
 
-            var request = RequestBuilder.get(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/V2/GetEvent")
-                            .addParameter("boxId", boxId)
-                            .addParameter("eventId", eventId)
-                            .build());
-            return BoxEvent.parseFrom(diadocHttpClient.performRequest(request));
-        } catch (URISyntaxException | IOException e) {
-            throw new DiadocSdkException(e);
-        }
+        return RequestBuilder.get(
+                new URIBuilder(diadocHttpClient.getBaseUrl())
+                        .setPath("/V2/GetEvent")
+                        .addParameter("boxId", boxId)
+                        .addParameter("eventId", eventId)
+                        .build());
     }
 
 }
@@ -0,0 +1,262 @@
+package Diadoc.Api.events;
+
+import Diadoc.Api.helpers.DaemonThreadFactory;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static Diadoc.Api.Proto.Events.DiadocMessage_GetApiProtos.*;
+
+public class EventsPoller implements AutoCloseable {
+    static final int EVENTS_PAGE_SIZE = 100;
+
+    private final EventsClient eventsClient;
+    private final EventsPollerOptions options;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService handlerExecutor;
+    private final Map<String, BoxSubscription> subscriptions = new ConcurrentHashMap<>();
+
+    public EventsPoller(EventsClient eventsClient) {
+        this(eventsClient, new EventsPollerOptions());
+    }
+
+    public EventsPoller(EventsClient eventsClient, EventsPollerOptions options) {
+        if (eventsClient == null)
+            throw new IllegalArgumentException("eventsClient");
+        if (options == null)
+            throw new IllegalArgumentException("options");
+
+        this.eventsClient = eventsClient;
+        this.options = options;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("diadoc-events-poller"));
+        this.handlerExecutor = Executors.newFixedThreadPool(options.getHandlerThreads(), new DaemonThreadFactory("diadoc-events-handler"));
+    }
+
+    /**
+     * Polling starts after the event saved in the cursor store, or from the beginning of the feed
+     */
+    public void subscribe(String boxId, BoxEventHandler handler) throws IOException {
+        if (boxId == null)
+            throw new IllegalArgumentException("boxId");
+
+        var cursorStore = options.getCursorStore();
+        subscribe(boxId, cursorStore != null ? cursorStore.load(getFeed(boxId)) : null, handler);
+    }
+
+    /**
+     * Events of the box are passed to the handler one by one in the feed order, starting after afterEventId
+     */
+    public void subscribe(String boxId, @Nullable String afterEventId, BoxEventHandler handler) {
+        if (boxId == null)
+            throw new IllegalArgumentException("boxId");
+        if (handler == null)
+            throw new IllegalArgumentException("handler");
+
+        var subscription = new BoxSubscription(boxId, afterEventId, handler, options.getMaxQueuedEvents());
+        if (subscriptions.putIfAbsent(boxId, subscription) != null)
+            throw new IllegalStateException("Box " + boxId + " is already subscribed");
+        scheduler.execute(() -> poll(subscription));
+    }
+
+    /**
+     * @return id of the last handled event of the box
+     */
+    @Nullable
+    public String unsubscribe(String boxId) {
+        var subscription = subscriptions.remove(boxId);
+        if (subscription == null)
+            return null;
+        subscription.closed = true;
+        flushCursorStore(boxId);
+        return subscription.lastEventId;
+    }
+
+    /**
+     * @return id of the last handled event of the box, polling resumes from it after a restart
+     */
+    @Nullable
+    public String getLastEventId(String boxId) {
+        var subscription = subscriptions.get(boxId);
+        return subscription != null ? subscription.lastEventId : null;
+    }
+
+    @Override
+    public void close() {
+        for (var boxId : subscriptions.keySet())
+            unsubscribe(boxId);
+        scheduler.shutdownNow();
+        handlerExecutor.shutdown();
+    }
+
+    private void poll(BoxSubscription subscription) {
+        if (subscription.closed)
+            return;
+
+        //the handler is behind, polling resumes when the queue is drained
+        if (subscription.queue.remainingCapacity() < EVENTS_PAGE_SIZE) {
+            subscription.waitingForCapacity = true;
+            if (subscription.queue.remainingCapacity() >= EVENTS_PAGE_SIZE && subscription.resumePolling())
+                scheduler.execute(() -> poll(subscription));
+            return;
+        }
+
+        eventsClient.getNewEventsAsync(subscription.boxId, subscription.fetchedEventId).whenComplete((eventList, e) -> {
+            if (e != null) {
+                options.getErrorHandler().accept(subscription.boxId, e);
+                schedulePoll(subscription, subscription.backOff());
+                return;
+            }
+
+            for (var event : eventList.getEventsList()) {
+                subscription.queue.add(event);
+                subscription.fetchedEventId = event.getEventId();
+            }
+            scheduleDrain(subscription);
+
+            if (eventList.getTotalCount() > eventList.getEventsCount())
+                schedulePoll(subscription, 0);
+            else if (eventList.getEventsCount() > 0)
+                schedulePoll(subscription, subscription.resetInterval());
+            else
+                schedulePoll(subscription, subscription.backOff());
+        });
+    }
+
+    private void schedulePoll(BoxSubscription subscription, long delayNanos) {
+        if (subscription.closed || scheduler.isShutdown())
+            return;
+        scheduler.schedule(() -> poll(subscription), delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    //a failed event waits for its retry time, events polled behind it do not bring the retry forward
+    private void scheduleDrain(BoxSubscription subscription) {
+        if (!subscription.queue.isEmpty() && subscription.tryStartDrain())
+            handlerExecutor.execute(() -> drain(subscription));
+    }
+
+    //only one drain of a box runs at a time, so events of the box are handled in order
+    private void drain(BoxSubscription subscription) {
+        boolean failed = false;
+        try {
+            BoxEvent event;
+            while (!subscription.closed && (event = subscription.queue.peek()) != null) {
+                try {
+                    subscription.handler.handle(subscription.boxId, event);
+                } catch (Exception e) {
+                    options.getErrorHandler().accept(subscription.boxId, e);
+                    //set before the drain ends, so a poll completing meanwhile does not start it again
+                    subscription.delayRetry(options.getMaxPollInterval().toNanos());
+                    failed = true;
+                    break;
+                }
+                subscription.queue.poll();
+                subscription.lastEventId = event.getEventId();
+                saveCursor(subscription.boxId, event.getEventId());
+
+                if (subscription.queue.remainingCapacity() >= EVENTS_PAGE_SIZE && subscription.resumePolling())
+                    schedulePoll(subscription, 0);
+            }
+        } finally {
+            subscription.draining.set(false);
+        }
+
+        //failed event stays at the head of the queue and is handled again after maxPollInterval
+        if (failed) {
+            if (!subscription.closed && !scheduler.isShutdown())
+                scheduler.schedule(() -> scheduleDrain(subscription), options.getMaxPollInterval().toNanos(), TimeUnit.NANOSECONDS);
+        } else if (!subscription.closed) {
+            scheduleDrain(subscription);
+        }
+    }
+
+    private void saveCursor(String boxId, String eventId) {
+        var cursorStore = options.getCursorStore();
+        if (cursorStore == null)
+            return;
+        try {
+            cursorStore.save(getFeed(boxId), eventId);
+        } catch (IOException e) {
+            options.getErrorHandler().accept(boxId, e);
+        }
+    }
+
+    private void flushCursorStore(String boxId) {
+        var cursorStore = options.getCursorStore();
+        if (cursorStore == null)
+            return;
+        try {
+            cursorStore.flush();
+        } catch (IOException e) {
+            options.getErrorHandler().accept(boxId, e);
+        }
+    }
+
+    private static String getFeed(String boxId) {
+        return "events:" + boxId;
+    }
+
+    private class BoxSubscription {
+        final String boxId;
+        final BoxEventHandler handler;
+        final BlockingQueue<BoxEvent> queue;
+        final AtomicBoolean draining = new AtomicBoolean();
+        @Nullable
+        volatile String fetchedEventId;
+        @Nullable
+        volatile String lastEventId;
+        volatile boolean closed;
+        volatile boolean waitingForCapacity;
+        private long intervalNanos;
+        private boolean retryPending;
+        private long retryAtNanos;
+
+        BoxSubscription(String boxId, @Nullable String afterEventId, BoxEventHandler handler, int maxQueuedEvents) {
+            this.boxId = boxId;
+            this.handler = handler;
+            this.queue = new ArrayBlockingQueue<>(maxQueuedEvents);
+            this.fetchedEventId = afterEventId;
+            this.lastEventId = afterEventId;
+            this.intervalNanos = options.getMinPollInterval().toNanos();
+        }
+
+        synchronized boolean resumePolling() {
+            if (!waitingForCapacity)
+                return false;
+            waitingForCapacity = false;
+            return true;
+        }
+
+        synchronized void delayRetry(long delayNanos) {
+            retryPending = true;
+            retryAtNanos = System.nanoTime() + delayNanos;
+        }
+
+        //checked together with draining, so a drain failing meanwhile cannot be started again before its retry time
+        synchronized boolean tryStartDrain() {
+            if (retryPending && System.nanoTime() - retryAtNanos < 0)
+                return false;
+            retryPending = false;
+            return draining.compareAndSet(false, true);
+        }
+
+        synchronized long resetInterval() {
+            intervalNanos = options.getMinPollInterval().toNanos();
+            return intervalNanos;
+        }
+
+        synchronized long backOff() {
+            long delay = intervalNanos;
+            intervalNanos = Math.min(Math.max(1, intervalNanos) * 2, options.getMaxPollInterval().toNanos());
+            return delay;
+        }
+    }
+}
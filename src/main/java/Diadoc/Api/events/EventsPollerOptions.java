@@ -0,0 +1,88 @@
+package Diadoc.Api.events;
+
+import Diadoc.Api.cursor.CursorStore;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.function.BiConsumer;
+
+public class EventsPollerOptions {
+    private Duration minPollInterval = Duration.ofSeconds(1);
+    private Duration maxPollInterval = Duration.ofMinutes(1);
+    private int maxQueuedEvents = 1000;
+    private int handlerThreads = 1;
+    private BiConsumer<String, Throwable> errorHandler = (boxId, e) -> e.printStackTrace();
+    @Nullable
+    private CursorStore cursorStore;
+
+    public Duration getMinPollInterval() {
+        return minPollInterval;
+    }
+
+    public Duration getMaxPollInterval() {
+        return maxPollInterval;
+    }
+
+    /**
+     * A box is polled again after minPollInterval while it has new events,
+     * the interval doubles after every empty page up to maxPollInterval
+     */
+    public EventsPollerOptions setPollIntervals(Duration minPollInterval, Duration maxPollInterval) {
+        if (minPollInterval == null || minPollInterval.isNegative())
+            throw new IllegalArgumentException("minPollInterval");
+        if (maxPollInterval == null || maxPollInterval.compareTo(minPollInterval) < 0)
+            throw new IllegalArgumentException("maxPollInterval");
+        this.minPollInterval = minPollInterval;
+        this.maxPollInterval = maxPollInterval;
+        return this;
+    }
+
+    public int getMaxQueuedEvents() {
+        return maxQueuedEvents;
+    }
+
+    /**
+     * Polling of a box is paused while this many of its events are waiting for the handler
+     */
+    public EventsPollerOptions setMaxQueuedEvents(int maxQueuedEvents) {
+        if (maxQueuedEvents < EventsPoller.EVENTS_PAGE_SIZE)
+            throw new IllegalArgumentException("maxQueuedEvents < " + EventsPoller.EVENTS_PAGE_SIZE);
+        this.maxQueuedEvents = maxQueuedEvents;
+        return this;
+    }
+
+    public int getHandlerThreads() {
+        return handlerThreads;
+    }
+
+    public EventsPollerOptions setHandlerThreads(int handlerThreads) {
+        if (handlerThreads < 1)
+            throw new IllegalArgumentException("handlerThreads < 1");
+        this.handlerThreads = handlerThreads;
+        return this;
+    }
+
+    @Nullable
+    public CursorStore getCursorStore() {
+        return cursorStore;
+    }
+
+    /**
+     * Id of every handled event is saved to the store, so subscription without afterEventId resumes from it
+     */
+    public EventsPollerOptions setCursorStore(@Nullable CursorStore cursorStore) {
+        this.cursorStore = cursorStore;
+        return this;
+    }
+
+    public BiConsumer<String, Throwable> getErrorHandler() {
+        return errorHandler;
+    }
+
+    public EventsPollerOptions setErrorHandler(BiConsumer<String, Throwable> errorHandler) {
+        if (errorHandler == null)
+            throw new IllegalArgumentException("errorHandler");
+        this.errorHandler = errorHandler;
+        return this;
+    }
+}
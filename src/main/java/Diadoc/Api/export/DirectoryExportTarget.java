@@ -0,0 +1,32 @@
+package Diadoc.Api.export;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Moves exported files into a directory tree, so content is not copied when the directory is on the same disk as the temporary files
+ */
+public class DirectoryExportTarget implements DocumentsExportTarget {
+    private final Path directory;
+
+    public DirectoryExportTarget(Path directory) throws IOException {
+        if (directory == null)
+            throw new IllegalArgumentException("directory");
+        this.directory = Files.createDirectories(directory);
+    }
+
+    @Override
+    public void write(String name, Path file) throws IOException {
+        var target = directory.resolve(name);
+        if (!target.normalize().startsWith(directory.normalize()))
+            throw new IOException("Exported file " + name + " is outside of the export directory");
+        Files.createDirectories(target.getParent());
+        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,108 @@
+package Diadoc.Api.export;
+
+import Diadoc.Api.cursor.CursorStore;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+public class DocumentsExportOptions {
+    private int fetchThreads = 4;
+    private int queueCapacity = 32;
+    private boolean withPrintForms;
+    private Duration printFormTimeout = Duration.ofMinutes(5);
+    @Nullable
+    private CursorStore cursorStore;
+    @Nullable
+    private String checkpointFeed;
+    private Consumer<DocumentsExportStats> progressHandler = stats -> {};
+
+    public int getFetchThreads() {
+        return fetchThreads;
+    }
+
+    /**
+     * Documents are downloaded by this many threads at a time
+     */
+    public DocumentsExportOptions setFetchThreads(int fetchThreads) {
+        if (fetchThreads < 1)
+            throw new IllegalArgumentException("fetchThreads < 1");
+        this.fetchThreads = fetchThreads;
+        return this;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Listed and downloaded documents waiting for the next stage, a stage stops when the queue after it is full
+     */
+    public DocumentsExportOptions setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 1)
+            throw new IllegalArgumentException("queueCapacity < 1");
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    public boolean isWithPrintForms() {
+        return withPrintForms;
+    }
+
+    public DocumentsExportOptions setWithPrintForms(boolean withPrintForms) {
+        this.withPrintForms = withPrintForms;
+        return this;
+    }
+
+    public Duration getPrintFormTimeout() {
+        return printFormTimeout;
+    }
+
+    /**
+     * The export fails if a print form is not generated in this time
+     */
+    public DocumentsExportOptions setPrintFormTimeout(Duration printFormTimeout) {
+        if (printFormTimeout == null || printFormTimeout.isNegative())
+            throw new IllegalArgumentException("printFormTimeout");
+        this.printFormTimeout = printFormTimeout;
+        return this;
+    }
+
+    @Nullable
+    public CursorStore getCursorStore() {
+        return cursorStore;
+    }
+
+    @Nullable
+    public String getCheckpointFeed() {
+        return checkpointFeed;
+    }
+
+    /**
+     * IndexKey of the last document before which all documents are exported is saved to the store,
+     * an export with the same feed resumes after it
+     */
+    public DocumentsExportOptions setCheckpoint(CursorStore cursorStore, String checkpointFeed) {
+        if (cursorStore == null)
+            throw new IllegalArgumentException("cursorStore");
+        if (checkpointFeed == null)
+            throw new IllegalArgumentException("checkpointFeed");
+        this.cursorStore = cursorStore;
+        this.checkpointFeed = checkpointFeed;
+        return this;
+    }
+
+    public Consumer<DocumentsExportStats> getProgressHandler() {
+        return progressHandler;
+    }
+
+    /**
+     * Called after every written document
+     */
+    public DocumentsExportOptions setProgressHandler(Consumer<DocumentsExportStats> progressHandler) {
+        if (progressHandler == null)
+            throw new IllegalArgumentException("progressHandler");
+        this.progressHandler = progressHandler;
+        return this;
+    }
+}
@@ -0,0 +1,52 @@
+package Diadoc.Api.export;
+
+import java.time.Duration;
+
+public class DocumentsExportStats {
+    private final long documentsCount;
+    private final long filesCount;
+    private final long bytesCount;
+    private final Duration elapsed;
+
+    public DocumentsExportStats(long documentsCount, long filesCount, long bytesCount, Duration elapsed) {
+        this.documentsCount = documentsCount;
+        this.filesCount = filesCount;
+        this.bytesCount = bytesCount;
+        this.elapsed = elapsed;
+    }
+
+    public long getDocumentsCount() {
+        return documentsCount;
+    }
+
+    public long getFilesCount() {
+        return filesCount;
+    }
+
+    public long getBytesCount() {
+        return bytesCount;
+    }
+
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    public double getDocumentsPerSecond() {
+        return perSecond(documentsCount);
+    }
+
+    public double getBytesPerSecond() {
+        return perSecond(bytesCount);
+    }
+
+    private double perSecond(long count) {
+        long millis = elapsed.toMillis();
+        return millis > 0 ? count * 1000.0 / millis : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d documents, %d files, %d bytes in %s (%.1f documents/s, %.0f bytes/s)",
+                documentsCount, filesCount, bytesCount, elapsed, getDocumentsPerSecond(), getBytesPerSecond());
+    }
+}
@@ -0,0 +1,13 @@
+package Diadoc.Api.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+public interface DocumentsExportTarget extends Closeable {
+    /**
+     * @param name '/' separated relative path of the exported file
+     * @param file downloaded content, the target may move it, otherwise it is deleted after the call
+     */
+    void write(String name, Path file) throws IOException;
+}
@@ -0,0 +1,303 @@
+package Diadoc.Api.export;
+
+import Diadoc.Api.document.DocumentClient;
+import Diadoc.Api.document.DocumentsFilter;
+import Diadoc.Api.exceptions.DiadocSdkException;
+import Diadoc.Api.helpers.DaemonThreadFactory;
+import Diadoc.Api.helpers.Tools;
+import Diadoc.Api.message.MessageClient;
+import Diadoc.Api.print.PrintFormClient;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static Diadoc.Api.Proto.Documents.DocumentProtos.*;
+import static Diadoc.Api.Proto.Events.DiadocMessage_GetApiProtos.*;
+
+/**
+ * Exports documents with their signatures and, optionally, print forms.
+ * Documents are listed by one thread, downloaded into temporary files by fetchThreads threads
+ * and written to the target by the calling thread. Bounded queues between the stages keep
+ * at most queueCapacity documents in each of them, a stage waits while the next one is behind.
+ * The export stops at the first failure, and with a checkpoint it resumes from the first document not written yet.
+ * A resumed export writes only the remaining documents, so a ZIP target should be a new archive
+ */
+public class DocumentsExporter {
+    private static final ListedDocument LISTING_END = new ListedDocument(-1, null);
+    private static final FetchedDocument FETCHING_END = new FetchedDocument(null, null, null);
+
+    private final DocumentClient documentClient;
+    private final MessageClient messageClient;
+    private final PrintFormClient printFormClient;
+    private final DocumentsExportOptions options;
+
+    public DocumentsExporter(DocumentClient documentClient, MessageClient messageClient, PrintFormClient printFormClient) {
+        this(documentClient, messageClient, printFormClient, new DocumentsExportOptions());
+    }
+
+    public DocumentsExporter(DocumentClient documentClient, MessageClient messageClient, PrintFormClient printFormClient, DocumentsExportOptions options) {
+        if (documentClient == null)
+            throw new IllegalArgumentException("documentClient");
+        if (messageClient == null)
+            throw new IllegalArgumentException("messageClient");
+        if (printFormClient == null)
+            throw new IllegalArgumentException("printFormClient");
+        if (options == null)
+            throw new IllegalArgumentException("options");
+
+        this.documentClient = documentClient;
+        this.messageClient = messageClient;
+        this.printFormClient = printFormClient;
+        this.options = options;
+    }
+
+    /**
+     * Files of a document are written to "messageId_entityId/" of the target. The target is not closed
+     */
+    public DocumentsExportStats export(DocumentsFilter filter, DocumentsExportTarget target) throws DiadocSdkException {
+        if (filter == null || Tools.isNullOrEmpty(filter.getBoxId()))
+            throw new IllegalArgumentException("filter");
+        if (target == null)
+            throw new IllegalArgumentException("target");
+
+        var exportFilter = filter.copy();
+        var cursorStore = options.getCursorStore();
+        Path tempDirectory;
+        try {
+            if (cursorStore != null) {
+                var checkpoint = cursorStore.load(options.getCheckpointFeed());
+                if (checkpoint != null)
+                    exportFilter.setAfterIndexKey(checkpoint);
+            }
+            tempDirectory = Files.createTempDirectory("diadoc-export");
+        } catch (IOException e) {
+            throw new DiadocSdkException(e);
+        }
+
+        var listed = new ArrayBlockingQueue<ListedDocument>(options.getQueueCapacity());
+        var fetched = new ArrayBlockingQueue<FetchedDocument>(options.getQueueCapacity());
+        var executor = Executors.newFixedThreadPool(options.getFetchThreads() + 1, new DaemonThreadFactory("diadoc-export"));
+        try {
+            executor.execute(() -> list(exportFilter, listed, fetched));
+            for (int i = 0; i < options.getFetchThreads(); i++)
+                executor.execute(() -> fetch(exportFilter.getBoxId(), tempDirectory, listed, fetched));
+            return write(target, fetched);
+        } catch (IOException e) {
+            throw new DiadocSdkException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DiadocSdkException(e);
+        } finally {
+            executor.shutdownNow();
+            awaitTermination(executor);
+            deleteDirectory(tempDirectory);
+        }
+    }
+
+    private void list(DocumentsFilter filter, BlockingQueue<ListedDocument> listed, BlockingQueue<FetchedDocument> fetched) {
+        try {
+            try (var documents = documentClient.iterateDocuments(filter)) {
+                long sequence = 0;
+                while (documents.hasNext())
+                    listed.put(new ListedDocument(sequence++, documents.next()));
+            } catch (RuntimeException e) {
+                fetched.put(new FetchedDocument(null, null, e));
+            }
+            for (int i = 0; i < options.getFetchThreads(); i++)
+                listed.put(LISTING_END);
+        } catch (InterruptedException e) {
+            //the export is cancelled
+        }
+    }
+
+    private void fetch(String boxId, Path tempDirectory, BlockingQueue<ListedDocument> listed, BlockingQueue<FetchedDocument> fetched) {
+        try {
+            while (true) {
+                var listedDocument = listed.take();
+                if (listedDocument == LISTING_END) {
+                    fetched.put(FETCHING_END);
+                    return;
+                }
+                FetchedDocument fetchedDocument;
+                try {
+                    fetchedDocument = new FetchedDocument(listedDocument, fetchDocument(boxId, tempDirectory, listedDocument.document), null);
+                } catch (DiadocSdkException | RuntimeException e) {
+                    fetchedDocument = new FetchedDocument(listedDocument, null, e);
+                }
+                fetched.put(fetchedDocument);
+            }
+        } catch (InterruptedException e) {
+            //the export is cancelled
+        }
+    }
+
+    private List<ExportedFile> fetchDocument(String boxId, Path tempDirectory, Document document) throws DiadocSdkException, InterruptedException {
+        var folder = document.getMessageId() + "_" + document.getEntityId() + "/";
+        var message = messageClient.getMessage(boxId, document.getMessageId(), document.getEntityId());
+        var files = new ArrayList<ExportedFile>();
+        for (var entity : message.getEntitiesList()) {
+            boolean isDocument = entity.getEntityId().equals(document.getEntityId());
+            if (!isDocument && !entity.getParentEntityId().equals(document.getEntityId()))
+                continue;
+            if (entity.getEntityType() != EntityType.Attachment && entity.getEntityType() != EntityType.Signature)
+                continue;
+
+            var file = tempDirectory.resolve(UUID.randomUUID().toString());
+            documentClient.getEntityContent(boxId, document.getMessageId(), entity.getEntityId(), file);
+            files.add(new ExportedFile(folder + getFileName(entity, isDocument), file));
+        }
+        if (options.isWithPrintForms())
+            files.add(fetchPrintForm(boxId, tempDirectory, document, folder));
+        return files;
+    }
+
+    private ExportedFile fetchPrintForm(String boxId, Path tempDirectory, Document document, String folder) throws DiadocSdkException, InterruptedException {
+        var file = tempDirectory.resolve(UUID.randomUUID().toString());
+        long deadline = System.nanoTime() + options.getPrintFormTimeout().toNanos();
+        while (true) {
+            var result = printFormClient.generatePrintForm(boxId, document.getMessageId(), document.getEntityId(), file);
+            if (result.HasContent()) {
+                var fileName = result.getContent().getFileName();
+                return new ExportedFile(folder + "PrintForm_" + (Tools.isNullOrEmpty(fileName) ? "document.pdf" : sanitize(fileName)), file);
+            }
+
+            long retryAfterNanos = TimeUnit.SECONDS.toNanos(Math.max(1, result.getRetryAfter()));
+            if (System.nanoTime() + retryAfterNanos > deadline)
+                throw new DiadocSdkException("Print form of " + document.getMessageId() + "/" + document.getEntityId()
+                        + " is not generated in " + options.getPrintFormTimeout());
+            TimeUnit.NANOSECONDS.sleep(retryAfterNanos);
+        }
+    }
+
+    //documents are written as they are fetched, the checkpoint moves only past documents all of whose predecessors are written
+    private DocumentsExportStats write(DocumentsExportTarget target, BlockingQueue<FetchedDocument> fetched) throws DiadocSdkException, IOException, InterruptedException {
+        var cursorStore = options.getCursorStore();
+        long started = System.nanoTime();
+        long documentsCount = 0;
+        long filesCount = 0;
+        long bytesCount = 0;
+        var writtenIndexKeys = new HashMap<Long, String>();
+        long nextSequence = 0;
+        int finishedFetchers = 0;
+        var stats = new DocumentsExportStats(0, 0, 0, Duration.ZERO);
+        while (finishedFetchers < options.getFetchThreads()) {
+            var fetchedDocument = fetched.take();
+            if (fetchedDocument == FETCHING_END) {
+                finishedFetchers++;
+                continue;
+            }
+            if (fetchedDocument.failure != null)
+                throw toDiadocSdkException(fetchedDocument.failure);
+
+            for (var file : fetchedDocument.files) {
+                bytesCount += Files.size(file.path);
+                target.write(file.name, file.path);
+                Files.deleteIfExists(file.path);
+                filesCount++;
+            }
+            documentsCount++;
+
+            writtenIndexKeys.put(fetchedDocument.listedDocument.sequence, fetchedDocument.listedDocument.document.getIndexKey());
+            String checkpoint = null;
+            while (writtenIndexKeys.containsKey(nextSequence))
+                checkpoint = writtenIndexKeys.remove(nextSequence++);
+            if (cursorStore != null && checkpoint != null)
+                cursorStore.save(options.getCheckpointFeed(), checkpoint);
+
+            stats = new DocumentsExportStats(documentsCount, filesCount, bytesCount, Duration.ofNanos(System.nanoTime() - started));
+            options.getProgressHandler().accept(stats);
+        }
+        if (cursorStore != null)
+            cursorStore.flush();
+        return stats;
+    }
+
+    private static DiadocSdkException toDiadocSdkException(Exception e) {
+        if (e instanceof DiadocSdkException)
+            return (DiadocSdkException) e;
+        if (e instanceof CompletionException && e.getCause() instanceof DiadocSdkException)
+            return (DiadocSdkException) e.getCause();
+        return new DiadocSdkException(e);
+    }
+
+    private static String getFileName(Entity entity, boolean isDocument) {
+        if (entity.getEntityType() == EntityType.Signature)
+            return entity.getEntityId() + ".sgn";
+        var fileName = Tools.isNullOrEmpty(entity.getFileName()) ? entity.getEntityId() : sanitize(entity.getFileName());
+        return isDocument ? fileName : entity.getEntityId() + "_" + fileName;
+    }
+
+    private static String sanitize(String fileName) {
+        return fileName.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_");
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //best effort, a fetch stuck in a request may still write its file after the export is over
+    private static void deleteDirectory(Path directory) {
+        try (var paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    //left for the system temporary directory cleanup
+                }
+            });
+        } catch (IOException e) {
+            //left for the system temporary directory cleanup
+        }
+    }
+
+    private static class ListedDocument {
+        private final long sequence;
+        private final Document document;
+
+        ListedDocument(long sequence, Document document) {
+            this.sequence = sequence;
+            this.document = document;
+        }
+    }
+
+    private static class FetchedDocument {
+        private final ListedDocument listedDocument;
+        private final List<ExportedFile> files;
+        @Nullable
+        private final Exception failure;
+
+        FetchedDocument(ListedDocument listedDocument, List<ExportedFile> files, @Nullable Exception failure) {
+            this.listedDocument = listedDocument;
+            this.files = files;
+            this.failure = failure;
+        }
+    }
+
+    private static class ExportedFile {
+        private final String name;
+        private final Path path;
+
+        ExportedFile(String name, Path path) {
+            this.name = name;
+            this.path = path;
+        }
+    }
+}
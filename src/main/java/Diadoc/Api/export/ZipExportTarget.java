@@ -0,0 +1,41 @@
+package Diadoc.Api.export;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes exported files into a ZIP archive as they come, the archive is never held in memory
+ */
+public class ZipExportTarget implements DocumentsExportTarget {
+    private final ZipOutputStream zip;
+
+    public ZipExportTarget(Path path) throws IOException {
+        this(new BufferedOutputStream(Files.newOutputStream(path)));
+    }
+
+    /**
+     * The stream is closed with the target
+     */
+    public ZipExportTarget(OutputStream output) {
+        if (output == null)
+            throw new IllegalArgumentException("output");
+        this.zip = new ZipOutputStream(output);
+    }
+
+    @Override
+    public void write(String name, Path file) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        Files.copy(file, zip);
+        zip.closeEntry();
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+}
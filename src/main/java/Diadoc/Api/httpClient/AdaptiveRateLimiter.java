@@ -0,0 +1,173 @@
+package Diadoc.Api.httpClient;
+
+import org.apache.http.HttpStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token buckets per endpoint path and per box shared by all requests of DiadocHttpClient.
+ * A bucket rate grows by additiveIncrease after every successful response up to its max rate,
+ * and is multiplied by decreaseFactor after 429 or 503 down to minRate. Retry-After of such a response stops the bucket for the given time
+ */
+public class AdaptiveRateLimiter {
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    private final Map<String, Bucket> endpointBuckets = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> boxBuckets = new ConcurrentHashMap<>();
+    private double maxEndpointRate = 100;
+    private double maxBoxRate = 50;
+    private double minRate = 0.5;
+    private double additiveIncrease = 0.5;
+    private double decreaseFactor = 0.5;
+
+    public double getMaxEndpointRate() {
+        return maxEndpointRate;
+    }
+
+    public double getMaxBoxRate() {
+        return maxBoxRate;
+    }
+
+    /**
+     * Requests per second to one endpoint and on behalf of one box, buckets start at these rates
+     */
+    public AdaptiveRateLimiter setMaxRates(double maxEndpointRate, double maxBoxRate) {
+        if (!(maxEndpointRate >= minRate))
+            throw new IllegalArgumentException("maxEndpointRate < minRate");
+        if (!(maxBoxRate >= minRate))
+            throw new IllegalArgumentException("maxBoxRate < minRate");
+        this.maxEndpointRate = maxEndpointRate;
+        this.maxBoxRate = maxBoxRate;
+        return this;
+    }
+
+    public double getMinRate() {
+        return minRate;
+    }
+
+    public AdaptiveRateLimiter setMinRate(double minRate) {
+        if (!(minRate > 0) || minRate > Math.min(maxEndpointRate, maxBoxRate))
+            throw new IllegalArgumentException("minRate");
+        this.minRate = minRate;
+        return this;
+    }
+
+    public double getAdditiveIncrease() {
+        return additiveIncrease;
+    }
+
+    public double getDecreaseFactor() {
+        return decreaseFactor;
+    }
+
+    /**
+     * @param additiveIncrease requests per second added after a successful response
+     * @param decreaseFactor the rate is multiplied by it after a throttling response
+     */
+    public AdaptiveRateLimiter setAdjustment(double additiveIncrease, double decreaseFactor) {
+        if (!(additiveIncrease > 0))
+            throw new IllegalArgumentException("additiveIncrease");
+        if (!(decreaseFactor > 0 && decreaseFactor < 1))
+            throw new IllegalArgumentException("decreaseFactor");
+        this.additiveIncrease = additiveIncrease;
+        this.decreaseFactor = decreaseFactor;
+        return this;
+    }
+
+    /**
+     * @return current requests per second of every endpoint that was requested
+     */
+    public Map<String, Double> getEndpointRates() {
+        var rates = new HashMap<String, Double>();
+        for (var bucket : endpointBuckets.entrySet())
+            rates.put(bucket.getKey(), bucket.getValue().getRate());
+        return rates;
+    }
+
+    /**
+     * Takes a token from the buckets of the endpoint and of the box
+     * @return nanoseconds to wait before the request is sent
+     */
+    public long acquire(String endpoint, @Nullable String boxId) {
+        long now = System.nanoTime();
+        long delay = getBucket(endpointBuckets, endpoint, maxEndpointRate, now).acquire(now);
+        if (boxId != null)
+            delay = Math.max(delay, getBucket(boxBuckets, boxId, maxBoxRate, now).acquire(now));
+        return delay;
+    }
+
+    public void onResponse(String endpoint, @Nullable String boxId, int statusCode, @Nullable Integer retryAfterSeconds) {
+        boolean throttled = statusCode == SC_TOO_MANY_REQUESTS || statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE;
+        if (!throttled && statusCode >= 500)
+            return;
+
+        long now = System.nanoTime();
+        long stopNanos = throttled && retryAfterSeconds != null ? TimeUnit.SECONDS.toNanos(Math.max(0, retryAfterSeconds)) : 0;
+        getBucket(endpointBuckets, endpoint, maxEndpointRate, now).onResponse(now, throttled, stopNanos);
+        if (boxId != null)
+            getBucket(boxBuckets, boxId, maxBoxRate, now).onResponse(now, throttled, stopNanos);
+    }
+
+    private Bucket getBucket(Map<String, Bucket> buckets, String key, double maxRate, long now) {
+        return buckets.computeIfAbsent(key, ignored -> new Bucket(maxRate, now));
+    }
+
+    //tokens go negative when requests outpace the rate, each of them waits until its token is refilled
+    private class Bucket {
+        private final double maxRate;
+        private double rate;
+        private double tokens;
+        private long refilledAt;
+        private long stoppedUntil;
+
+        //a bucket starts at the time its first request was taken, not later, or that request would wait for the difference
+        Bucket(double maxRate, long now) {
+            this.maxRate = maxRate;
+            this.rate = maxRate;
+            this.tokens = getCapacity();
+            this.refilledAt = now;
+            this.stoppedUntil = now;
+        }
+
+        synchronized double getRate() {
+            return rate;
+        }
+
+        synchronized long acquire(long now) {
+            refill(now);
+            tokens -= 1;
+            long delay = tokens >= 0 ? 0 : (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+            //tokens are refilled only after the stop is over
+            return delay + Math.max(0, stoppedUntil - now);
+        }
+
+        synchronized void onResponse(long now, boolean throttled, long stopNanos) {
+            refill(now);
+            if (throttled) {
+                rate = Math.max(minRate, rate * decreaseFactor);
+                //requests queued at the old rate must not burst when the stop is over
+                tokens = Math.min(tokens, 0);
+                if (now + stopNanos - stoppedUntil > 0)
+                    stoppedUntil = now + stopNanos;
+            } else {
+                rate = Math.min(maxRate, rate + additiveIncrease);
+            }
+        }
+
+        private void refill(long now) {
+            long from = stoppedUntil - refilledAt > 0 ? stoppedUntil : refilledAt;
+            if (now - from > 0)
+                tokens = Math.min(getCapacity(), tokens + (now - from) * rate / TimeUnit.SECONDS.toNanos(1));
+            refilledAt = now;
+        }
+
+        //a second worth of requests may go at once
+        private double getCapacity() {
+            return Math.max(1, rate);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package Diadoc.Api.httpClient;
+
+import java.io.IOException;
+
+/**
+ * A request was not sent because the circuit of its bulkhead is open or the bulkhead is full
+ */
+public class BulkheadRejectedException extends IOException {
+    private final String bulkhead;
+
+    public BulkheadRejectedException(String bulkhead, String message) {
+        super(message);
+        this.bulkhead = bulkhead;
+    }
+
+    public String getBulkhead() {
+        return bulkhead;
+    }
+}
@@ -0,0 +1,49 @@
+package Diadoc.Api.httpClient;
+
+public class BulkheadStats {
+    private final CircuitState circuitState;
+    private final int maxConcurrentRequests;
+    private final int inFlight;
+    private final int queued;
+    private final long rejected;
+
+    public BulkheadStats(CircuitState circuitState, int maxConcurrentRequests, int inFlight, int queued, long rejected) {
+        this.circuitState = circuitState;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.inFlight = inFlight;
+        this.queued = queued;
+        this.rejected = rejected;
+    }
+
+    public CircuitState getCircuitState() {
+        return circuitState;
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Async requests waiting for a free slot
+     */
+    public int getQueued() {
+        return queued;
+    }
+
+    /**
+     * Requests failed fast by the open circuit or by the full bulkhead since the client was created
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkheadStats{circuitState=" + circuitState + ", maxConcurrentRequests=" + maxConcurrentRequests
+                + ", inFlight=" + inFlight + ", queued=" + queued + ", rejected=" + rejected + "}";
+    }
+}
@@ -0,0 +1,326 @@
+package Diadoc.Api.httpClient;
+
+import org.apache.http.HttpStatus;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Groups of endpoint paths with their own concurrency caps and circuit breakers, so a degraded group
+ * holds at most its share of pool connections and fails fast while other groups go on.
+ * By default print forms, document zips and protocols get 8 requests, the event feed gets 8
+ * and the rest of endpoints get 16, together no more than the default 32 connections per route.
+ * A circuit opens after failureThreshold consecutive connection errors or 5xx responses other than 503 of a group,
+ * fails its requests for openDuration, then lets halfOpenRequests trial requests through
+ * and closes after a successful one or opens again after a failed one. 429 and 503 responses do not change the circuit.
+ * A blocking request holds its slot until its response is closed, a stream of performRequestAsStream included,
+ * so a caller that sends requests of the same group while it reads such a stream may wait for its own slots
+ */
+public class Bulkheads {
+    public static final String DEFAULT_GROUP = "default";
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+    private final Map<String, String> pathGroups = new ConcurrentHashMap<>();
+    private volatile int failureThreshold = 5;
+    private volatile Duration openDuration = Duration.ofSeconds(30);
+    private volatile int halfOpenRequests = 1;
+    private volatile Duration maxWait = Duration.ofSeconds(30);
+    private volatile int maxQueuedRequests = 1000;
+
+    public Bulkheads() {
+        setGroup("print-forms", 8, "/GeneratePrintForm", "/GenerateDocumentZip", "/GenerateDocumentProtocol");
+        setGroup("events", 8, "/V6/GetNewEvents", "/V3/GetDocflowEvents", "/V2/GetEvent", "/GetLastEvent");
+        setGroup(DEFAULT_GROUP, 16);
+    }
+
+    /**
+     * Creates or replaces the group and moves the paths to it, requests to paths of no group go to DEFAULT_GROUP
+     */
+    public synchronized Bulkheads setGroup(String name, int maxConcurrentRequests, String... paths) {
+        if (name == null)
+            throw new IllegalArgumentException("name");
+        if (maxConcurrentRequests < 1)
+            throw new IllegalArgumentException("maxConcurrentRequests < 1");
+        for (var path : paths) {
+            if (path == null)
+                throw new IllegalArgumentException("paths");
+        }
+        groups.put(name, new Group(name, maxConcurrentRequests));
+        for (var path : paths)
+            pathGroups.put(path, name);
+        return this;
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public Duration getOpenDuration() {
+        return openDuration;
+    }
+
+    public int getHalfOpenRequests() {
+        return halfOpenRequests;
+    }
+
+    public Bulkheads setCircuitBreaker(int failureThreshold, Duration openDuration, int halfOpenRequests) {
+        if (failureThreshold < 1)
+            throw new IllegalArgumentException("failureThreshold < 1");
+        if (openDuration == null || openDuration.isNegative())
+            throw new IllegalArgumentException("openDuration");
+        if (halfOpenRequests < 1)
+            throw new IllegalArgumentException("halfOpenRequests < 1");
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.halfOpenRequests = halfOpenRequests;
+        return this;
+    }
+
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * A blocking request waits for a free slot of a full group this long before it is rejected
+     */
+    public Bulkheads setMaxWait(Duration maxWait) {
+        if (maxWait == null || maxWait.isNegative())
+            throw new IllegalArgumentException("maxWait");
+        this.maxWait = maxWait;
+        return this;
+    }
+
+    public int getMaxQueuedRequests() {
+        return maxQueuedRequests;
+    }
+
+    /**
+     * Async requests to a full group are queued without a thread, more of them are rejected
+     */
+    public Bulkheads setMaxQueuedRequests(int maxQueuedRequests) {
+        if (maxQueuedRequests < 0)
+            throw new IllegalArgumentException("maxQueuedRequests < 0");
+        this.maxQueuedRequests = maxQueuedRequests;
+        return this;
+    }
+
+    /**
+     * @return state of every group by its name
+     */
+    public Map<String, BulkheadStats> getStats() {
+        var stats = new HashMap<String, BulkheadStats>();
+        for (var group : groups.values())
+            stats.put(group.name, group.getStats());
+        return stats;
+    }
+
+    Group getGroup(String endpoint) {
+        var group = groups.get(pathGroups.getOrDefault(endpoint, DEFAULT_GROUP));
+        //the default group is replaced but never removed
+        return group != null ? group : groups.get(DEFAULT_GROUP);
+    }
+
+    class Group {
+        private final String name;
+        private final int maxConcurrentRequests;
+        private final Queue<Waiter> queued = new ArrayDeque<>();
+        private final LongAdder rejected = new LongAdder();
+        private int inFlight;
+        private CircuitState state = CircuitState.CLOSED;
+        private int consecutiveFailures;
+        private long openedAt;
+        private int trialsInFlight;
+
+        private Group(String name, int maxConcurrentRequests) {
+            this.name = name;
+            this.maxConcurrentRequests = maxConcurrentRequests;
+        }
+
+        synchronized Permit acquire() throws IOException {
+            long deadline = System.nanoTime() + maxWait.toNanos();
+            while (true) {
+                if (!canEnter())
+                    throw reject(getRejectionMessage());
+                if (inFlight < maxConcurrentRequests)
+                    return grant();
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                    throw reject("Bulkhead " + name + " is full");
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for bulkhead " + name);
+                }
+            }
+        }
+
+        /**
+         * Calls onAcquired at once if the group is not full, otherwise from the thread that releases a slot
+         */
+        void acquireAsync(Consumer<Permit> onAcquired, Consumer<BulkheadRejectedException> onRejected) {
+            Permit permit = null;
+            BulkheadRejectedException rejection = null;
+            synchronized (this) {
+                if (!canEnter())
+                    rejection = reject(getRejectionMessage());
+                else if (inFlight < maxConcurrentRequests)
+                    permit = grant();
+                else if (queued.size() < maxQueuedRequests)
+                    queued.add(new Waiter(onAcquired, onRejected));
+                else
+                    rejection = reject("Bulkhead " + name + " is full");
+            }
+            if (rejection != null)
+                onRejected.accept(rejection);
+            else if (permit != null)
+                onAcquired.accept(permit);
+        }
+
+        private synchronized BulkheadStats getStats() {
+            return new BulkheadStats(state, maxConcurrentRequests, inFlight, queued.size(), rejected.sum());
+        }
+
+        //an open circuit turns half-open after openDuration, a half-open one lets only halfOpenRequests trials through
+        private boolean canEnter() {
+            if (state == CircuitState.OPEN) {
+                if (System.nanoTime() - openedAt < openDuration.toNanos())
+                    return false;
+                state = CircuitState.HALF_OPEN;
+                trialsInFlight = 0;
+            }
+            return state != CircuitState.HALF_OPEN || trialsInFlight < halfOpenRequests;
+        }
+
+        private String getRejectionMessage() {
+            return "Circuit of bulkhead " + name + " is " + (state == CircuitState.OPEN ? "open" : "half-open");
+        }
+
+        private BulkheadRejectedException reject(String message) {
+            rejected.increment();
+            return new BulkheadRejectedException(name, message);
+        }
+
+        private Permit grant() {
+            boolean trial = state == CircuitState.HALF_OPEN;
+            inFlight++;
+            if (trial)
+                trialsInFlight++;
+            return new Permit(this, trial);
+        }
+
+        private void onResult(boolean failed, boolean trial) {
+            synchronized (this) {
+                //results of requests sent before the circuit opened do not count
+                if (state == CircuitState.OPEN || state == CircuitState.HALF_OPEN && !trial)
+                    return;
+                if (!failed) {
+                    consecutiveFailures = 0;
+                    state = CircuitState.CLOSED;
+                    return;
+                }
+                consecutiveFailures++;
+                if (state == CircuitState.CLOSED && consecutiveFailures < failureThreshold)
+                    return;
+                state = CircuitState.OPEN;
+                openedAt = System.nanoTime();
+            }
+            rejectQueued();
+        }
+
+        private void release(boolean trial) {
+            var granted = new ArrayList<Runnable>();
+            synchronized (this) {
+                inFlight--;
+                if (trial)
+                    trialsInFlight--;
+                notifyAll();
+                //a half-open circuit keeps the rest queued until its trials are over
+                while (!queued.isEmpty() && inFlight < maxConcurrentRequests && canEnter()) {
+                    var waiter = queued.poll();
+                    var permit = grant();
+                    granted.add(() -> waiter.onAcquired.accept(permit));
+                }
+            }
+            for (var action : granted)
+                action.run();
+            rejectQueued();
+        }
+
+        private void rejectQueued() {
+            Queue<Waiter> rejectedWaiters;
+            synchronized (this) {
+                if (state != CircuitState.OPEN || queued.isEmpty())
+                    return;
+                rejectedWaiters = new ArrayDeque<>(queued);
+                queued.clear();
+            }
+            for (var waiter : rejectedWaiters)
+                waiter.onRejected.accept(reject("Circuit of bulkhead " + name + " is open"));
+        }
+    }
+
+    //a slot of a group held by one attempt of a request
+    static class Permit {
+        private final Group group;
+        private final boolean trial;
+        private boolean recorded;
+        private boolean released;
+
+        private Permit(Group group, boolean trial) {
+            this.group = group;
+            this.trial = trial;
+        }
+
+        //throttling is left to the rate limiter and retries, a server that asks to slow down is not failing
+        synchronized void onResponse(int statusCode) {
+            if (statusCode == SC_TOO_MANY_REQUESTS || statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE) {
+                recorded = true;
+                return;
+            }
+            onResult(statusCode >= 500);
+        }
+
+        synchronized void onFailure() {
+            onResult(true);
+        }
+
+        private void onResult(boolean failed) {
+            if (recorded)
+                return;
+            recorded = true;
+            group.onResult(failed, trial);
+        }
+
+        //an attempt released without a result, e.g. a cancelled one, does not change the circuit
+        void release() {
+            synchronized (this) {
+                if (released)
+                    return;
+                released = true;
+            }
+            group.release(trial);
+        }
+    }
+
+    private static class Waiter {
+        private final Consumer<Permit> onAcquired;
+        private final Consumer<BulkheadRejectedException> onRejected;
+
+        Waiter(Consumer<Permit> onAcquired, Consumer<BulkheadRejectedException> onRejected) {
+            this.onAcquired = onAcquired;
+            this.onRejected = onRejected;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package Diadoc.Api.httpClient;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+public class ByteBufferEntity extends AbstractHttpEntity {
+    private static final int OUTPUT_BUFFER_SIZE = 8 * 1024;
+
+    private final ByteBuffer buffer;
+
+    public ByteBufferEntity(ByteBuffer buffer) {
+        if (buffer == null)
+            throw new IllegalArgumentException("buffer");
+        this.buffer = buffer.asReadOnlyBuffer();
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public InputStream getContent() {
+        var content = buffer.duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return content.hasRemaining() ? content.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                if (length == 0)
+                    return 0;
+                if (!content.hasRemaining())
+                    return -1;
+                int count = Math.min(length, content.remaining());
+                content.get(bytes, offset, count);
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return content.remaining();
+            }
+        };
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        if (outputStream == null)
+            throw new IllegalArgumentException("outputStream");
+        var content = buffer.duplicate();
+        var chunk = new byte[Math.min(OUTPUT_BUFFER_SIZE, Math.max(content.remaining(), 1))];
+        while (content.hasRemaining()) {
+            int count = Math.min(chunk.length, content.remaining());
+            content.get(chunk, 0, count);
+            outputStream.write(chunk, 0, count);
+        }
+        outputStream.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
@@ -0,0 +1,7 @@
+package Diadoc.Api.httpClient;
+
+public enum CircuitState {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+}
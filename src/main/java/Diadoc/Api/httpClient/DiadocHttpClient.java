@@ -3,15 +3,22 @@ package Diadoc.Api.httpClient;
 import Diadoc.Api.exceptions.DiadocException;
 import Diadoc.Api.auth.DiadocPreemptiveAuthRequestInterceptor;
 import Diadoc.Api.exceptions.DiadocSdkException;
+import Diadoc.Api.helpers.DaemonThreadFactory;
 import Diadoc.Api.helpers.EnvironmentHelpers;
 import Diadoc.Api.helpers.Tools;
-import org.apache.commons.io.IOUtils;
 import org.apache.http.*;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.client.utils.DateUtils;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
@@ -19,9 +26,22 @@ import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.TrustAllStrategy;
 import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.ssl.SSLContextBuilder;
+import org.apache.http.util.EntityUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -30,32 +50,90 @@ import javax.mail.internet.ParseException;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
+import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
-public class DiadocHttpClient {
+public class DiadocHttpClient implements Closeable {
+    private static final int CONTENT_BUFFER_SIZE = 64 * 1024;
 
     private CloseableHttpClient httpClient;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private volatile CloseableHttpAsyncClient httpAsyncClient;
+    private volatile PoolingNHttpClientConnectionManager asyncConnectionManager;
+    private volatile ScheduledExecutorService scheduler;
+    private CredentialsProvider credentialsProvider;
+    @Nullable
+    private HttpHost proxyHost;
     private String baseUrl;
+    private DiadocHttpClientConfig config;
+    private RequestConfig defaultRequestConfig;
+    private volatile boolean closed;
 
     public DiadocHttpClient(CredentialsProvider credentialsProvider, String baseUrl, @Nullable HttpHost proxyHost) {
+        this(credentialsProvider, baseUrl, proxyHost, new DiadocHttpClientConfig());
+    }
+
+    public DiadocHttpClient(CredentialsProvider credentialsProvider, String baseUrl, @Nullable HttpHost proxyHost, DiadocHttpClientConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException("config");
+        }
+        this.config = config;
+        this.defaultRequestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) config.getConnectTimeout().toMillis())
+                .setConnectionRequestTimeout((int) config.getConnectionRequestTimeout().toMillis())
+                .setSocketTimeout((int) config.getSocketTimeout().toMillis())
+                .build();
+
         var sslSocketFactory = getTrustfulSslSocketFactory();
+        connectionManager = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("https", sslSocketFactory)
+                        .register("http", new PlainConnectionSocketFactory())
+                        .build());
+        connectionManager.setMaxTotal(config.getMaxConnectionsTotal());
+        connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+        connectionManager.setValidateAfterInactivity((int) config.getValidateAfterInactivity().toMillis());
+
         var httpClientBuilder = HttpClients
                 .custom()
                 .setSSLSocketFactory(sslSocketFactory)
-                .setConnectionManager(new PoolingHttpClientConnectionManager(
-                        RegistryBuilder.<ConnectionSocketFactory>create()
-                        .register("https", sslSocketFactory)
-                        .register("http", new PlainConnectionSocketFactory())
-                        .build()))
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(defaultRequestConfig)
+                .setKeepAliveStrategy(createKeepAliveStrategy())
+                .evictExpiredConnections()
+                .evictIdleConnections(config.getIdleConnectionTimeout().toMillis(), TimeUnit.MILLISECONDS)
                 .setUserAgent(EnvironmentHelpers.getUserAgentString())
                 .addInterceptorFirst(new DiadocPreemptiveAuthRequestInterceptor())
                 .addInterceptorLast(new ContentLengthInterceptor())
@@ -65,6 +143,8 @@ public class DiadocHttpClient {
         }
 
         httpClient = httpClientBuilder.build();
+        this.credentialsProvider = credentialsProvider;
+        this.proxyHost = proxyHost;
         this.baseUrl = baseUrl;
     }
 
@@ -72,44 +152,695 @@ public class DiadocHttpClient {
         return baseUrl;
     }
 
+    public DiadocHttpClientConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Connections of blocking requests: leased, waited for, idle in the pool and the pool limit
+     */
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Connections of async requests, the async pool is created by the first of them
+     */
+    public PoolStats getAsyncPoolStats() {
+        var manager = asyncConnectionManager;
+        return manager != null
+                ? manager.getTotalStats()
+                : new PoolStats(0, 0, 0, config.getMaxConnectionsTotal());
+    }
+
+    /**
+     * Retry counters by endpoint path, empty if retries are off
+     */
+    public Map<String, RetryStats> getRetryStats() {
+        var retryPolicy = config.getRetryPolicy();
+        return retryPolicy != null ? retryPolicy.getStats() : Collections.emptyMap();
+    }
+
+    /**
+     * Circuit state and load of every endpoint group, empty if bulkheads are off
+     */
+    public Map<String, BulkheadStats> getBulkheadStats() {
+        var bulkheads = config.getBulkheads();
+        return bulkheads != null ? bulkheads.getStats() : Collections.emptyMap();
+    }
+
+    /**
+     * Hedging counters by endpoint path, empty if hedging is off
+     */
+    public Map<String, HedgingStats> getHedgingStats() {
+        var hedgingPolicy = config.getHedgingPolicy();
+        return hedgingPolicy != null ? hedgingPolicy.getStats() : Collections.emptyMap();
+    }
+
+    /**
+     * Closes both connection pools and stops the threads of the client: the idle connection evictors,
+     * the async io reactor and the scheduler of delayed requests. Requests in flight fail
+     */
+    @Override
+    public void close() throws IOException {
+        CloseableHttpAsyncClient asyncClient;
+        ScheduledExecutorService scheduledExecutor;
+        synchronized (this) {
+            closed = true;
+            asyncClient = httpAsyncClient;
+            scheduledExecutor = scheduler;
+        }
+        if (scheduledExecutor != null) {
+            scheduledExecutor.shutdownNow();
+        }
+        try {
+            httpClient.close();
+        } finally {
+            try {
+                if (asyncClient != null) {
+                    asyncClient.close();
+                }
+            } finally {
+                connectionManager.close();
+            }
+        }
+    }
+
     public byte[] performRequest(RequestBuilder requestBuilder) throws IOException {
-        try (var response = httpClient.execute(requestBuilder.build())) {
+        try (var response = execute(requestBuilder)) {
             return getResponseBytes(response);
         }
     }
 
     public GeneratedFile performRequestWithGeneratedFile(RequestBuilder requestBuilder) throws IOException, ParseException {
-        try (var response = httpClient.execute(requestBuilder.build())) {
+        try (var response = execute(requestBuilder)) {
             return new GeneratedFile(tryGetHttpResponseFileName(response), getResponseBytes(response));
         }
     }
 
     public FileContent performRequestWithFileContent(RequestBuilder requestBuilder) throws IOException {
-        try (var response = httpClient.execute(requestBuilder.build())) {
+        try (var response = execute(requestBuilder)) {
             return new FileContent(getResponseBytes(response), tryGetFileContentName(response));
         }
     }
 
     public DiadocResponseInfo getResponse(RequestBuilder requestBuilder) throws IOException {
-        try (var response = httpClient.execute(requestBuilder.build())) {
+        try (var response = execute(requestBuilder)) {
             return getResponse(response);
         }
     }
 
     public DiadocResponseInfo getRawResponse(RequestBuilder requestBuilder) throws IOException, ParseException {
-        try (var response = httpClient.execute(requestBuilder.build())) {
+        try (var response = execute(requestBuilder)) {
             return getRawResponse(response);
         }
     }
 
+    public InputStream performRequestAsStream(RequestBuilder requestBuilder) throws IOException {
+        var response = execute(requestBuilder);
+        try {
+            ensureSuccessStatusCode(response);
+            return new ResponseInputStream(response);
+        } catch (IOException | RuntimeException e) {
+            response.close();
+            throw e;
+        }
+    }
+
+    public long performRequest(RequestBuilder requestBuilder, WritableByteChannel target) throws IOException {
+        try (var response = execute(requestBuilder)) {
+            ensureSuccessStatusCode(response);
+            return copyContent(response.getEntity(), target);
+        }
+    }
+
+    public long performRequest(RequestBuilder requestBuilder, Path target) throws IOException {
+        try (var response = execute(requestBuilder)) {
+            ensureSuccessStatusCode(response);
+            return writeContent(response.getEntity(), target);
+        }
+    }
+
+    /**
+     * Same as getRawResponse, but the content is written to the target file and is not kept in the result.
+     * Only a 200 response without Retry-After is written, others leave the target as it was
+     */
+    public DiadocResponseInfo getRawResponse(RequestBuilder requestBuilder, Path target) throws IOException, ParseException {
+        try (var response = execute(requestBuilder)) {
+            var retryAfter = tryGetRetryAfterSeconds(response);
+            if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK && retryAfter == null && response.getEntity() != null) {
+                writeContent(response.getEntity(), target);
+            }
+            return new DiadocResponseInfo(
+                    null,
+                    retryAfter,
+                    response.getStatusLine().getStatusCode(),
+                    response.getStatusLine().getReasonPhrase(),
+                    tryGetHttpResponseFileName(response),
+                    tryGetContentType(response));
+        }
+    }
+
+    public CompletableFuture<byte[]> performRequestAsync(RequestBuilder requestBuilder) {
+        return executeAsync(requestBuilder, this::getResponseBytes);
+    }
+
+    public <T> CompletableFuture<T> performRequestAsync(RequestBuilder requestBuilder, ResponseParser<T> responseParser) {
+        return executeAsync(requestBuilder, response -> responseParser.parse(getResponseBytes(response)));
+    }
+
+    public CompletableFuture<DiadocResponseInfo> getResponseAsync(RequestBuilder requestBuilder) {
+        return executeAsync(requestBuilder, this::getResponse);
+    }
+
+    public CompletableFuture<DiadocResponseInfo> getRawResponseAsync(RequestBuilder requestBuilder) {
+        return executeAsync(requestBuilder, this::getRawResponse);
+    }
+
+    private CloseableHttpResponse execute(RequestBuilder requestBuilder) throws IOException {
+        var request = buildRequest(requestBuilder);
+        var target = new RequestTarget(request);
+        var hedgingPolicy = config.getHedgingPolicy();
+        if (hedgingPolicy != null && hedgingPolicy.isHedged(request)) {
+            return executeHedged(requestBuilder);
+        }
+        var retry = startRetry(request, target);
+        var bulkhead = getBulkhead(target);
+        while (true) {
+            var rateLimiter = config.getRateLimiter();
+            if (rateLimiter != null) {
+                sleep(rateLimiter.acquire(target.endpoint, target.boxId), "Interrupted while waiting for the rate limiter");
+            }
+            var permit = bulkhead != null ? bulkhead.acquire() : null;
+            long retryDelay;
+            try {
+                var response = httpClient.execute(request);
+                onResponse(target, response, permit);
+                retryDelay = retry != null
+                        ? retry.onResponse(response.getStatusLine().getStatusCode(), tryGetRetryAfterSeconds(response))
+                        : -1;
+                if (retryDelay < 0) {
+                    if (permit == null) {
+                        return response;
+                    }
+                    //the slot is held while the caller reads the content
+                    var bulkheadResponse = new BulkheadResponse(response, permit);
+                    permit = null;
+                    return bulkheadResponse;
+                }
+                response.close();
+            } catch (IOException e) {
+                if (permit != null) {
+                    permit.onFailure();
+                }
+                retryDelay = retry != null ? retry.onFailure(e) : -1;
+                if (retryDelay < 0) {
+                    throw e;
+                }
+            } finally {
+                if (permit != null) {
+                    permit.release();
+                }
+            }
+            sleep(retryDelay, "Interrupted while waiting to retry");
+            request = buildRequest(requestBuilder);
+        }
+    }
+
+    private static void sleep(long delayNanos, String interruptedMessage) throws InterruptedIOException {
+        if (delayNanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(delayNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(interruptedMessage);
+        }
+    }
+
+    //a hedged blocking request is sent by the async client, so its duplicate needs no thread of its own
+    private CloseableHttpResponse executeHedged(RequestBuilder requestBuilder) throws IOException {
+        var response = executeAsync(requestBuilder, asyncResponse -> asyncResponse);
+        try {
+            return new AsyncResponse(response.get());
+        } catch (InterruptedException e) {
+            response.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a hedged request");
+        } catch (ExecutionException e) {
+            var cause = e.getCause() instanceof DiadocSdkException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private <T> CompletableFuture<T> executeAsync(RequestBuilder requestBuilder, ResponseReader<T> responseReader) {
+        CloseableHttpAsyncClient client;
+        try {
+            client = getHttpAsyncClient();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        }
+        var request = buildRequest(requestBuilder);
+        var target = new RequestTarget(request);
+        var exchange = new AsyncExchange<>(
+                client,
+                requestBuilder,
+                target,
+                startRetry(request, target),
+                getBulkhead(target),
+                startHedge(request, target),
+                responseReader);
+        exchange.start(request);
+        return exchange.result;
+    }
+
+    //attempts of one async request: the first one, its hedge and retries sent from the scheduler after their delays.
+    //an attempt that fails while another one is in flight leaves the result to the other
+    private class AsyncExchange<T> {
+        private final CloseableHttpAsyncClient client;
+        private final RequestBuilder requestBuilder;
+        private final RequestTarget target;
+        @Nullable
+        private final RetryPolicy.Retry retry;
+        @Nullable
+        private final Bulkheads.Group bulkhead;
+        @Nullable
+        private final HedgingPolicy.Hedge hedge;
+        private final ResponseReader<T> responseReader;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final List<Future<HttpResponse>> httpFutures = new ArrayList<>();
+        private int attemptsInFlight;
+        private volatile boolean retried;
+
+        AsyncExchange(
+                CloseableHttpAsyncClient client,
+                RequestBuilder requestBuilder,
+                RequestTarget target,
+                @Nullable RetryPolicy.Retry retry,
+                @Nullable Bulkheads.Group bulkhead,
+                @Nullable HedgingPolicy.Hedge hedge,
+                ResponseReader<T> responseReader) {
+            this.client = client;
+            this.requestBuilder = requestBuilder;
+            this.target = target;
+            this.retry = retry;
+            this.bulkhead = bulkhead;
+            this.hedge = hedge;
+            this.responseReader = responseReader;
+        }
+
+        void start(HttpUriRequest request) {
+            //the loser of a hedged request is cancelled to free its connection
+            result.whenComplete((value, e) -> cancelAttempts());
+            send(request, false);
+            if (hedge != null) {
+                getScheduler().schedule(this::sendHedge, hedge.getDelayNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void sendHedge() {
+            synchronized (this) {
+                //a request waiting for its retry is not hedged
+                if (result.isDone() || attemptsInFlight == 0) {
+                    return;
+                }
+            }
+            if (hedge.tryHedge()) {
+                send(buildRequest(requestBuilder), true);
+            }
+        }
+
+        private void send(HttpUriRequest request, boolean hedged) {
+            synchronized (this) {
+                attemptsInFlight++;
+            }
+            //a request held back by the rate limiter waits on the scheduler, not on a thread of its own
+            var rateLimiter = config.getRateLimiter();
+            long delay = rateLimiter != null ? rateLimiter.acquire(target.endpoint, target.boxId) : 0;
+            if (delay > 0) {
+                getScheduler().schedule(() -> execute(request, hedged), delay, TimeUnit.NANOSECONDS);
+            } else {
+                execute(request, hedged);
+            }
+        }
+
+        //a request to a full bulkhead is queued in it and sent by the request that frees a slot
+        private void execute(HttpUriRequest request, boolean hedged) {
+            if (result.isDone()) {
+                endAttempt();
+                return;
+            }
+            if (bulkhead == null) {
+                execute(request, hedged, null);
+                return;
+            }
+            bulkhead.acquireAsync(
+                    permit -> execute(request, hedged, permit),
+                    e -> {
+                        if (endAttempt()) {
+                            result.completeExceptionally(new DiadocSdkException(e));
+                        }
+                    });
+        }
+
+        private void execute(HttpUriRequest request, boolean hedged, @Nullable Bulkheads.Permit permit) {
+            if (result.isDone()) {
+                if (permit != null) {
+                    permit.release();
+                }
+                endAttempt();
+                return;
+            }
+            var httpFuture = client.execute(request, new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse response) {
+                    long respondedNanos = System.nanoTime();
+                    //an exception thrown here would be swallowed by the io thread and leave the result pending
+                    try {
+                        //the async client has read the whole content already
+                        onResponse(target, response, permit);
+                        if (permit != null) {
+                            permit.release();
+                        }
+                        boolean last = endAttempt();
+                        int statusCode = response.getStatusLine().getStatusCode();
+                        if (result.isDone() || !last && statusCode != HttpStatus.SC_OK) {
+                            return;
+                        }
+                        long retryDelay = retry != null && last
+                                ? retry.onResponse(statusCode, tryGetRetryAfterSeconds(response))
+                                : -1;
+                        if (retryDelay >= 0) {
+                            sendAgain(retryDelay);
+                            return;
+                        }
+                        if (result.complete(responseReader.read(response)) && hedge != null) {
+                            //a retried request is not sampled, its latency holds the retry delays
+                            if (statusCode < 500 && !retried) {
+                                hedge.onCompleted(respondedNanos);
+                            }
+                            hedge.onWin(hedged);
+                        }
+                    } catch (IOException | ParseException | RuntimeException e) {
+                        result.completeExceptionally(new DiadocSdkException(e));
+                    }
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    if (permit != null) {
+                        permit.onFailure();
+                        permit.release();
+                    }
+                    if (!endAttempt() || result.isDone()) {
+                        return;
+                    }
+                    long retryDelay = retry != null && e instanceof IOException ? retry.onFailure((IOException) e) : -1;
+                    if (retryDelay >= 0) {
+                        sendAgain(retryDelay);
+                        return;
+                    }
+                    result.completeExceptionally(new DiadocSdkException(e));
+                }
+
+                @Override
+                public void cancelled() {
+                    if (permit != null) {
+                        permit.release();
+                    }
+                    endAttempt();
+                    result.cancel(false);
+                }
+            });
+            synchronized (this) {
+                httpFutures.add(httpFuture);
+            }
+            if (result.isDone()) {
+                cancelAttempts();
+            }
+        }
+
+        //true if no other attempt is in flight
+        private synchronized boolean endAttempt() {
+            return --attemptsInFlight == 0;
+        }
+
+        private void cancelAttempts() {
+            List<Future<HttpResponse>> futures;
+            synchronized (this) {
+                futures = new ArrayList<>(httpFutures);
+            }
+            for (var future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        private void sendAgain(long delayNanos) {
+            retried = true;
+            getScheduler().schedule(() -> send(buildRequest(requestBuilder), false), delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Nullable
+    private HedgingPolicy.Hedge startHedge(HttpUriRequest request, RequestTarget target) {
+        var hedgingPolicy = config.getHedgingPolicy();
+        return hedgingPolicy != null && hedgingPolicy.isHedged(request) ? hedgingPolicy.start(target.endpoint) : null;
+    }
+
+    @Nullable
+    private Bulkheads.Group getBulkhead(RequestTarget target) {
+        var bulkheads = config.getBulkheads();
+        return bulkheads != null ? bulkheads.getGroup(target.endpoint) : null;
+    }
+
+    //a request with a body that can not be sent twice is not retried
+    @Nullable
+    private RetryPolicy.Retry startRetry(HttpUriRequest request, RequestTarget target) {
+        var retryPolicy = config.getRetryPolicy();
+        if (retryPolicy == null) {
+            return null;
+        }
+        if (request instanceof HttpEntityEnclosingRequest) {
+            var entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null && !entity.isRepeatable()) {
+                return null;
+            }
+        }
+        return retryPolicy.start(request, target.endpoint);
+    }
+
+    private void onResponse(RequestTarget target, HttpResponse response, @Nullable Bulkheads.Permit permit) {
+        if (permit != null) {
+            permit.onResponse(response.getStatusLine().getStatusCode());
+        }
+        var rateLimiter = config.getRateLimiter();
+        if (rateLimiter != null) {
+            rateLimiter.onResponse(target.endpoint, target.boxId, response.getStatusLine().getStatusCode(), tryGetRetryAfterSeconds(response));
+        }
+    }
+
+    //endpoint and box of a request, which its limits are applied by
+    private static class RequestTarget {
+        private final String endpoint;
+        @Nullable
+        private final String boxId;
+
+        RequestTarget(HttpUriRequest request) {
+            endpoint = request.getURI().getPath();
+            String box = null;
+            for (var parameter : URLEncodedUtils.parse(request.getURI(), StandardCharsets.UTF_8)) {
+                if ("boxId".equals(parameter.getName())) {
+                    box = parameter.getValue();
+                    break;
+                }
+            }
+            boxId = box;
+        }
+    }
+
+    //a request to a path with its own timeout gets a copy of the default config
+    private HttpUriRequest buildRequest(RequestBuilder requestBuilder) {
+        var socketTimeout = config.getOperationSocketTimeout(requestBuilder.getUri().getPath());
+        if (socketTimeout != null && requestBuilder.getConfig() == null) {
+            requestBuilder.setConfig(RequestConfig.copy(defaultRequestConfig)
+                    .setSocketTimeout((int) socketTimeout.toMillis())
+                    .build());
+        }
+        return requestBuilder.build();
+    }
+
+    //the server Keep-Alive is respected up to maxKeepAlive, a connection without it is kept for maxKeepAlive
+    private ConnectionKeepAliveStrategy createKeepAliveStrategy() {
+        long maxKeepAliveMillis = config.getMaxKeepAlive().toMillis();
+        return (response, context) -> {
+            long keepAliveMillis = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return keepAliveMillis > 0 ? Math.min(keepAliveMillis, maxKeepAliveMillis) : maxKeepAliveMillis;
+        };
+    }
+
+    private CloseableHttpAsyncClient getHttpAsyncClient() throws IOException {
+        if (closed) {
+            throw new IOException("Diadoc http client is closed");
+        }
+        var client = httpAsyncClient;
+        if (client == null) {
+            synchronized (this) {
+                if (closed) {
+                    throw new IOException("Diadoc http client is closed");
+                }
+                client = httpAsyncClient;
+                if (client == null) {
+                    client = createHttpAsyncClient();
+                    client.start();
+                    httpAsyncClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private CloseableHttpAsyncClient createHttpAsyncClient() throws IOReactorException {
+        var ioReactor = new DefaultConnectingIOReactor(
+                IOReactorConfig.custom()
+                        .setConnectTimeout((int) config.getConnectTimeout().toMillis())
+                        .setSoTimeout((int) config.getSocketTimeout().toMillis())
+                        .setSoKeepAlive(true)
+                        .build(),
+                new DaemonThreadFactory("diadoc-http-async-io"));
+        var manager = new PoolingNHttpClientConnectionManager(
+                ioReactor,
+                RegistryBuilder.<SchemeIOSessionStrategy>create()
+                        .register("https", new SSLIOSessionStrategy(getTrustfulSslContext(), NoopHostnameVerifier.INSTANCE))
+                        .register("http", NoopIOSessionStrategy.INSTANCE)
+                        .build());
+        manager.setMaxTotal(config.getMaxConnectionsTotal());
+        manager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+
+        //the async client has no evictor of its own
+        long idleMillis = config.getIdleConnectionTimeout().toMillis();
+        getScheduler().scheduleWithFixedDelay(() -> {
+            manager.closeExpiredConnections();
+            manager.closeIdleConnections(idleMillis, TimeUnit.MILLISECONDS);
+        }, idleMillis, idleMillis, TimeUnit.MILLISECONDS);
+        asyncConnectionManager = manager;
+
+        var httpAsyncClientBuilder = HttpAsyncClients
+                .custom()
+                .setConnectionManager(manager)
+                .setDefaultRequestConfig(defaultRequestConfig)
+                .setKeepAliveStrategy(createKeepAliveStrategy())
+                .setThreadFactory(new DaemonThreadFactory("diadoc-http-async"))
+                .setUserAgent(EnvironmentHelpers.getUserAgentString())
+                .addInterceptorFirst(new DiadocPreemptiveAuthRequestInterceptor())
+                .addInterceptorLast(new ContentLengthInterceptor())
+                .setDefaultCredentialsProvider(credentialsProvider);
+        if (proxyHost != null) {
+            httpAsyncClientBuilder.setProxy(proxyHost);
+        }
+        return httpAsyncClientBuilder.build();
+    }
+
+    private interface ResponseReader<T> {
+        T read(HttpResponse response) throws IOException, ParseException;
+    }
 
     private byte[] getResponseBytes(HttpResponse response) throws IOException {
+        ensureSuccessStatusCode(response);
+        return EntityUtils.toByteArray(response.getEntity());
+    }
+
+    private static void ensureSuccessStatusCode(HttpResponse response) throws HttpResponseException {
         if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
             throw new HttpResponseException(
                     response.getStatusLine().getStatusCode(),
                     response.getStatusLine().getReasonPhrase());
         }
-        return IOUtils.toByteArray(response.getEntity().getContent());
+    }
+
+    private static long copyContent(HttpEntity entity, WritableByteChannel target) throws IOException {
+        long length = 0;
+        var buffer = ByteBuffer.allocate(CONTENT_BUFFER_SIZE);
+        try (var source = Channels.newChannel(entity.getContent())) {
+            while (source.read(buffer) >= 0 || buffer.position() > 0) {
+                buffer.flip();
+                length += target.write(buffer);
+                buffer.compact();
+            }
+        }
+        return length;
+    }
+
+    //content goes to a sibling file first, so a broken download never replaces the target
+    private static long writeContent(HttpEntity entity, Path target) throws IOException {
+        var partPath = target.resolveSibling(target.getFileName() + ".part");
+        try {
+            long length;
+            try (var channel = FileChannel.open(partPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                length = copyContent(entity, channel);
+            }
+            Files.move(partPath, target, StandardCopyOption.REPLACE_EXISTING);
+            return length;
+        } finally {
+            Files.deleteIfExists(partPath);
+        }
+    }
+
+    //a response of a blocking request that frees its bulkhead slot when it is closed
+    private static class BulkheadResponse extends BasicHttpResponse implements CloseableHttpResponse {
+        private final CloseableHttpResponse response;
+        private final Bulkheads.Permit permit;
+
+        BulkheadResponse(CloseableHttpResponse response, Bulkheads.Permit permit) {
+            super(response.getStatusLine());
+            setHeaders(response.getAllHeaders());
+            setEntity(response.getEntity());
+            setLocale(response.getLocale());
+            this.response = response;
+            this.permit = permit;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                response.close();
+            } finally {
+                permit.release();
+            }
+        }
+    }
+
+    //a buffered response of the async client, closing it just discards the content
+    private static class AsyncResponse extends BasicHttpResponse implements CloseableHttpResponse {
+        AsyncResponse(HttpResponse response) {
+            super(response.getStatusLine());
+            setHeaders(response.getAllHeaders());
+            setEntity(response.getEntity());
+            setLocale(response.getLocale());
+        }
+
+        @Override
+        public void close() throws IOException {
+            EntityUtils.consume(getEntity());
+        }
+    }
+
+    //closing the response instead of the content stream drops the connection, so an unread tail is not downloaded just to be discarded
+    private static class ResponseInputStream extends FilterInputStream {
+        private final CloseableHttpResponse response;
+
+        ResponseInputStream(CloseableHttpResponse response) throws IOException {
+            super(response.getEntity().getContent());
+            this.response = response;
+        }
+
+        @Override
+        public void close() throws IOException {
+            response.close();
+        }
     }
 
     private DiadocResponseInfo getResponse(HttpResponse response) throws IOException {
@@ -117,18 +848,18 @@ public class DiadocHttpClient {
             return DiadocResponseInfo.fail(
                     response.getStatusLine().getStatusCode(),
                     response.getStatusLine().getReasonPhrase(),
-                    tryGetRetryAfter(response));
+                    tryGetRetryAfterSeconds(response));
         }
-        return DiadocResponseInfo.success(IOUtils.toByteArray(response.getEntity().getContent()), response.getStatusLine().getStatusCode());
+        return DiadocResponseInfo.success(EntityUtils.toByteArray(response.getEntity()), response.getStatusLine().getStatusCode());
     }
 
     private DiadocResponseInfo getRawResponse(HttpResponse response) throws IOException, ParseException {
 
         return new DiadocResponseInfo(
-                response.getEntity().getContent() != null
-                        ? IOUtils.toByteArray(response.getEntity().getContent())
+                response.getEntity() != null
+                        ? EntityUtils.toByteArray(response.getEntity())
                         : null,
-                tryGetRetryAfter(response),
+                tryGetRetryAfterSeconds(response),
                 response.getStatusLine().getStatusCode(),
                 response.getStatusLine().getReasonPhrase(),
                 tryGetHttpResponseFileName(response),
@@ -137,16 +868,19 @@ public class DiadocHttpClient {
 
     @Nullable
     private static String tryGetContentType(HttpResponse response) {
-        if (response.getEntity().getContentType() != null) {
+        if (response.getEntity() != null && response.getEntity().getContentType() != null) {
             return response.getEntity().getContentType().getValue();
         }
         return null;
     }
 
     private static SSLConnectionSocketFactory getTrustfulSslSocketFactory() {
+        return new SSLConnectionSocketFactory(getTrustfulSslContext(), NoopHostnameVerifier.INSTANCE);
+    }
+
+    private static SSLContext getTrustfulSslContext() {
         try {
-            var ctx = SSLContextBuilder.create().loadTrustMaterial(new TrustAllStrategy()).build();
-            return new SSLConnectionSocketFactory(ctx, NoopHostnameVerifier.INSTANCE);
+            return SSLContextBuilder.create().loadTrustMaterial(new TrustAllStrategy()).build();
         } catch (NoSuchAlgorithmException | KeyManagementException | KeyStoreException e) {
             e.printStackTrace();
             throw new RuntimeException("Can't create ssl connection factory", e);
@@ -161,13 +895,12 @@ public class DiadocHttpClient {
 
         try {
             while (true) {
-                try (var response = httpClient.execute(
+                try (var response = execute(
                         RequestBuilder.get(
                                 new URIBuilder(baseUrl)
                                         .setPath(path)
                                         .addParameter("taskId", taskId)
-                                        .build())
-                                .build())) {
+                                        .build()))) {
                     var statusCode = response.getStatusLine().getStatusCode();
                     if (statusCode == HttpStatus.SC_NO_CONTENT) {
                         if (new Date().getTime() > timeLimit) {
@@ -192,6 +925,93 @@ public class DiadocHttpClient {
         }
     }
 
+    /**
+     * Same as waitTaskResult, but pending tasks of all callers are polled by one scheduler thread
+     */
+    public CompletableFuture<byte[]> waitTaskResultAsync(String path, String taskId, @Nullable Integer timeoutInMillis) {
+        if (timeoutInMillis == null) {
+            timeoutInMillis = 5 * 60 * 1000;
+        }
+        var result = new CompletableFuture<byte[]>();
+        try {
+            var uri = new URIBuilder(baseUrl)
+                    .setPath(path)
+                    .addParameter("taskId", taskId)
+                    .build();
+            pollTaskResult(result, RequestBuilder.get(uri), path, timeoutInMillis, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMillis));
+        } catch (URISyntaxException e) {
+            result.completeExceptionally(new DiadocSdkException(e));
+        }
+        return result;
+    }
+
+    private void pollTaskResult(CompletableFuture<byte[]> result, RequestBuilder requestBuilder, String path, int timeoutInMillis, long deadline) {
+        if (result.isDone()) {
+            return;
+        }
+        executeAsync(requestBuilder, TaskResultResponse::new).whenComplete((response, e) -> {
+            if (e != null) {
+                result.completeExceptionally(e);
+                return;
+            }
+            if (response.statusCode == HttpStatus.SC_NO_CONTENT) {
+                if (System.nanoTime() - deadline > 0) {
+                    result.completeExceptionally(new DiadocSdkException(new TimeoutException(String.format("Can't GET '%s'. Timeout %ds expired.", path, timeoutInMillis / 1000))));
+                    return;
+                }
+                int delayInSeconds = response.retryAfter != null
+                        ? Math.min(response.retryAfter, 15)
+                        : 15;
+                getScheduler().schedule(
+                        () -> pollTaskResult(result, requestBuilder, path, timeoutInMillis, deadline),
+                        delayInSeconds,
+                        TimeUnit.SECONDS);
+                return;
+            }
+            if (response.statusCode != HttpStatus.SC_OK) {
+                result.completeExceptionally(new DiadocSdkException(new DiadocException(response.reason, response.statusCode, response.errorCode)));
+                return;
+            }
+            result.complete(response.content);
+        });
+    }
+
+    private ScheduledExecutorService getScheduler() {
+        var result = scheduler;
+        if (result == null) {
+            synchronized (this) {
+                if (closed) {
+                    throw new RejectedExecutionException("Diadoc http client is closed");
+                }
+                result = scheduler;
+                if (result == null) {
+                    result = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("diadoc-http-scheduler"));
+                    scheduler = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static class TaskResultResponse {
+        private final int statusCode;
+        private final String reason;
+        @Nullable
+        private final String errorCode;
+        @Nullable
+        private final Integer retryAfter;
+        @Nullable
+        private final byte[] content;
+
+        TaskResultResponse(HttpResponse response) throws IOException {
+            statusCode = response.getStatusLine().getStatusCode();
+            reason = response.getStatusLine().getReasonPhrase();
+            errorCode = tryGetDiadocErrorCode(response);
+            retryAfter = tryGetRetryAfterSeconds(response);
+            content = statusCode == HttpStatus.SC_OK ? EntityUtils.toByteArray(response.getEntity()) : null;
+        }
+    }
+
     @Nullable
     private static Integer tryGetRetryAfter(HttpResponse response) {
         Header[] retryAfterHeaders = response.getHeaders(HttpHeaders.RETRY_AFTER);
@@ -204,6 +1024,23 @@ public class DiadocHttpClient {
         return null;
     }
 
+    //unlike tryGetRetryAfter, accepts an http date and ignores a malformed value
+    @Nullable
+    private static Integer tryGetRetryAfterSeconds(HttpResponse response) {
+        var header = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+        if (header == null || Tools.isNullOrEmpty(header.getValue())) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(header.getValue().trim());
+        } catch (NumberFormatException e) {
+            var date = DateUtils.parseDate(header.getValue());
+            return date != null
+                    ? (int) Math.max(0, TimeUnit.MILLISECONDS.toSeconds(date.getTime() - System.currentTimeMillis()))
+                    : null;
+        }
+    }
+
     @Nullable
     private static String tryGetDiadocErrorCode(HttpResponse webResponse) {
         Header[] errorCodeHeaders = webResponse.getHeaders("X-Diadoc-ErrorCode");
@@ -0,0 +1,200 @@
+package Diadoc.Api.httpClient;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Connection pool, keep-alive and timeouts of DiadocHttpClient, the same for its blocking and async requests
+ */
+public class DiadocHttpClientConfig {
+    private int maxConnectionsTotal = 64;
+    private int maxConnectionsPerRoute = 32;
+    private Duration connectTimeout = Duration.ofSeconds(10);
+    private Duration connectionRequestTimeout = Duration.ofSeconds(30);
+    private Duration socketTimeout = Duration.ofMinutes(2);
+    private Duration idleConnectionTimeout = Duration.ofSeconds(30);
+    private Duration maxKeepAlive = Duration.ofMinutes(1);
+    private Duration validateAfterInactivity = Duration.ofSeconds(2);
+    private final Map<String, Duration> operationSocketTimeouts = new HashMap<>();
+    @Nullable
+    private AdaptiveRateLimiter rateLimiter;
+    @Nullable
+    private RetryPolicy retryPolicy;
+    @Nullable
+    private Bulkheads bulkheads;
+    @Nullable
+    private HedgingPolicy hedgingPolicy;
+
+    public int getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * All requests go to one host, so maxConnectionsPerRoute is the effective limit
+     */
+    public DiadocHttpClientConfig setMaxConnections(int maxConnectionsTotal, int maxConnectionsPerRoute) {
+        if (maxConnectionsTotal < 1)
+            throw new IllegalArgumentException("maxConnectionsTotal < 1");
+        if (maxConnectionsPerRoute < 1 || maxConnectionsPerRoute > maxConnectionsTotal)
+            throw new IllegalArgumentException("maxConnectionsPerRoute");
+        this.maxConnectionsTotal = maxConnectionsTotal;
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        return this;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public DiadocHttpClientConfig setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = requireTimeout(connectTimeout, "connectTimeout");
+        return this;
+    }
+
+    public Duration getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    /**
+     * Time to wait for a free connection of the pool
+     */
+    public DiadocHttpClientConfig setConnectionRequestTimeout(Duration connectionRequestTimeout) {
+        this.connectionRequestTimeout = requireTimeout(connectionRequestTimeout, "connectionRequestTimeout");
+        return this;
+    }
+
+    public Duration getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    /**
+     * Longest pause between two packets of a response, zero waits forever
+     */
+    public DiadocHttpClientConfig setSocketTimeout(Duration socketTimeout) {
+        this.socketTimeout = requireTimeout(socketTimeout, "socketTimeout");
+        return this;
+    }
+
+    public Duration getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    /**
+     * Pooled connections idle for longer are closed in background
+     */
+    public DiadocHttpClientConfig setIdleConnectionTimeout(Duration idleConnectionTimeout) {
+        if (idleConnectionTimeout == null || idleConnectionTimeout.isNegative() || idleConnectionTimeout.isZero())
+            throw new IllegalArgumentException("idleConnectionTimeout");
+        this.idleConnectionTimeout = idleConnectionTimeout;
+        return this;
+    }
+
+    public Duration getMaxKeepAlive() {
+        return maxKeepAlive;
+    }
+
+    /**
+     * A connection is reused for the Keep-Alive time of the server, but not longer than maxKeepAlive
+     */
+    public DiadocHttpClientConfig setMaxKeepAlive(Duration maxKeepAlive) {
+        if (maxKeepAlive == null || maxKeepAlive.isNegative() || maxKeepAlive.isZero())
+            throw new IllegalArgumentException("maxKeepAlive");
+        this.maxKeepAlive = maxKeepAlive;
+        return this;
+    }
+
+    public Duration getValidateAfterInactivity() {
+        return validateAfterInactivity;
+    }
+
+    /**
+     * A blocking request checks that a pooled connection is not closed by the server if it was idle for longer
+     */
+    public DiadocHttpClientConfig setValidateAfterInactivity(Duration validateAfterInactivity) {
+        this.validateAfterInactivity = requireTimeout(validateAfterInactivity, "validateAfterInactivity");
+        return this;
+    }
+
+    @Nullable
+    public Duration getOperationSocketTimeout(String path) {
+        return operationSocketTimeouts.get(path);
+    }
+
+    /**
+     * Overrides socketTimeout for requests to the path, e.g. "/GenerateDocumentZip"
+     */
+    public DiadocHttpClientConfig setOperationSocketTimeout(String path, Duration socketTimeout) {
+        if (path == null)
+            throw new IllegalArgumentException("path");
+        operationSocketTimeouts.put(path, requireTimeout(socketTimeout, "socketTimeout"));
+        return this;
+    }
+
+    @Nullable
+    public AdaptiveRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Off by default. Requests wait for the limiter before they are sent.
+     * Clients created with the same config share the limiter, so their requests are paced together
+     */
+    public DiadocHttpClientConfig setRateLimiter(@Nullable AdaptiveRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+        return this;
+    }
+
+    @Nullable
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Off by default. Failed requests are retried by the policy.
+     * Callers that retry by themselves multiply the attempts, e.g. ShelfClient resends missing parts up to 3 times
+     */
+    public DiadocHttpClientConfig setRetryPolicy(@Nullable RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    @Nullable
+    public Bulkheads getBulkheads() {
+        return bulkheads;
+    }
+
+    /**
+     * Off by default. Requests take a slot of their endpoint group before they are sent and hold it until their response is closed.
+     * Clients created with the same config share the groups and their circuits
+     */
+    public DiadocHttpClientConfig setBulkheads(@Nullable Bulkheads bulkheads) {
+        this.bulkheads = bulkheads;
+        return this;
+    }
+
+    @Nullable
+    public HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    /**
+     * Off by default. Hedged blocking requests are sent by the async client and wait for its buffered response
+     */
+    public DiadocHttpClientConfig setHedgingPolicy(@Nullable HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+        return this;
+    }
+
+    private static Duration requireTimeout(Duration timeout, String name) {
+        if (timeout == null || timeout.isNegative() || timeout.toMillis() > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(name);
+        return timeout;
+    }
+}
@@ -0,0 +1,221 @@
+package Diadoc.Api.httpClient;
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hedged GET requests: if a response does not come in the delay of the given latency percentile of the endpoint,
+ * a duplicate request is sent and the first of the two responses is used. Until sampleSize latencies
+ * of the endpoint are known, initialDelay is used. The hedging budget lets duplicates be at most budgetRatio of requests.
+ * By default "/V5/GetMessage" and "/V3/GetDocument" are hedged after their 95th percentile
+ */
+public class HedgingPolicy {
+    private static final int DELAY_UPDATE_INTERVAL = 16;
+
+    private final Set<String> paths = ConcurrentHashMap.newKeySet();
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private volatile double percentile = 0.95;
+    private volatile Duration minDelay = Duration.ofMillis(20);
+    private volatile Duration initialDelay = Duration.ofSeconds(1);
+    private volatile int sampleSize = 256;
+    private double budgetRatio = 0.05;
+    private double budgetBalance;
+
+    public HedgingPolicy() {
+        paths.add("/V5/GetMessage");
+        paths.add("/V3/GetDocument");
+    }
+
+    /**
+     * Hedges GET requests to the path, e.g. "/V4/GetEntityContent"
+     */
+    public HedgingPolicy addPath(String path) {
+        if (path == null)
+            throw new IllegalArgumentException("path");
+        paths.add(path);
+        return this;
+    }
+
+    public HedgingPolicy removePath(String path) {
+        paths.remove(path);
+        return this;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * @param percentile from 0.5 to 0.999, a duplicate is sent for about 1 - percentile of requests
+     */
+    public HedgingPolicy setPercentile(double percentile) {
+        if (!(percentile >= 0.5 && percentile <= 0.999))
+            throw new IllegalArgumentException("percentile");
+        this.percentile = percentile;
+        return this;
+    }
+
+    public Duration getMinDelay() {
+        return minDelay;
+    }
+
+    public Duration getInitialDelay() {
+        return initialDelay;
+    }
+
+    /**
+     * @param minDelay the least delay before a duplicate, however fast the endpoint is
+     * @param initialDelay the delay until enough latencies of the endpoint are known
+     */
+    public HedgingPolicy setDelays(Duration minDelay, Duration initialDelay) {
+        if (minDelay == null || minDelay.isNegative())
+            throw new IllegalArgumentException("minDelay");
+        if (initialDelay == null || initialDelay.compareTo(minDelay) < 0)
+            throw new IllegalArgumentException("initialDelay");
+        this.minDelay = minDelay;
+        this.initialDelay = initialDelay;
+        return this;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * The percentile is taken over the latencies of this many latest requests to an endpoint,
+     * each measured from the start of the request to the response used
+     */
+    public HedgingPolicy setSampleSize(int sampleSize) {
+        if (sampleSize < DELAY_UPDATE_INTERVAL)
+            throw new IllegalArgumentException("sampleSize < " + DELAY_UPDATE_INTERVAL);
+        this.sampleSize = sampleSize;
+        return this;
+    }
+
+    public synchronized double getBudgetRatio() {
+        return budgetRatio;
+    }
+
+    /**
+     * @param budgetRatio duplicates allowed per request, e.g. 0.05 adds at most 5% of load
+     */
+    public synchronized HedgingPolicy setBudgetRatio(double budgetRatio) {
+        if (!(budgetRatio >= 0 && budgetRatio <= 1))
+            throw new IllegalArgumentException("budgetRatio");
+        this.budgetRatio = budgetRatio;
+        return this;
+    }
+
+    public boolean isHedged(HttpUriRequest request) {
+        return "GET".equals(request.getMethod()) && paths.contains(request.getURI().getPath());
+    }
+
+    /**
+     * @return hedging counters of every hedged endpoint path that was requested
+     */
+    public Map<String, HedgingStats> getStats() {
+        var stats = new HashMap<String, HedgingStats>();
+        for (var endpoint : endpoints.entrySet())
+            stats.put(endpoint.getKey(), endpoint.getValue().toStats());
+        return stats;
+    }
+
+    Hedge start(String endpoint) {
+        var hedgedEndpoint = endpoints.computeIfAbsent(endpoint, ignored -> new Endpoint());
+        hedgedEndpoint.requests.increment();
+        depositBudget();
+        return new Hedge(hedgedEndpoint);
+    }
+
+    //a burst of slow responses may spend the duplicates saved over the last requests, but not more than ten
+    private synchronized void depositBudget() {
+        budgetBalance = Math.min(Math.max(1, 10 * budgetRatio), budgetBalance + budgetRatio);
+    }
+
+    private synchronized boolean withdrawBudget() {
+        if (budgetBalance < 1)
+            return false;
+        budgetBalance -= 1;
+        return true;
+    }
+
+    //one hedged request, it reports one latency from its start to the response used and the winner
+    class Hedge {
+        private final Endpoint endpoint;
+        private final long startedNanos = System.nanoTime();
+
+        private Hedge(Endpoint endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        long getDelayNanos() {
+            return endpoint.getDelayNanos();
+        }
+
+        boolean tryHedge() {
+            if (!withdrawBudget()) {
+                endpoint.budgetRejected.increment();
+                return false;
+            }
+            endpoint.hedges.increment();
+            return true;
+        }
+
+        void onLatency(long latencyNanos) {
+            endpoint.onLatency(latencyNanos);
+        }
+
+        //a straggler cancelled when its hedge won is counted as taking until then, which is the least it would have taken
+        void onCompleted(long completedNanos) {
+            endpoint.onLatency(completedNanos - startedNanos);
+        }
+
+        void onWin(boolean hedged) {
+            if (hedged)
+                endpoint.hedgeWins.increment();
+        }
+    }
+
+    //latest latencies of an endpoint in a ring, the percentile is sorted out of them every few responses
+    private class Endpoint {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder hedges = new LongAdder();
+        private final LongAdder hedgeWins = new LongAdder();
+        private final LongAdder budgetRejected = new LongAdder();
+        private long[] latencies = new long[sampleSize];
+        private int count;
+        private int next;
+        private long delayNanos = -1;
+
+        synchronized void onLatency(long latencyNanos) {
+            if (latencies.length != sampleSize) {
+                latencies = Arrays.copyOf(latencies, sampleSize);
+                count = Math.min(count, sampleSize);
+                next = count % sampleSize;
+            }
+            latencies[next] = latencyNanos;
+            next = (next + 1) % latencies.length;
+            count = Math.min(count + 1, latencies.length);
+            if (count == latencies.length && next % DELAY_UPDATE_INTERVAL == 0) {
+                var sorted = latencies.clone();
+                Arrays.sort(sorted);
+                delayNanos = sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+            }
+        }
+
+        synchronized long getDelayNanos() {
+            return delayNanos < 0 ? initialDelay.toNanos() : Math.max(minDelay.toNanos(), delayNanos);
+        }
+
+        HedgingStats toStats() {
+            return new HedgingStats(requests.sum(), hedges.sum(), hedgeWins.sum(), budgetRejected.sum(), Duration.ofNanos(getDelayNanos()));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package Diadoc.Api.httpClient;
+
+import java.time.Duration;
+
+/**
+ * Hedging counters of one endpoint path since the client was created
+ */
+public class HedgingStats {
+    private final long requests;
+    private final long hedges;
+    private final long hedgeWins;
+    private final long budgetRejected;
+    private final Duration hedgeDelay;
+
+    public HedgingStats(long requests, long hedges, long hedgeWins, long budgetRejected, Duration hedgeDelay) {
+        this.requests = requests;
+        this.hedges = hedges;
+        this.hedgeWins = hedgeWins;
+        this.budgetRejected = budgetRejected;
+        this.hedgeDelay = hedgeDelay;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Duplicate requests sent
+     */
+    public long getHedges() {
+        return hedges;
+    }
+
+    /**
+     * Requests answered by the duplicate before the original
+     */
+    public long getHedgeWins() {
+        return hedgeWins;
+    }
+
+    /**
+     * Duplicates not sent because the hedging budget was empty
+     */
+    public long getBudgetRejected() {
+        return budgetRejected;
+    }
+
+    /**
+     * Current delay before a duplicate is sent
+     */
+    public Duration getHedgeDelay() {
+        return hedgeDelay;
+    }
+
+    @Override
+    public String toString() {
+        return "HedgingStats{requests=" + requests + ", hedges=" + hedges + ", hedgeWins=" + hedgeWins
+                + ", budgetRejected=" + budgetRejected + ", hedgeDelay=" + hedgeDelay + "}";
+    }
+}
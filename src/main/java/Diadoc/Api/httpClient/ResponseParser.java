@@ -0,0 +1,8 @@
+package Diadoc.Api.httpClient;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface ResponseParser<T> {
+    T parse(byte[] content) throws IOException;
+}
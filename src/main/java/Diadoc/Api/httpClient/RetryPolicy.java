@@ -0,0 +1,265 @@
+package Diadoc.Api.httpClient;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.jetbrains.annotations.Nullable;
+
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Retries of DiadocHttpClient requests that failed with a connection error or with 429, 502, 503 or 504.
+ * A request that may have reached the server is retried only if it is idempotent: GET, HEAD, PUT, DELETE, OPTIONS,
+ * a POST with an operationId or a POST to a read-only path such as "/V3/GetDocflows".
+ * Delays grow with decorrelated jitter, and Retry-After of the response is the least delay.
+ * The retry budget lets retries be at most budgetRatio of requests plus minRetriesPerSecond,
+ * so a failing server does not get several times its usual load
+ */
+public class RetryPolicy {
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "PUT", "DELETE", "OPTIONS");
+    private static final Set<String> READ_ONLY_PATH_PREFIXES = Set.of("Get", "Search", "Detect", "Parse");
+
+    private final Set<String> idempotentPaths = ConcurrentHashMap.newKeySet();
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+    private int maxAttempts = 3;
+    private Duration baseDelay = Duration.ofMillis(200);
+    private Duration maxDelay = Duration.ofSeconds(10);
+    private double budgetRatio = 0.1;
+    private double minRetriesPerSecond = 10;
+    private double budgetBalance;
+    private long budgetRefilledAt = System.nanoTime();
+
+    public RetryPolicy() {
+        idempotentPaths.add("/CanSendInvoice");
+        idempotentPaths.add("/PrepareDocumentsToSign");
+        budgetBalance = getBudgetCapacity();
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Attempts of one request including the first one, 1 turns retries off
+     */
+    public RetryPolicy setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1)
+            throw new IllegalArgumentException("maxAttempts < 1");
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    public Duration getBaseDelay() {
+        return baseDelay;
+    }
+
+    public Duration getMaxDelay() {
+        return maxDelay;
+    }
+
+    /**
+     * A retry waits a random time from baseDelay to three times the previous delay, but not longer than maxDelay
+     */
+    public RetryPolicy setDelays(Duration baseDelay, Duration maxDelay) {
+        if (baseDelay == null || baseDelay.isNegative() || baseDelay.isZero())
+            throw new IllegalArgumentException("baseDelay");
+        if (maxDelay == null || maxDelay.compareTo(baseDelay) < 0)
+            throw new IllegalArgumentException("maxDelay");
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        return this;
+    }
+
+    public double getBudgetRatio() {
+        return budgetRatio;
+    }
+
+    public double getMinRetriesPerSecond() {
+        return minRetriesPerSecond;
+    }
+
+    /**
+     * @param budgetRatio retries allowed per request sent
+     * @param minRetriesPerSecond retries allowed regardless of the number of requests, so rare requests are retried too
+     */
+    public synchronized RetryPolicy setBudget(double budgetRatio, double minRetriesPerSecond) {
+        if (!(budgetRatio >= 0))
+            throw new IllegalArgumentException("budgetRatio");
+        if (!(minRetriesPerSecond >= 0))
+            throw new IllegalArgumentException("minRetriesPerSecond");
+        this.budgetRatio = budgetRatio;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        return this;
+    }
+
+    /**
+     * Marks POST requests to the path as safe to retry, e.g. "/GetOrganizationsByInnList"
+     */
+    public RetryPolicy addIdempotentPath(String path) {
+        if (path == null)
+            throw new IllegalArgumentException("path");
+        idempotentPaths.add(path);
+        return this;
+    }
+
+    public boolean isIdempotent(HttpUriRequest request) {
+        if (IDEMPOTENT_METHODS.contains(request.getMethod()))
+            return true;
+        var path = request.getURI().getPath();
+        if (path == null)
+            return false;
+        if (idempotentPaths.contains(path))
+            return true;
+        var operation = path.substring(path.lastIndexOf('/') + 1);
+        for (var prefix : READ_ONLY_PATH_PREFIXES) {
+            if (operation.startsWith(prefix))
+                return true;
+        }
+        if (operation.startsWith("Generate") && operation.contains("Xml"))
+            return true;
+        //the server deduplicates posts by operationId
+        for (var parameter : URLEncodedUtils.parse(request.getURI(), StandardCharsets.UTF_8)) {
+            if ("operationId".equals(parameter.getName()) && parameter.getValue() != null && !parameter.getValue().isEmpty())
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return retry counters of every endpoint path that was requested
+     */
+    public Map<String, RetryStats> getStats() {
+        var stats = new HashMap<String, RetryStats>();
+        for (var endpoint : counters.entrySet())
+            stats.put(endpoint.getKey(), endpoint.getValue().toStats());
+        return stats;
+    }
+
+    Retry start(HttpUriRequest request, String endpoint) {
+        var endpointCounters = counters.computeIfAbsent(endpoint, ignored -> new Counters());
+        endpointCounters.requests.increment();
+        depositBudget();
+        return new Retry(isIdempotent(request), endpointCounters);
+    }
+
+    private synchronized void depositBudget() {
+        refillBudget();
+        budgetBalance = Math.min(getBudgetCapacity(), budgetBalance + budgetRatio);
+    }
+
+    private synchronized boolean withdrawBudget() {
+        refillBudget();
+        if (budgetBalance < 1)
+            return false;
+        budgetBalance -= 1;
+        return true;
+    }
+
+    private void refillBudget() {
+        long now = System.nanoTime();
+        budgetBalance = Math.min(getBudgetCapacity(), budgetBalance + (now - budgetRefilledAt) * minRetriesPerSecond / TimeUnit.SECONDS.toNanos(1));
+        budgetRefilledAt = now;
+    }
+
+    //a burst of failures may spend the retries saved over ten seconds
+    private double getBudgetCapacity() {
+        return Math.max(1, 10 * minRetriesPerSecond);
+    }
+
+    //attempts of one request, its methods return the delay before the next attempt in nanoseconds or -1 to give up
+    class Retry {
+        private final boolean idempotent;
+        private final Counters counters;
+        private int attempts = 1;
+        private long previousDelay;
+
+        private Retry(boolean idempotent, Counters counters) {
+            this.idempotent = idempotent;
+            this.counters = counters;
+        }
+
+        long onFailure(IOException e) {
+            return isRetriable(e) ? nextDelay(null) : -1;
+        }
+
+        long onResponse(int statusCode, @Nullable Integer retryAfterSeconds) {
+            if (!isRetriable(statusCode)) {
+                if (attempts > 1 && statusCode < 500)
+                    counters.recovered.increment();
+                return -1;
+            }
+            return nextDelay(retryAfterSeconds);
+        }
+
+        private boolean isRetriable(IOException e) {
+            //a busy pool is not helped by more requests
+            if (e instanceof ConnectionPoolTimeoutException)
+                return false;
+            //the request was not sent, so even a non-idempotent one is safe to repeat
+            if (e instanceof ConnectTimeoutException || e instanceof ConnectException || e instanceof UnknownHostException)
+                return true;
+            if (!idempotent || e instanceof SSLException)
+                return false;
+            //a plain InterruptedIOException is an interrupted thread, its subclasses are timeouts
+            return e instanceof NoHttpResponseException || e instanceof SocketException
+                    || (e instanceof InterruptedIOException && e.getClass() != InterruptedIOException.class);
+        }
+
+        private boolean isRetriable(int statusCode) {
+            if (statusCode == SC_TOO_MANY_REQUESTS || statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE)
+                return true;
+            return idempotent && (statusCode == HttpStatus.SC_BAD_GATEWAY || statusCode == HttpStatus.SC_GATEWAY_TIMEOUT);
+        }
+
+        private long nextDelay(@Nullable Integer retryAfterSeconds) {
+            if (attempts >= maxAttempts) {
+                counters.exhausted.increment();
+                return -1;
+            }
+            if (!withdrawBudget()) {
+                counters.budgetRejected.increment();
+                counters.exhausted.increment();
+                return -1;
+            }
+            long base = baseDelay.toNanos();
+            long upper = Math.max(base + 1, previousDelay * 3);
+            long delay = Math.min(maxDelay.toNanos(), ThreadLocalRandom.current().nextLong(base, upper));
+            previousDelay = delay;
+            if (retryAfterSeconds != null)
+                delay = Math.max(delay, TimeUnit.SECONDS.toNanos(Math.max(0, retryAfterSeconds)));
+            attempts++;
+            counters.retries.increment();
+            return delay;
+        }
+    }
+
+    private static class Counters {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder recovered = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+        private final LongAdder budgetRejected = new LongAdder();
+
+        RetryStats toStats() {
+            return new RetryStats(requests.sum(), retries.sum(), recovered.sum(), exhausted.sum(), budgetRejected.sum());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package Diadoc.Api.httpClient;
+
+/**
+ * Retry counters of one endpoint path since the client was created
+ */
+public class RetryStats {
+    private final long requests;
+    private final long retries;
+    private final long recovered;
+    private final long exhausted;
+    private final long budgetRejected;
+
+    public RetryStats(long requests, long retries, long recovered, long exhausted, long budgetRejected) {
+        this.requests = requests;
+        this.retries = retries;
+        this.recovered = recovered;
+        this.exhausted = exhausted;
+        this.budgetRejected = budgetRejected;
+    }
+
+    /**
+     * Requests sent by callers, retries are not counted
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    /**
+     * Requests that succeeded after at least one retry
+     */
+    public long getRecovered() {
+        return recovered;
+    }
+
+    /**
+     * Requests that failed with a retriable error when their attempts or the retry budget ran out
+     */
+    public long getExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * Retries not made because the retry budget was empty
+     */
+    public long getBudgetRejected() {
+        return budgetRejected;
+    }
+
+    @Override
+    public String toString() {
+        return "RetryStats{requests=" + requests + ", retries=" + retries + ", recovered=" + recovered
+                + ", exhausted=" + exhausted + ", budgetRejected=" + budgetRejected + "}";
+    }
+}
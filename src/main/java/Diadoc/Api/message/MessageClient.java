@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static Diadoc.Api.Proto.Events.DiadocMessage_GetApiProtos.Message;
 import static Diadoc.Api.Proto.Events.DiadocMessage_GetApiProtos.MessagePatch;
@@ -35,52 +36,48 @@ public class MessageClient {
         return postMessage(msg, null);
     }
 
+    public CompletableFuture<Message> postMessageAsync(MessageToPost msg) {
+        return postMessageAsync(msg, null);
+    }
+
     public Message postMessage(MessageToPost msg, @Nullable String operationId) throws DiadocSdkException {
-        if (msg == null) {
-            throw new IllegalArgumentException("msg");
-        }
         try {
-            var uriBuilder = new URIBuilder(diadocHttpClient.getBaseUrl()).setPath("/V3/PostMessage");
-            if (operationId != null) {
-                uriBuilder.addParameter("operationId", operationId);
-            }
-            var request = RequestBuilder.post(
-                    uriBuilder.build())
-                    .setEntity(new ByteArrayEntity(msg.toByteArray()));
-
-            return Message.parseFrom(diadocHttpClient.performRequest(request));
+            return Message.parseFrom(diadocHttpClient.performRequest(buildPostMessageRequest(msg, operationId)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
-    public Message getMessage(String currentBoxId, String messageId, @Nullable String entityId, boolean withOriginalSignature, boolean injectEntityContent) throws DiadocSdkException {
-        if (currentBoxId == null) {
-            throw new IllegalArgumentException("boxId");
-        }
-        if (messageId == null) {
-            throw new IllegalArgumentException("messageId");
+    public CompletableFuture<Message> postMessageAsync(MessageToPost msg, @Nullable String operationId) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildPostMessageRequest(msg, operationId), Message::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
         }
+    }
 
+    public Message getMessage(String currentBoxId, String messageId, @Nullable String entityId, boolean withOriginalSignature, boolean injectEntityContent) throws DiadocSdkException {
         try {
-            var url = new URIBuilder(diadocHttpClient.getBaseUrl())
-                    .setPath("/V5/GetMessage")
-                    .addParameter("boxId", currentBoxId)
-                    .addParameter("messageId", messageId)
-                    .addParameter("injectEntityContent", String.valueOf(injectEntityContent))
-                    .addParameter("originalSignature", String.valueOf(withOriginalSignature));
-
-            if (!Tools.isNullOrEmpty(entityId)) {
-                url.addParameter("entityId", entityId);
-            }
-
-            var request = RequestBuilder.get(url.build());
+            var request = buildGetMessageRequest(currentBoxId, messageId, entityId, withOriginalSignature, injectEntityContent);
             return Message.parseFrom(diadocHttpClient.performRequest(request));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<Message> getMessageAsync(String currentBoxId, String messageId, @Nullable String entityId, boolean withOriginalSignature, boolean injectEntityContent) {
+        try {
+            var request = buildGetMessageRequest(currentBoxId, messageId, entityId, withOriginalSignature, injectEntityContent);
+            return diadocHttpClient.performRequestAsync(request, Message::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     public Message getMessage(String currentBoxId, String messageId, String entityId) throws DiadocSdkException {
         return getMessage(currentBoxId, messageId, entityId, false, false);
     }
@@ -97,6 +94,10 @@ public class MessageClient {
         return getMessage(currentBoxId, messageId, false, false);
     }
 
+    public CompletableFuture<Message> getMessageAsync(String currentBoxId, String messageId) {
+        return getMessageAsync(currentBoxId, messageId, null, false, false);
+    }
+
     public Message getMessage(String currentBoxId, String messageId, boolean withOriginalSignature) throws DiadocSdkException {
         return getMessage(currentBoxId, messageId, withOriginalSignature, false);
     }
@@ -106,25 +107,23 @@ public class MessageClient {
     }
 
     public MessagePatch postMessagePatch(MessagePatchToPost patch, @Nullable String operationId) throws DiadocSdkException {
-        if (patch == null) {
-            throw new IllegalArgumentException("patch");
-        }
-
         try {
-            var uriBuilder = new URIBuilder(diadocHttpClient.getBaseUrl()).setPath("/V3/PostMessagePatch");
-            if (operationId != null) {
-                uriBuilder.addParameter("operationId", operationId);
-            }
-            var request = RequestBuilder.post(
-                    uriBuilder.build())
-                    .setEntity(new ByteArrayEntity(patch.toByteArray()));
-
-            return MessagePatch.parseFrom(diadocHttpClient.performRequest(request));
+            return MessagePatch.parseFrom(diadocHttpClient.performRequest(buildPostMessagePatchRequest(patch, operationId)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<MessagePatch> postMessagePatchAsync(MessagePatchToPost patch, @Nullable String operationId) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildPostMessagePatchRequest(patch, operationId), MessagePatch::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     public void delete(String boxId, String messageId, String documentId) throws DiadocSdkException {
         if (boxId == null) {
             throw new IllegalArgumentException("boxId");
@@ -195,4 +194,54 @@ public class MessageClient {
             throw new DiadocSdkException(e);
         }
     }
+
+    private RequestBuilder buildPostMessageRequest(MessageToPost msg, @Nullable String operationId) throws URISyntaxException {
+        if (msg == null) {
+            throw new IllegalArgumentException("msg");
+        }
+
+        var uriBuilder = new URIBuilder(diadocHttpClient.getBaseUrl()).setPath("/V3/PostMessage");
+        if (operationId != null) {
+            uriBuilder.addParameter("operationId", operationId);
+        }
+        return RequestBuilder.post(
+                uriBuilder.build())
+                .setEntity(new ByteArrayEntity(msg.toByteArray()));
+    }
+
+    private RequestBuilder buildGetMessageRequest(String currentBoxId, String messageId, @Nullable String entityId, boolean withOriginalSignature, boolean injectEntityContent) throws URISyntaxException {
+        if (currentBoxId == null) {
+            throw new IllegalArgumentException("boxId");
+        }
+        if (messageId == null) {
+            throw new IllegalArgumentException("messageId");
+        }
+
+        var url = new URIBuilder(diadocHttpClient.getBaseUrl())
+                .setPath("/V5/GetMessage")
+                .addParameter("boxId", currentBoxId)
+                .addParameter("messageId", messageId)
+                .addParameter("injectEntityContent", String.valueOf(injectEntityContent))
+                .addParameter("originalSignature", String.valueOf(withOriginalSignature));
+
+        if (!Tools.isNullOrEmpty(entityId)) {
+            url.addParameter("entityId", entityId);
+        }
+
+        return RequestBuilder.get(url.build());
+    }
+
+    private RequestBuilder buildPostMessagePatchRequest(MessagePatchToPost patch, @Nullable String operationId) throws URISyntaxException {
+        if (patch == null) {
+            throw new IllegalArgumentException("patch");
+        }
+
+        var uriBuilder = new URIBuilder(diadocHttpClient.getBaseUrl()).setPath("/V3/PostMessagePatch");
+        if (operationId != null) {
+            uriBuilder.addParameter("operationId", operationId);
+        }
+        return RequestBuilder.post(
+                uriBuilder.build())
+                .setEntity(new ByteArrayEntity(patch.toByteArray()));
+    }
 }
@@ -13,6 +13,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.concurrent.CompletableFuture;
 
 import static Diadoc.Api.Proto.GetOrganizationsByInnListProtos.*;
 import static Diadoc.Api.Proto.OrganizationProtos.*;
@@ -29,41 +30,47 @@ public class OrganizationClient {
     }
 
     public Box getBox(String boxId) throws DiadocSdkException {
-        if (boxId == null)
-            throw new IllegalArgumentException("boxId");
         try {
-            var request = RequestBuilder.get(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/GetBox")
-                            .addParameter("boxId", boxId)
-                            .build());
-            return Box.parseFrom(diadocHttpClient.performRequest(request));
+            return Box.parseFrom(diadocHttpClient.performRequest(buildGetBoxRequest(boxId)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
-    public Organization getOrganizationById(String orgId) throws DiadocSdkException {
-        if (orgId == null || orgId.isEmpty()) {
-            throw new IllegalArgumentException("orgId");
+    public CompletableFuture<Box> getBoxAsync(String boxId) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildGetBoxRequest(boxId), Box::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
         }
+    }
+
+    public Organization getOrganizationById(String orgId) throws DiadocSdkException {
         return getOrganization("orgId", orgId);
     }
 
+    public CompletableFuture<Organization> getOrganizationByIdAsync(String orgId) {
+        return getOrganizationAsync("orgId", orgId);
+    }
+
     public Organization getOrganizationByInn(String inn) throws DiadocSdkException {
-        if (inn == null || inn.isEmpty()) {
-            throw new IllegalArgumentException("inn");
-        }
         return getOrganization("inn", inn);
     }
 
+    public CompletableFuture<Organization> getOrganizationByInnAsync(String inn) {
+        return getOrganizationAsync("inn", inn);
+    }
+
     public Organization getOrganizationByFnsParticipantId(String fnsParticipantId) throws DiadocSdkException {
-        if (fnsParticipantId == null || fnsParticipantId.isEmpty()) {
-            throw new IllegalArgumentException("fnsParticipantId");
-        }
         return getOrganization("fnsParticipantId", fnsParticipantId);
     }
 
+    public CompletableFuture<Organization> getOrganizationByFnsParticipantIdAsync(String fnsParticipantId) {
+        return getOrganizationAsync("fnsParticipantId", fnsParticipantId);
+    }
+
     public OrganizationWithCounteragentStatus[] getOrganizationsByInnList(String myOrgId, Iterable<String> innList) throws DiadocSdkException {
         var request = GetOrganizationsByInnListRequest.newBuilder();
         request.addAllInnList(innList);
@@ -73,18 +80,8 @@ public class OrganizationClient {
     public OrganizationWithCounteragentStatus[] getOrganizationsByInnList(String myOrgId, GetOrganizationsByInnListRequest innListRequest) throws DiadocSdkException {
         if (myOrgId == null)
             throw new IllegalArgumentException("myOrgId");
-        if (innListRequest == null)
-            throw new IllegalArgumentException("innListRequest");
         try {
-            var request = RequestBuilder.post(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/GetOrganizationsByInnList")
-                            .addParameter("myOrgId", myOrgId)
-                            .build())
-                    .setEntity(new ByteArrayEntity(innListRequest.toByteArray()));
-
-
-            var response = GetOrganizationsByInnListResponse.parseFrom(diadocHttpClient.performRequest(request));
+            var response = GetOrganizationsByInnListResponse.parseFrom(diadocHttpClient.performRequest(buildGetOrganizationsByInnListRequest(myOrgId, innListRequest)));
             return response.getOrganizationsList().toArray(new OrganizationWithCounteragentStatus[0]);
 
         } catch (URISyntaxException | IOException e) {
@@ -92,6 +89,19 @@ public class OrganizationClient {
         }
     }
 
+    public CompletableFuture<OrganizationWithCounteragentStatus[]> getOrganizationsByInnListAsync(String myOrgId, GetOrganizationsByInnListRequest innListRequest) {
+        if (myOrgId == null)
+            return CompletableFuture.failedFuture(new IllegalArgumentException("myOrgId"));
+        try {
+            return diadocHttpClient.performRequestAsync(buildGetOrganizationsByInnListRequest(myOrgId, innListRequest), GetOrganizationsByInnListResponse::parseFrom)
+                    .thenApply(response -> response.getOrganizationsList().toArray(new OrganizationWithCounteragentStatus[0]));
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     public Organization[] getOrganizationsByInnList(Iterable<String> innList) throws DiadocSdkException {
         var request = GetOrganizationsByInnListRequest.newBuilder();
         request.addAllInnList(innList);
@@ -99,136 +109,149 @@ public class OrganizationClient {
     }
 
     public Organization[] getOrganizationsByInnList(GetOrganizationsByInnListRequest innListRequest) throws DiadocSdkException {
-        if (innListRequest == null) {
-            throw new IllegalArgumentException("innListRequest");
-        }
         try {
-            var request = RequestBuilder.post(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/GetOrganizationsByInnList")
-                            .build())
-                    .setEntity(new ByteArrayEntity(innListRequest.toByteArray()));
-            var response = GetOrganizationsByInnListResponse.parseFrom(diadocHttpClient.performRequest(request));
-            return response
-                    .getOrganizationsList()
-                    .stream()
-                    .map(OrganizationWithCounteragentStatus::getOrganization)
-                    .toArray(Organization[]::new);
+            var response = GetOrganizationsByInnListResponse.parseFrom(diadocHttpClient.performRequest(buildGetOrganizationsByInnListRequest(null, innListRequest)));
+            return toOrganizations(response);
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
-    public OrganizationList getOrganizationsByInnKpp(String inn, @Nullable String kpp, boolean includeRelations) throws DiadocSdkException {
-        if (inn == null) {
-            throw new IllegalArgumentException("inn");
-        }
+    public CompletableFuture<Organization[]> getOrganizationsByInnListAsync(GetOrganizationsByInnListRequest innListRequest) {
         try {
-            var url = new URIBuilder(diadocHttpClient.getBaseUrl())
-                    .setPath("/GetOrganizationsByInnKpp")
-                    .addParameter("inn", inn);
-
-            if (!Tools.isNullOrEmpty(kpp)) {
-                url.addParameter("kpp", kpp);
-            }
+            return diadocHttpClient.performRequestAsync(buildGetOrganizationsByInnListRequest(null, innListRequest), GetOrganizationsByInnListResponse::parseFrom)
+                    .thenApply(OrganizationClient::toOrganizations);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
-            if (includeRelations) {
-                url.addParameter("includeRelations", "true");
-            }
-            var request = RequestBuilder.get(url.build());
-            return OrganizationList.parseFrom(diadocHttpClient.performRequest(request));
+    public OrganizationList getOrganizationsByInnKpp(String inn, @Nullable String kpp, boolean includeRelations) throws DiadocSdkException {
+        try {
+            return OrganizationList.parseFrom(diadocHttpClient.performRequest(buildGetOrganizationsByInnKppRequest(inn, kpp, includeRelations)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<OrganizationList> getOrganizationsByInnKppAsync(String inn, @Nullable String kpp, boolean includeRelations) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildGetOrganizationsByInnKppRequest(inn, kpp, includeRelations), OrganizationList::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     public OrganizationList getOrganizationsByInnKpp(String inn, @Nullable String kpp) throws DiadocSdkException {
         return getOrganizationsByInnKpp(inn, kpp, false);
     }
 
     public OrganizationList getMyOrganizations(boolean autoRegister) throws DiadocSdkException {
         try {
-            var url = new URIBuilder(diadocHttpClient.getBaseUrl())
-                    .setPath("/GetMyOrganizations");
-
-            if (!autoRegister) {
-                url.addParameter("autoRegister", Boolean.toString(false));
-            }
-            var request = RequestBuilder.get(url.build());
-            return OrganizationList.parseFrom(diadocHttpClient.performRequest(request));
+            return OrganizationList.parseFrom(diadocHttpClient.performRequest(buildGetMyOrganizationsRequest(autoRegister)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<OrganizationList> getMyOrganizationsAsync(boolean autoRegister) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildGetMyOrganizationsRequest(autoRegister), OrganizationList::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        }
+    }
+
     public OrganizationList getMyOrganizations() throws DiadocSdkException {
         return getMyOrganizations(true);
     }
 
     public OrganizationUsersList getOrganizationUsers(String orgId) throws DiadocSdkException {
         try {
-            var request = RequestBuilder.get(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/GetOrganizationUsers")
-                            .addParameter("orgId", orgId)
-                            .build());
-            return OrganizationUsersList.parseFrom(diadocHttpClient.performRequest(request));
+            return OrganizationUsersList.parseFrom(diadocHttpClient.performRequest(buildGetRequest("/GetOrganizationUsers", "orgId", orgId)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<OrganizationUsersList> getOrganizationUsersAsync(String orgId) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildGetRequest("/GetOrganizationUsers", "orgId", orgId), OrganizationUsersList::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        }
+    }
+
     public OrganizationUserPermissions getMyPermissions(String orgId) throws DiadocSdkException {
         if (orgId == null) {
             throw new IllegalArgumentException("orgId");
         }
-
         try {
-            var request = RequestBuilder.get(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/GetMyPermissions")
-                            .addParameter("orgId", orgId)
-                            .build());
-            return OrganizationUserPermissions.parseFrom(diadocHttpClient.performRequest(request));
+            return OrganizationUserPermissions.parseFrom(diadocHttpClient.performRequest(buildGetRequest("/GetMyPermissions", "orgId", orgId)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<OrganizationUserPermissions> getMyPermissionsAsync(String orgId) {
+        if (orgId == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("orgId"));
+        }
+        try {
+            return diadocHttpClient.performRequestAsync(buildGetRequest("/GetMyPermissions", "orgId", orgId), OrganizationUserPermissions::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        }
+    }
+
     private Organization getOrganization(String name, String value) throws DiadocSdkException {
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException(name);
+        }
         try {
-            var request = RequestBuilder.get(
-                    new URIBuilder(
-                            diadocHttpClient.getBaseUrl())
-                            .setPath("/GetOrganization")
-                            .addParameter(name, value)
-                            .build());
-
-            return Organization.parseFrom(diadocHttpClient.performRequest(request));
+            return Organization.parseFrom(diadocHttpClient.performRequest(buildGetRequest("/GetOrganization", name, value)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    private CompletableFuture<Organization> getOrganizationAsync(String name, String value) {
+        if (value == null || value.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(name));
+        }
+        try {
+            return diadocHttpClient.performRequestAsync(buildGetRequest("/GetOrganization", name, value), Organization::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        }
+    }
+
     public OrganizationFeatures getOrganizationFeatures(String boxId) throws DiadocSdkException {
         if (boxId == null) {
             throw new IllegalArgumentException("boxId");
         }
-
         try {
-            var request = RequestBuilder.get(
-                    new URIBuilder(
-                            diadocHttpClient.getBaseUrl())
-                            .setPath("/GetOrganizationFeatures")
-                            .addParameter("boxId", boxId)
-                            .build());
-
-            return OrganizationFeatures.parseFrom(diadocHttpClient.performRequest(request));
+            return OrganizationFeatures.parseFrom(diadocHttpClient.performRequest(buildGetRequest("/GetOrganizationFeatures", "boxId", boxId)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<OrganizationFeatures> getOrganizationFeaturesAsync(String boxId) {
+        if (boxId == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("boxId"));
+        }
+        try {
+            return diadocHttpClient.performRequestAsync(buildGetRequest("/GetOrganizationFeatures", "boxId", boxId), OrganizationFeatures::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        }
+    }
+
     public RegistrationResponse register(RegistrationRequest registrationRequest) throws DiadocSdkException {
         try {
             var request = RequestBuilder.post(
@@ -287,4 +310,66 @@ public class OrganizationClient {
         }
     }
 
+    private RequestBuilder buildGetBoxRequest(String boxId) throws URISyntaxException {
+        if (boxId == null)
+            throw new IllegalArgumentException("boxId");
+        return buildGetRequest("/GetBox", "boxId", boxId);
+    }
+
+    private RequestBuilder buildGetOrganizationsByInnListRequest(@Nullable String myOrgId, GetOrganizationsByInnListRequest innListRequest) throws URISyntaxException {
+        if (innListRequest == null)
+            throw new IllegalArgumentException("innListRequest");
+        var url = new URIBuilder(diadocHttpClient.getBaseUrl())
+                .setPath("/GetOrganizationsByInnList");
+        if (myOrgId != null) {
+            url.addParameter("myOrgId", myOrgId);
+        }
+        return RequestBuilder.post(url.build())
+                .setEntity(new ByteArrayEntity(innListRequest.toByteArray()));
+    }
+
+    private RequestBuilder buildGetOrganizationsByInnKppRequest(String inn, @Nullable String kpp, boolean includeRelations) throws URISyntaxException {
+        if (inn == null) {
+            throw new IllegalArgumentException("inn");
+        }
+        var url = new URIBuilder(diadocHttpClient.getBaseUrl())
+                .setPath("/GetOrganizationsByInnKpp")
+                .addParameter("inn", inn);
+
+        if (!Tools.isNullOrEmpty(kpp)) {
+            url.addParameter("kpp", kpp);
+        }
+
+        if (includeRelations) {
+            url.addParameter("includeRelations", "true");
+        }
+        return RequestBuilder.get(url.build());
+    }
+
+    private RequestBuilder buildGetMyOrganizationsRequest(boolean autoRegister) throws URISyntaxException {
+        var url = new URIBuilder(diadocHttpClient.getBaseUrl())
+                .setPath("/GetMyOrganizations");
+
+        if (!autoRegister) {
+            url.addParameter("autoRegister", Boolean.toString(false));
+        }
+        return RequestBuilder.get(url.build());
+    }
+
+    private RequestBuilder buildGetRequest(String path, String name, String value) throws URISyntaxException {
+        return RequestBuilder.get(
+                new URIBuilder(diadocHttpClient.getBaseUrl())
+                        .setPath(path)
+                        .addParameter(name, value)
+                        .build());
+    }
+
+    private static Organization[] toOrganizations(GetOrganizationsByInnListResponse response) {
+        return response
+                .getOrganizationsList()
+                .stream()
+                .map(OrganizationWithCounteragentStatus::getOrganization)
+                .toArray(Organization[]::new);
+    }
+
 }
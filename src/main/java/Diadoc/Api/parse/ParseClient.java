@@ -10,6 +10,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.concurrent.CompletableFuture;
 
 import static Diadoc.Api.Proto.Invoicing.AcceptanceCertificate552InfoProtos.*;
 import static Diadoc.Api.Proto.Invoicing.AcceptanceCertificateInfoProtos.*;
@@ -190,22 +191,32 @@ public class ParseClient {
 
     public byte[] parseTitleXml(String boxId, String documentTypeNamedId, String documentFunction, String documentVersion, Integer titleIndex, byte[] content) throws IOException, DiadocSdkException {
         try {
-            var request = RequestBuilder.post(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/ParseTitleXml")
-                            .addParameter("boxId", boxId)
-                            .addParameter("documentTypeNamedId", documentTypeNamedId)
-                            .addParameter("documentFunction", documentFunction)
-                            .addParameter("documentVersion", documentVersion)
-                            .addParameter("titleIndex", titleIndex.toString()).build())
-                    .setEntity(new ByteArrayEntity(content));
-
-            return diadocHttpClient.performRequest(request);
+            return diadocHttpClient.performRequest(buildParseTitleXmlRequest(boxId, documentTypeNamedId, documentFunction, documentVersion, titleIndex, content));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<byte[]> parseTitleXmlAsync(String boxId, String documentTypeNamedId, String documentFunction, String documentVersion, Integer titleIndex, byte[] content) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildParseTitleXmlRequest(boxId, documentTypeNamedId, documentFunction, documentVersion, titleIndex, content));
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        }
+    }
+
+    private RequestBuilder buildParseTitleXmlRequest(String boxId, String documentTypeNamedId, String documentFunction, String documentVersion, Integer titleIndex, byte[] content) throws URISyntaxException {
+        return RequestBuilder.post(
+                new URIBuilder(diadocHttpClient.getBaseUrl())
+                        .setPath("/ParseTitleXml")
+                        .addParameter("boxId", boxId)
+                        .addParameter("documentTypeNamedId", documentTypeNamedId)
+                        .addParameter("documentFunction", documentFunction)
+                        .addParameter("documentVersion", documentVersion)
+                        .addParameter("titleIndex", titleIndex.toString()).build())
+                .setEntity(new ByteArrayEntity(content));
+    }
+
     private byte[] parseXml(byte[] xmlContent, String path, @Nullable String documentVersion) throws DiadocSdkException {
         try {
             var url = new URIBuilder(diadocHttpClient.getBaseUrl()).setPath(path);
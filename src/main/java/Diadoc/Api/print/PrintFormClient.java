@@ -1,12 +1,15 @@
 package Diadoc.Api.print;
 
+import Diadoc.Api.exceptions.DiadocException;
 import Diadoc.Api.exceptions.DiadocSdkException;
+import Diadoc.Api.httpClient.DiadocResponseInfo;
 import Diadoc.Api.print.models.DocumentProtocolResult;
 import Diadoc.Api.print.models.DocumentZipResult;
 import Diadoc.Api.print.models.PrintFormContent;
 import Diadoc.Api.print.models.PrintFormResult;
 import Diadoc.Api.helpers.Tools;
 import Diadoc.Api.httpClient.DiadocHttpClient;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.RequestBuilder;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.ByteArrayEntity;
@@ -14,6 +17,9 @@ import org.apache.http.entity.ByteArrayEntity;
 import javax.mail.internet.ParseException;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static Diadoc.Api.Proto.CustomPrintFormDetectionProtos.*;
 import static Diadoc.Api.Proto.Documents.DocumentProtocolProtos.*;
@@ -27,37 +33,45 @@ public class PrintFormClient {
     }
 
     public PrintFormResult generatePrintForm(String boxId, String messageId, String documentId) throws DiadocSdkException {
-        if (Tools.isNullOrEmpty(boxId)) {
-            throw new IllegalArgumentException("boxId");
-        }
-        if (Tools.isNullOrEmpty(messageId)) {
-            throw new IllegalArgumentException("messageId");
-        }
-        if (Tools.isNullOrEmpty(documentId)) {
-            throw new IllegalArgumentException("documentId");
+        try {
+            var request = buildDocumentRequest("/GeneratePrintForm", boxId, messageId, documentId);
+            return toPrintFormResult(diadocHttpClient.getRawResponse(request));
+        } catch (URISyntaxException | ParseException | IOException e) {
+            throw new DiadocSdkException(e);
         }
+    }
 
+    public PrintFormResult generatePrintForm(String boxId, String messageId, String documentId, Path target) throws DiadocSdkException {
+        if (target == null) {
+            throw new IllegalArgumentException("target");
+        }
         try {
-            var request = RequestBuilder.get(new URIBuilder(diadocHttpClient.getBaseUrl())
-                    .setPath("/GeneratePrintForm")
-                    .addParameter("boxId", boxId)
-                    .addParameter("messageId", messageId)
-                    .addParameter("documentId", documentId)
-                    .build());
-
-            var response = diadocHttpClient.getRawResponse(request);
-
+            var request = buildDocumentRequest("/GeneratePrintForm", boxId, messageId, documentId);
+            var response = diadocHttpClient.getRawResponse(request, target);
             if (response.getRetryAfter() != null) {
                 return new PrintFormResult(response.getRetryAfter());
             }
+            if (response.getStatusCode() != HttpStatus.SC_OK) {
+                throw new DiadocException(response.getReason(), response.getStatusCode());
+            }
 
-            return new PrintFormResult(new PrintFormContent(response.getContentType(), response.getFileName(), response.getContent()));
-
-        } catch (URISyntaxException | ParseException | IOException e) {
+            return new PrintFormResult(new PrintFormContent(response.getContentType(), response.getFileName(), target));
+        } catch (URISyntaxException | ParseException | IOException | DiadocException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<PrintFormResult> generatePrintFormAsync(String boxId, String messageId, String documentId) {
+        try {
+            var request = buildDocumentRequest("/GeneratePrintForm", boxId, messageId, documentId);
+            return diadocHttpClient.getRawResponseAsync(request).thenApply(PrintFormClient::toPrintFormResult);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     public CustomPrintFormDetectionResult detectCustomPrintForms(String boxId, CustomPrintFormDetectionRequest detectionRequest) throws DiadocSdkException {
         if (Tools.isNullOrEmpty(boxId)) {
             throw new IllegalArgumentException("boxId");
@@ -81,38 +95,60 @@ public class PrintFormClient {
     }
 
     public DocumentZipResult generateDocumentZip(String boxId, String messageId, String documentId, boolean fullDocflow) throws DiadocSdkException {
-        if (Tools.isNullOrEmpty(boxId)) {
-            throw new IllegalArgumentException("boxId");
-        }
-        if (Tools.isNullOrEmpty(messageId)) {
-            throw new IllegalArgumentException("messageId");
-        }
-        if (Tools.isNullOrEmpty(documentId)) {
-            throw new IllegalArgumentException("documentId");
-        }
         try {
-            var request = RequestBuilder.get(new URIBuilder(diadocHttpClient.getBaseUrl())
-                    .setPath("/GenerateDocumentZip")
-                    .addParameter("boxId", boxId)
-                    .addParameter("messageId", messageId)
-                    .addParameter("documentId", documentId)
-                    .addParameter("fullDocflow", String.valueOf(fullDocflow))
-                    .build());
-
-            var response = diadocHttpClient.getRawResponse(request);
-
-            if (response.getRetryAfter() != null) {
-                return new DocumentZipResult(response.getRetryAfter());
-            }
+            var request = buildDocumentRequest("/GenerateDocumentZip", boxId, messageId, documentId)
+                    .addParameter("fullDocflow", String.valueOf(fullDocflow));
+            return toDocumentZipResult(diadocHttpClient.getRawResponse(request));
+        } catch (URISyntaxException | ParseException | IOException e) {
+            throw new DiadocSdkException(e);
+        }
+    }
 
-            return new DocumentZipResult(DocumentZipGenerationResult.parseFrom(response.getContent()));
+    public CompletableFuture<DocumentZipResult> generateDocumentZipAsync(String boxId, String messageId, String documentId, boolean fullDocflow) {
+        try {
+            var request = buildDocumentRequest("/GenerateDocumentZip", boxId, messageId, documentId)
+                    .addParameter("fullDocflow", String.valueOf(fullDocflow));
+            return diadocHttpClient.getRawResponseAsync(request).thenApply(response -> {
+                try {
+                    return toDocumentZipResult(response);
+                } catch (IOException e) {
+                    throw new CompletionException(new DiadocSdkException(e));
+                }
+            });
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
+    public DocumentProtocolResult generateDocumentProtocol(String boxId, String messageId, String documentId) throws DiadocSdkException {
+        try {
+            var request = buildDocumentRequest("/GenerateDocumentProtocol", boxId, messageId, documentId);
+            return toDocumentProtocolResult(diadocHttpClient.getRawResponse(request));
         } catch (URISyntaxException | ParseException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
-    public DocumentProtocolResult generateDocumentProtocol(String boxId, String messageId, String documentId) throws DiadocSdkException {
+    public CompletableFuture<DocumentProtocolResult> generateDocumentProtocolAsync(String boxId, String messageId, String documentId) {
+        try {
+            var request = buildDocumentRequest("/GenerateDocumentProtocol", boxId, messageId, documentId);
+            return diadocHttpClient.getRawResponseAsync(request).thenApply(response -> {
+                try {
+                    return toDocumentProtocolResult(response);
+                } catch (IOException e) {
+                    throw new CompletionException(new DiadocSdkException(e));
+                }
+            });
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private RequestBuilder buildDocumentRequest(String path, String boxId, String messageId, String documentId) throws URISyntaxException {
         if (Tools.isNullOrEmpty(boxId)) {
             throw new IllegalArgumentException("boxId");
         }
@@ -123,24 +159,35 @@ public class PrintFormClient {
             throw new IllegalArgumentException("documentId");
         }
 
-        try {
-            var request = RequestBuilder.get(new URIBuilder(diadocHttpClient.getBaseUrl())
-                    .setPath("/GenerateDocumentProtocol")
-                    .addParameter("boxId", boxId)
-                    .addParameter("messageId", messageId)
-                    .addParameter("documentId", documentId)
-                    .build());
+        return RequestBuilder.get(new URIBuilder(diadocHttpClient.getBaseUrl())
+                .setPath(path)
+                .addParameter("boxId", boxId)
+                .addParameter("messageId", messageId)
+                .addParameter("documentId", documentId)
+                .build());
+    }
 
-            var response = diadocHttpClient.getRawResponse(request);
+    private static PrintFormResult toPrintFormResult(DiadocResponseInfo response) {
+        if (response.getRetryAfter() != null) {
+            return new PrintFormResult(response.getRetryAfter());
+        }
 
-            if (response.getRetryAfter() != null) {
-                return new DocumentProtocolResult(response.getRetryAfter());
-            }
+        return new PrintFormResult(new PrintFormContent(response.getContentType(), response.getFileName(), response.getContent()));
+    }
 
-            return new DocumentProtocolResult(DocumentProtocol.parseFrom(response.getContent()));
+    private static DocumentZipResult toDocumentZipResult(DiadocResponseInfo response) throws IOException {
+        if (response.getRetryAfter() != null) {
+            return new DocumentZipResult(response.getRetryAfter());
+        }
 
-        } catch (URISyntaxException | ParseException | IOException e) {
-            throw new DiadocSdkException(e);
+        return new DocumentZipResult(DocumentZipGenerationResult.parseFrom(response.getContent()));
+    }
+
+    private static DocumentProtocolResult toDocumentProtocolResult(DiadocResponseInfo response) throws IOException {
+        if (response.getRetryAfter() != null) {
+            return new DocumentProtocolResult(response.getRetryAfter());
         }
+
+        return new DocumentProtocolResult(DocumentProtocol.parseFrom(response.getContent()));
     }
 }
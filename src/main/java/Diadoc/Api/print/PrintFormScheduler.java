@@ -0,0 +1,238 @@
+package Diadoc.Api.print;
+
+import Diadoc.Api.exceptions.DiadocSdkException;
+import Diadoc.Api.helpers.DaemonThreadFactory;
+import Diadoc.Api.print.models.PrintFormContent;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import static Diadoc.Api.Proto.Documents.DocumentProtocolProtos.*;
+import static Diadoc.Api.Proto.Documents.DocumentZipProtos.*;
+
+/**
+ * Generates print forms, document zips and protocols without blocking threads on Retry-After.
+ * A job that is not ready is requested again after the server advertised delay with a random jitter,
+ * so jobs queued together do not come back together. At most maxConcurrentRequests requests are sent at a time
+ */
+public class PrintFormScheduler implements AutoCloseable {
+    private static final double RETRY_JITTER = 0.2;
+
+    private final PrintFormClient printFormClient;
+    private final int maxConcurrentRequests;
+    private final ScheduledExecutorService scheduler;
+    private final Queue<Job<?, ?>> readyJobs = new ArrayDeque<>();
+    private final Set<Job<?, ?>> waitingJobs = new HashSet<>();
+    private Duration maxWait = Duration.ofMinutes(10);
+    private int requestsInFlight;
+    private boolean dispatching;
+    private boolean closed;
+
+    public PrintFormScheduler(PrintFormClient printFormClient, int maxConcurrentRequests) {
+        if (printFormClient == null)
+            throw new IllegalArgumentException("printFormClient");
+        if (maxConcurrentRequests < 1)
+            throw new IllegalArgumentException("maxConcurrentRequests < 1");
+
+        this.printFormClient = printFormClient;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("diadoc-print-form-scheduler"));
+    }
+
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * A job that is not ready in this time fails with DiadocSdkException
+     */
+    public PrintFormScheduler setMaxWait(Duration maxWait) {
+        if (maxWait == null || maxWait.isNegative())
+            throw new IllegalArgumentException("maxWait");
+        this.maxWait = maxWait;
+        return this;
+    }
+
+    public CompletableFuture<PrintFormContent> generatePrintForm(String boxId, String messageId, String documentId) {
+        return submit(
+                () -> printFormClient.generatePrintFormAsync(boxId, messageId, documentId),
+                result -> result.HasContent() ? -1 : result.getRetryAfter(),
+                result -> result.getContent(),
+                "Print form of " + messageId + "/" + documentId);
+    }
+
+    public CompletableFuture<DocumentZipGenerationResult> generateDocumentZip(String boxId, String messageId, String documentId, boolean fullDocflow) {
+        return submit(
+                () -> printFormClient.generateDocumentZipAsync(boxId, messageId, documentId, fullDocflow),
+                result -> result.hasContent() ? -1 : result.getRetryAfter(),
+                result -> result.getDocumentZip(),
+                "Document zip of " + messageId + "/" + documentId);
+    }
+
+    public CompletableFuture<DocumentProtocol> generateDocumentProtocol(String boxId, String messageId, String documentId) {
+        return submit(
+                () -> printFormClient.generateDocumentProtocolAsync(boxId, messageId, documentId),
+                result -> result.hasContent() ? -1 : result.getRetryAfter(),
+                result -> result.getDocumentProtocol(),
+                "Document protocol of " + messageId + "/" + documentId);
+    }
+
+    /**
+     * Pending jobs are failed with DiadocSdkException
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            Job<?, ?> job;
+            while ((job = readyJobs.poll()) != null)
+                job.result.completeExceptionally(new DiadocSdkException("Print form scheduler is closed"));
+            for (var waitingJob : waitingJobs)
+                waitingJob.result.completeExceptionally(new DiadocSdkException("Print form scheduler is closed"));
+            waitingJobs.clear();
+        }
+        scheduler.shutdownNow();
+    }
+
+    private <R, T> CompletableFuture<T> submit(
+            Supplier<CompletableFuture<R>> request,
+            ToIntFunction<R> retryAfter,
+            Function<R, T> content,
+            String description) {
+        var job = new Job<>(request, retryAfter, content, description, System.nanoTime() + maxWait.toNanos());
+        enqueue(job);
+        return job.result;
+    }
+
+    private void enqueue(Job<?, ?> job) {
+        synchronized (this) {
+            if (closed) {
+                job.result.completeExceptionally(new DiadocSdkException("Print form scheduler is closed"));
+                return;
+            }
+            readyJobs.add(job);
+        }
+        dispatch();
+    }
+
+    //a request completed inline calls dispatch again from send, then the running loop takes the freed slot instead of recursing
+    private void dispatch() {
+        synchronized (this) {
+            if (dispatching)
+                return;
+            dispatching = true;
+        }
+        while (true) {
+            Job<?, ?> job;
+            synchronized (this) {
+                job = pollReadyJob();
+                if (job == null) {
+                    dispatching = false;
+                    return;
+                }
+                requestsInFlight++;
+            }
+            send(job);
+        }
+    }
+
+    //a cancelled job is dropped instead of being requested again
+    @Nullable
+    private Job<?, ?> pollReadyJob() {
+        if (requestsInFlight >= maxConcurrentRequests)
+            return null;
+        while (true) {
+            var job = readyJobs.poll();
+            if (job == null || !job.result.isDone())
+                return job;
+        }
+    }
+
+    private <R, T> void send(Job<R, T> job) {
+        CompletableFuture<R> response;
+        try {
+            response = job.request.get();
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((result, e) -> {
+            try {
+                if (e != null) {
+                    job.result.completeExceptionally(e);
+                    return;
+                }
+                int retryAfterSeconds = job.retryAfter.applyAsInt(result);
+                if (retryAfterSeconds < 0) {
+                    job.result.complete(job.content.apply(result));
+                    return;
+                }
+                retry(job, retryAfterSeconds);
+            } catch (RuntimeException ex) {
+                job.result.completeExceptionally(ex);
+            } finally {
+                onRequestCompleted();
+            }
+        });
+    }
+
+    private void retry(Job<?, ?> job, int retryAfterSeconds) {
+        double jitter = 1 + RETRY_JITTER * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        long delayNanos = (long) (TimeUnit.SECONDS.toNanos(Math.max(1, retryAfterSeconds)) * jitter);
+        if (System.nanoTime() + delayNanos - job.deadlineNanos > 0) {
+            job.result.completeExceptionally(new DiadocSdkException(job.description + " is not ready in " + maxWait));
+            return;
+        }
+        synchronized (this) {
+            if (closed) {
+                job.result.completeExceptionally(new DiadocSdkException("Print form scheduler is closed"));
+                return;
+            }
+            waitingJobs.add(job);
+            scheduler.schedule(() -> resume(job), delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void resume(Job<?, ?> job) {
+        synchronized (this) {
+            if (!waitingJobs.remove(job))
+                return;
+        }
+        enqueue(job);
+    }
+
+    private void onRequestCompleted() {
+        synchronized (this) {
+            requestsInFlight--;
+        }
+        dispatch();
+    }
+
+    private static class Job<R, T> {
+        private final Supplier<CompletableFuture<R>> request;
+        private final ToIntFunction<R> retryAfter;
+        private final Function<R, T> content;
+        private final String description;
+        private final long deadlineNanos;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Job(Supplier<CompletableFuture<R>> request, ToIntFunction<R> retryAfter, Function<R, T> content, String description, long deadlineNanos) {
+            this.request = request;
+            this.retryAfter = retryAfter;
+            this.content = content;
+            this.description = description;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
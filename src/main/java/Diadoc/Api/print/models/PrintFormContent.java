@@ -1,13 +1,20 @@
 package Diadoc.Api.print.models;
 
 import Diadoc.Api.helpers.Tools;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 
 public class PrintFormContent {
 	private String contentType;
 	private byte[] bytes;
 	private String fileName;
+	@Nullable
+	private Path file;
 	
 	public PrintFormContent(String contentType, String fileName, byte[] bytes)
 	{
@@ -15,10 +22,22 @@ public class PrintFormContent {
 		this.fileName = fileName;
 		this.bytes = bytes;
 	}
+
+	/**
+	 * Content that was downloaded straight to the file, getBytes returns null for it
+	 */
+	public PrintFormContent(String contentType, String fileName, Path file)
+	{
+		this.contentType = contentType;
+		this.fileName = fileName;
+		this.file = file;
+	}
 	
 	public String getContentType() { return contentType; }
 	public String getFileName() { return fileName; }
 	public byte[] getBytes() { return bytes; }
+	@Nullable
+	public Path getFile() { return file; }
 
 	/**
 	 * Use saveToFile instead
@@ -31,6 +50,10 @@ public class PrintFormContent {
 	}
 
 	public void saveToFile(String path) throws IOException {
+		if (file != null) {
+			Files.copy(file, Paths.get(path), StandardCopyOption.REPLACE_EXISTING);
+			return;
+		}
 		Tools.WriteAllBytes(path, getBytes());
 	}
 }
@@ -0,0 +1,22 @@
+package Diadoc.Api.shelf;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+
+class ByteArrayPartSource implements ShelfPartSource {
+    private byte[] data;
+
+    ByteArrayPartSource(byte[] data) {
+        this.data = data;
+    }
+
+    @Override
+    public long getLength() {
+        return data.length;
+    }
+
+    @Override
+    public HttpEntity readPart(long offset, int length) {
+        return new ByteArrayEntity(data, (int) offset, length);
+    }
+}
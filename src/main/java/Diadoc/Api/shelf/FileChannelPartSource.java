@@ -0,0 +1,25 @@
+package Diadoc.Api.shelf;
+
+import Diadoc.Api.httpClient.ByteBufferEntity;
+import org.apache.http.HttpEntity;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+class FileChannelPartSource implements ShelfPartSource {
+    private FileChannel channel;
+
+    FileChannelPartSource(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public long getLength() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public HttpEntity readPart(long offset, int length) throws IOException {
+        return new ByteBufferEntity(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+    }
+}
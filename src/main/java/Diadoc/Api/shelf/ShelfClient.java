@@ -5,31 +5,49 @@ import Diadoc.Api.exceptions.DiadocSdkException;
 import Diadoc.Api.helpers.System7Emu;
 import com.google.gson.Gson;
 import Diadoc.Api.httpClient.DiadocHttpClient;
+import Diadoc.Api.httpClient.DiadocResponseInfo;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.RequestBuilder;
 import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.entity.ByteArrayEntity;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 public class ShelfClient {
     private DiadocHttpClient diadocHttpClient;
 
-    private static final int SHELF_PART_LENGTH = 512 * 1024;
+    static final int SHELF_PART_LENGTH = 512 * 1024;
     private static final int SHELF_MAX_ATTEMPTS = 3;
     private static final List<Integer> SHELF_NON_RETRIABLE_STATUS_CODES = Arrays.asList(HttpStatus.SC_UNAUTHORIZED, HttpStatus.SC_FORBIDDEN, HttpStatus.SC_PAYMENT_REQUIRED);
     private static final String SHELF_PATH_PREFIX = "__userId__";
 
+    //each upload tunes its own part length, concurrent uploads would skew each other's samples otherwise
+    private volatile int lastPartLength = SHELF_PART_LENGTH;
+
     public ShelfClient(DiadocHttpClient diadocHttpClient) {
         this.diadocHttpClient = diadocHttpClient;
     }
 
     public int getShelfUploadChunkSize() {
-        return SHELF_PART_LENGTH;
+        return lastPartLength;
     }
 
     public int getShelfUploadMaxAttemptsCount() {
@@ -37,51 +55,176 @@ public class ShelfClient {
     }
 
     public byte[] shelfDownload(String nameOnShelf) throws DiadocSdkException {
-        if (!nameOnShelf.contains(SHELF_PATH_PREFIX))
-            nameOnShelf = SHELF_PATH_PREFIX + "/" + nameOnShelf;
         try {
-            var request = RequestBuilder.get(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/ShelfDownload")
-                            .addParameter("nameOnShelf", nameOnShelf)
-                            .build());
-            return diadocHttpClient.performRequest(request);
+            return diadocHttpClient.performRequest(buildShelfDownloadRequest(nameOnShelf));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public long shelfDownload(String nameOnShelf, Path target) throws DiadocSdkException {
+        if (target == null)
+            throw new IllegalArgumentException("target");
+
+        try {
+            return diadocHttpClient.performRequest(buildShelfDownloadRequest(nameOnShelf), target);
+        } catch (URISyntaxException | IOException e) {
+            throw new DiadocSdkException(e);
+        }
+    }
+
+    public long shelfDownload(String nameOnShelf, WritableByteChannel target) throws DiadocSdkException {
+        if (target == null)
+            throw new IllegalArgumentException("target");
+
+        try {
+            return diadocHttpClient.performRequest(buildShelfDownloadRequest(nameOnShelf), target);
+        } catch (URISyntaxException | IOException e) {
+            throw new DiadocSdkException(e);
+        }
+    }
+
+    /**
+     * The returned stream holds an http connection until it is closed
+     */
+    public InputStream shelfDownloadAsStream(String nameOnShelf) throws DiadocSdkException {
+        try {
+            return diadocHttpClient.performRequestAsStream(buildShelfDownloadRequest(nameOnShelf));
+        } catch (URISyntaxException | IOException e) {
+            throw new DiadocSdkException(e);
+        }
+    }
+
+    public CompletableFuture<byte[]> shelfDownloadAsync(String nameOnShelf) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildShelfDownloadRequest(nameOnShelf));
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private RequestBuilder buildShelfDownloadRequest(String nameOnShelf) throws URISyntaxException {
+        if (!nameOnShelf.contains(SHELF_PATH_PREFIX))
+            nameOnShelf = SHELF_PATH_PREFIX + "/" + nameOnShelf;
+        return RequestBuilder.get(
+                new URIBuilder(diadocHttpClient.getBaseUrl())
+                        .setPath("/ShelfDownload")
+                        .addParameter("nameOnShelf", nameOnShelf)
+                        .build());
+    }
+
     public String uploadFileToShelf(byte[] data) throws DiadocSdkException {
+        return uploadFileToShelf(data, new ShelfUploadOptions()).getNameOnShelf();
+    }
+
+    public ShelfUploadResult uploadFileToShelf(byte[] data, ShelfUploadOptions options) throws DiadocSdkException {
         if (data == null)
             throw new IllegalArgumentException("data");
 
-        var nameOnShelf = createNameOnShelf();
-        var parts = splitDataIntoParts(data);
+        return uploadFileToShelf(new ByteArrayPartSource(data), options);
+    }
+
+    public String uploadFileToShelf(Path file) throws DiadocSdkException {
+        return uploadFileToShelf(file, new ShelfUploadOptions()).getNameOnShelf();
+    }
+
+    public ShelfUploadResult uploadFileToShelf(Path file, ShelfUploadOptions options) throws DiadocSdkException {
+        if (file == null)
+            throw new IllegalArgumentException("file");
+
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return uploadFileToShelf(channel, options);
+        } catch (IOException e) {
+            throw new DiadocSdkException(e);
+        }
+    }
+
+    public ShelfUploadResult uploadFileToShelf(FileChannel channel, ShelfUploadOptions options) throws DiadocSdkException {
+        if (channel == null)
+            throw new IllegalArgumentException("channel");
+
+        return uploadFileToShelf(new FileChannelPartSource(channel), options);
+    }
+
+    public String uploadFileToShelf(InputStream stream) throws DiadocSdkException {
+        return uploadFileToShelf(stream, new ShelfUploadOptions()).getNameOnShelf();
+    }
+
+    public ShelfUploadResult uploadFileToShelf(InputStream stream, ShelfUploadOptions options) throws DiadocSdkException {
+        if (stream == null)
+            throw new IllegalArgumentException("stream");
+
+        //missing parts may be requested again after the stream is consumed, so it is spooled to a temporary file
+        Path spoolFile = null;
+        try {
+            spoolFile = Files.createTempFile("diadoc-shelf-", ".tmp");
+            Files.copy(stream, spoolFile, StandardCopyOption.REPLACE_EXISTING);
+            return uploadFileToShelf(spoolFile, options);
+        } catch (IOException e) {
+            throw new DiadocSdkException(e);
+        } finally {
+            if (spoolFile != null) {
+                try {
+                    Files.deleteIfExists(spoolFile);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private ShelfUploadResult uploadFileToShelf(ShelfPartSource source, ShelfUploadOptions options) throws DiadocSdkException {
+        if (options == null)
+            throw new IllegalArgumentException("options");
+
+        long startTime = System.nanoTime();
+        long length;
+        ShelfUploadJournal journal = null;
+        try {
+            length = source.getLength();
+            if (options.getJournalPath() != null)
+                journal = ShelfUploadJournal.open(options.getJournalPath(), length, source.getFingerprint(), createNameOnShelf());
+        } catch (IOException e) {
+            throw new DiadocSdkException(e);
+        }
+        var nameOnShelf = journal != null ? journal.getNameOnShelf() : createNameOnShelf();
+        var acknowledgedParts = journal != null ? journal.getAcknowledgedParts() : Collections.<Integer>emptySet();
+        var parts = journal != null ? journal.getParts() : new ArrayList<ShelfPart>();
         List<Integer> missingParts = new ArrayList<>();
 
         for (int i = 0; i < parts.size(); i++)
-            missingParts.add(i);
+            if (!acknowledgedParts.contains(i))
+                missingParts.add(i);
 
-        var httpErrors = new ArrayList<Exception>();
+        var partLengthTuner = new ShelfPartLengthTuner(lastPartLength);
+        var httpErrors = Collections.synchronizedList(new ArrayList<Exception>());
+        var partsSent = new AtomicInteger();
+        var bytesSent = new AtomicLong();
         int attempts = 0;
-        while (missingParts.size() > 0) {
+        while (missingParts.size() > 0 || getPlannedLength(parts) < length) {
             if (++attempts > SHELF_MAX_ATTEMPTS)
                 throw new DiadocSdkException("Reached the limit of attempts to send a file. " + formatHttpErrors(httpErrors));
 
-            int partsCount = parts.size();
-            int lastPartIndex = partsCount - 1;
-            //always add last part for stability
-            if (!missingParts.contains(lastPartIndex))
-                missingParts.add(lastPartIndex);
-
             try {
-                missingParts = putMissingParts(nameOnShelf, parts, missingParts, partsCount, httpErrors);
-            } catch (URISyntaxException | DiadocException | IOException e) {
+                missingParts = putMissingParts(nameOnShelf, source, parts, missingParts, length, options, journal, partLengthTuner, httpErrors, partsSent, bytesSent);
+                if (journal != null)
+                    journal.forget(missingParts);
+            } catch (URISyntaxException | DiadocException | IOException | InterruptedException e) {
                 e.printStackTrace();
                 throw new DiadocSdkException(e);
             }
         }
-        return nameOnShelf;
+
+        if (journal != null) {
+            try {
+                journal.delete();
+            } catch (IOException e) {
+                throw new DiadocSdkException(e);
+            }
+        }
+        return new ShelfUploadResult(nameOnShelf, length, parts.size(), partsSent.get(), bytesSent.get(), attempts, System.nanoTime() - startTime);
     }
 
     private String createNameOnShelf() {
@@ -90,16 +233,87 @@ public class ShelfClient {
 
     private List<Integer> putMissingParts(
             String nameOnShelf,
-            List<ByteArraySegment> allParts,
+            ShelfPartSource source,
+            List<ShelfPart> allParts,
             List<Integer> missingParts,
-            int partsCount,
-            List<Exception> httpErrors) throws URISyntaxException, DiadocException, IOException {
+            long length,
+            ShelfUploadOptions options,
+            @Nullable ShelfUploadJournal journal,
+            ShelfPartLengthTuner partLengthTuner,
+            List<Exception> httpErrors,
+            AtomicInteger partsSent,
+            AtomicLong bytesSent) throws URISyntaxException, DiadocException, IOException, InterruptedException {
+        long plannedLength = getPlannedLength(allParts);
+        int lastPartIndex = plannedLength == length ? allParts.size() - 1 : -1;
+        var inFlight = new Semaphore(options.getMaxPartsInFlight());
+        var putResults = new TreeMap<Integer, CompletableFuture<List<Integer>>>();
+        //parts are acknowledged in the journal by this thread, not by the http client threads completing them
+        var acknowledgedParts = journal != null ? new ConcurrentLinkedQueue<Integer>() : null;
+
+        //the last part is sent only when all other parts are acknowledged, so its response lists the really missing parts
+        boolean hasFailure = false;
+        for (int partIndex : new TreeSet<>(missingParts)) {
+            if (partIndex == lastPartIndex)
+                continue;
+            inFlight.acquire();
+            saveAcknowledgedParts(journal, acknowledgedParts);
+            if (hasNonRetriableFailure(putResults.values())) {
+                inFlight.release();
+                hasFailure = true;
+                break;
+            }
+            var putResult = putPart(nameOnShelf, source, allParts.get(partIndex), false, acknowledgedParts, partLengthTuner, httpErrors, partsSent, bytesSent);
+            putResult.whenComplete((newMissingParts, e) -> inFlight.release());
+            putResults.put(partIndex, putResult);
+        }
+
+        //parts not planned yet are cut while sending, so their length follows the measured throughput
+        while (!hasFailure && plannedLength < length) {
+            inFlight.acquire();
+            saveAcknowledgedParts(journal, acknowledgedParts);
+            if (hasNonRetriableFailure(putResults.values())) {
+                inFlight.release();
+                break;
+            }
+            int partLength = partLengthTuner.getPartLength(options.getMinPartLength(), options.getMaxPartLength());
+            lastPartLength = partLength;
+            var part = new ShelfPart(allParts.size(), plannedLength, (int) Math.min(length - plannedLength, partLength));
+            allParts.add(part);
+            if (journal != null)
+                journal.plan(part);
+            plannedLength += part.getLength();
+            if (plannedLength == length) {
+                lastPartIndex = part.getIndex();
+                inFlight.release();
+                break;
+            }
+            var putResult = putPart(nameOnShelf, source, part, false, acknowledgedParts, partLengthTuner, httpErrors, partsSent, bytesSent);
+            putResult.whenComplete((newMissingParts, e) -> inFlight.release());
+            putResults.put(part.getIndex(), putResult);
+        }
+        try {
+            awaitPutResults(putResults.values());
+        } finally {
+            saveAcknowledgedParts(journal, acknowledgedParts);
+        }
+
+        //always add last part for stability
+        if (lastPartIndex >= 0) {
+            var putResult = putPart(nameOnShelf, source, allParts.get(lastPartIndex), true, acknowledgedParts, partLengthTuner, httpErrors, partsSent, bytesSent);
+            putResults.put(lastPartIndex, putResult);
+            try {
+                awaitPutResults(putResults.values());
+            } finally {
+                saveAcknowledgedParts(journal, acknowledgedParts);
+            }
+        }
+
         Set<Integer> lastMissingParts = new HashSet<>(missingParts);
         int maxProcessedPartIndex = -1;
 
-        for (int partIndex : missingParts) {
-            boolean isLastPart = partIndex == partsCount - 1;
-            List<Integer> newMissingParts = putPart(nameOnShelf, allParts.get(partIndex), partIndex, isLastPart, httpErrors);
+        for (var putResult : putResults.entrySet()) {
+            int partIndex = putResult.getKey();
+            List<Integer> newMissingParts = putResult.getValue().join();
             if (newMissingParts != null) {
                 if (partIndex > maxProcessedPartIndex) {
                     lastMissingParts.clear();
@@ -114,36 +328,89 @@ public class ShelfClient {
         return new ArrayList<>(lastMissingParts);
     }
 
-    private List<Integer> putPart(String nameOnShelf, ByteArraySegment part, int partIndex, boolean isLastPart, List<Exception> httpErrors) throws URISyntaxException, DiadocException, IOException {
+    private static void saveAcknowledgedParts(@Nullable ShelfUploadJournal journal, @Nullable Queue<Integer> acknowledgedParts) throws IOException {
+        if (journal == null || acknowledgedParts == null || acknowledgedParts.isEmpty())
+            return;
+        var partIndexes = new ArrayList<Integer>();
+        Integer partIndex;
+        while ((partIndex = acknowledgedParts.poll()) != null)
+            partIndexes.add(partIndex);
+        journal.acknowledge(partIndexes);
+    }
+
+    private static boolean hasNonRetriableFailure(Collection<CompletableFuture<List<Integer>>> putResults) {
+        return putResults.stream().anyMatch(CompletableFuture::isCompletedExceptionally);
+    }
+
+    private static void awaitPutResults(Collection<CompletableFuture<List<Integer>>> putResults) throws DiadocException, IOException, InterruptedException {
+        try {
+            CompletableFuture.allOf(putResults.toArray(new CompletableFuture<?>[0])).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DiadocException)
+                throw (DiadocException) e.getCause();
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private CompletableFuture<List<Integer>> putPart(
+            String nameOnShelf,
+            ShelfPartSource source,
+            ShelfPart part,
+            boolean isLastPart,
+            @Nullable Queue<Integer> acknowledgedParts,
+            ShelfPartLengthTuner partLengthTuner,
+            List<Exception> httpErrors,
+            AtomicInteger partsSent,
+            AtomicLong bytesSent) throws URISyntaxException, IOException {
         var url = new URIBuilder(diadocHttpClient.getBaseUrl())
                 .setPath("/ShelfUpload")
                 .addParameter("nameOnShelf", String.format("%s/%s", SHELF_PATH_PREFIX, nameOnShelf))
-                .addParameter("partIndex", Integer.toString(partIndex));
+                .addParameter("partIndex", Integer.toString(part.getIndex()));
 
         if (isLastPart) {
             url.addParameter("isLastPart", "1");
         }
 
-        byte[] responseContent;
-
-        try {
-            var response = diadocHttpClient.getResponse(RequestBuilder.post(url.build()).setEntity(new ByteArrayEntity(part.getBytes())));
-            if (response.getStatusCode() != HttpStatus.SC_OK) {
-                if (SHELF_NON_RETRIABLE_STATUS_CODES.contains(response.getStatusCode())) {
-                    throw new DiadocException(formatResponseMessage(response.getReason(), response.getStatusCode()), response.getStatusCode());
-                }
+        var content = source.readPart(part.getOffset(), part.getLength());
+        long startTime = System.nanoTime();
+        return diadocHttpClient.getResponseAsync(RequestBuilder.post(url.build()).setEntity(content))
+                .handle((response, e) -> {
+                    if (e != null) {
+                        partLengthTuner.onPartFailed();
+                        httpErrors.add(e.getCause() instanceof Exception ? (Exception) e.getCause() : new DiadocSdkException(e.getMessage()));
+                        return null;
+                    }
+                    bytesSent.addAndGet(part.getLength());
+                    if (response.getStatusCode() == HttpStatus.SC_OK) {
+                        partsSent.incrementAndGet();
+                        partLengthTuner.onPartSent(part.getLength(), System.nanoTime() - startTime);
+                    } else {
+                        partLengthTuner.onPartFailed();
+                    }
+                    try {
+                        var newMissingParts = parsePutPartResponse(response, httpErrors);
+                        if (acknowledgedParts != null && response.getStatusCode() == HttpStatus.SC_OK)
+                            acknowledgedParts.add(part.getIndex());
+                        return newMissingParts;
+                    } catch (DiadocException ex) {
+                        throw new CompletionException(ex);
+                    }
+                });
+    }
 
-                httpErrors.add(new DiadocException(formatResponseMessage(response.getReason(), response.getStatusCode()), response.getStatusCode()));
-                return null;
+    private List<Integer> parsePutPartResponse(DiadocResponseInfo response, List<Exception> httpErrors) throws DiadocException {
+        if (response.getStatusCode() != HttpStatus.SC_OK) {
+            if (SHELF_NON_RETRIABLE_STATUS_CODES.contains(response.getStatusCode())) {
+                throw new DiadocException(formatResponseMessage(response.getReason(), response.getStatusCode()), response.getStatusCode());
             }
 
-            responseContent = response.getContent();
-
-        } catch (IOException e) {
-            httpErrors.add(e);
+            httpErrors.add(new DiadocException(formatResponseMessage(response.getReason(), response.getStatusCode()), response.getStatusCode()));
             return null;
         }
 
+        byte[] responseContent = response.getContent();
         if (responseContent == null || responseContent.length == 0)
             return null;
 
@@ -153,15 +420,11 @@ public class ShelfClient {
         return Arrays.stream(missingParts).boxed().collect(Collectors.toList());
     }
 
-    private ArrayList<ByteArraySegment> splitDataIntoParts(byte[] data) {
-        ArrayList<ByteArraySegment> result = new ArrayList<>();
-        int currentPartOffset = 0;
-        while (currentPartOffset < data.length) {
-            int length = Math.min(data.length - currentPartOffset, SHELF_PART_LENGTH);
-            result.add(new ByteArraySegment(data, currentPartOffset, length));
-            currentPartOffset += length;
-        }
-        return result;
+    private static long getPlannedLength(List<ShelfPart> parts) {
+        if (parts.isEmpty())
+            return 0;
+        var lastPart = parts.get(parts.size() - 1);
+        return lastPart.getOffset() + lastPart.getLength();
     }
 
     private String formatResponseMessage(String reason, int statusCode) {
@@ -0,0 +1,25 @@
+package Diadoc.Api.shelf;
+
+class ShelfPart {
+    private int index;
+    private long offset;
+    private int length;
+
+    ShelfPart(int index, long offset, int length) {
+        this.index = index;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    int getLength() {
+        return length;
+    }
+}
@@ -0,0 +1,45 @@
+package Diadoc.Api.shelf;
+
+import java.util.concurrent.TimeUnit;
+
+class ShelfPartLengthTuner {
+    private static final long TARGET_PART_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final double THROUGHPUT_SMOOTHING = 0.3;
+    private static final int PART_LENGTH_GRANULARITY = 64 * 1024;
+
+    private int partLength;
+    private double bytesPerSecond;
+
+    ShelfPartLengthTuner(int initialPartLength) {
+        this.partLength = initialPartLength;
+    }
+
+    synchronized int getPartLength(int minPartLength, int maxPartLength) {
+        partLength = Math.max(minPartLength, Math.min(maxPartLength, partLength));
+        return partLength;
+    }
+
+    //round trip of a part includes both latency and transfer, so parts are sized to take about the same time on the wire
+    synchronized void onPartSent(int length, long elapsedNanos) {
+        if (elapsedNanos <= 0)
+            return;
+
+        double sample = length * 1e9 / elapsedNanos;
+        bytesPerSecond = bytesPerSecond == 0 ? sample : bytesPerSecond + THROUGHPUT_SMOOTHING * (sample - bytesPerSecond);
+
+        long targetLength = (long) (bytesPerSecond * TARGET_PART_NANOS / 1e9);
+        //grow gradually, a single fast part should not blow up the size
+        targetLength = Math.min(targetLength, 2L * partLength);
+        partLength = roundToGranularity(targetLength);
+    }
+
+    //a failed part is sent again, so smaller parts make every next failure cheaper
+    synchronized void onPartFailed() {
+        partLength = roundToGranularity(partLength / 2);
+    }
+
+    private static int roundToGranularity(long length) {
+        long rounded = length / PART_LENGTH_GRANULARITY * PART_LENGTH_GRANULARITY;
+        return (int) Math.max(PART_LENGTH_GRANULARITY, Math.min(rounded, Integer.MAX_VALUE / PART_LENGTH_GRANULARITY * PART_LENGTH_GRANULARITY));
+    }
+}
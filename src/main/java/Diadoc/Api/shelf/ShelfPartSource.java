@@ -0,0 +1,42 @@
+package Diadoc.Api.shelf;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.http.HttpEntity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+interface ShelfPartSource {
+    int FINGERPRINT_CHUNK_LENGTH = 1024 * 1024;
+
+    long getLength() throws IOException;
+
+    HttpEntity readPart(long offset, int length) throws IOException;
+
+    //SHA-256 of the whole content, it identifies the data of an upload journal
+    default String getFingerprint() throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        var digestStream = new OutputStream() {
+            @Override
+            public void write(int b) {
+                digest.update((byte) b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                digest.update(b, off, len);
+            }
+        };
+        long length = getLength();
+        for (long offset = 0; offset < length; offset += FINGERPRINT_CHUNK_LENGTH)
+            readPart(offset, (int) Math.min(FINGERPRINT_CHUNK_LENGTH, length - offset)).writeTo(digestStream);
+        return Hex.encodeHexString(digest.digest());
+    }
+}
@@ -0,0 +1,95 @@
+package Diadoc.Api.shelf;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+class ShelfUploadJournal {
+    private transient Path path;
+    private String nameOnShelf;
+    private long length;
+    private String fingerprint;
+    private ArrayList<ShelfPart> parts = new ArrayList<>();
+    private TreeSet<Integer> acknowledgedParts = new TreeSet<>();
+
+    //a journal of other content, even of the same length, is replaced, so its parts are never mixed with the new ones
+    static ShelfUploadJournal open(Path path, long length, String fingerprint, String newNameOnShelf) throws IOException {
+        if (Files.exists(path)) {
+            var journal = tryRead(path);
+            if (journal != null
+                    && journal.nameOnShelf != null
+                    && journal.length == length
+                    && fingerprint.equals(journal.fingerprint)
+                    && journal.parts != null) {
+                journal.path = path;
+                if (journal.acknowledgedParts == null)
+                    journal.acknowledgedParts = new TreeSet<>();
+                return journal;
+            }
+        }
+
+        var journal = new ShelfUploadJournal();
+        journal.path = path;
+        journal.nameOnShelf = newNameOnShelf;
+        journal.length = length;
+        journal.fingerprint = fingerprint;
+        journal.save();
+        return journal;
+    }
+
+    String getNameOnShelf() {
+        return nameOnShelf;
+    }
+
+    synchronized List<ShelfPart> getParts() {
+        return new ArrayList<>(parts);
+    }
+
+    //part boundaries are saved before the part is sent, so a resumed upload sends the same bytes under the same index
+    synchronized void plan(ShelfPart part) throws IOException {
+        parts.add(part);
+        save();
+    }
+
+    synchronized Set<Integer> getAcknowledgedParts() {
+        return new TreeSet<>(acknowledgedParts);
+    }
+
+    synchronized void acknowledge(Collection<Integer> partIndexes) throws IOException {
+        if (acknowledgedParts.addAll(partIndexes))
+            save();
+    }
+
+    synchronized void forget(Collection<Integer> missingParts) throws IOException {
+        if (acknowledgedParts.removeAll(missingParts))
+            save();
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    private static ShelfUploadJournal tryRead(Path path) throws IOException {
+        try {
+            return new Gson().fromJson(new String(Files.readAllBytes(path), StandardCharsets.UTF_8), ShelfUploadJournal.class);
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+
+    private void save() throws IOException {
+        var tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(tempPath, new Gson().toJson(this).getBytes(StandardCharsets.UTF_8));
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,61 @@
+package Diadoc.Api.shelf;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+
+public class ShelfUploadOptions {
+    private int maxPartsInFlight = 1;
+    private int minPartLength = ShelfClient.SHELF_PART_LENGTH;
+    private int maxPartLength = ShelfClient.SHELF_PART_LENGTH;
+    @Nullable
+    private Path journalPath;
+
+    public int getMaxPartsInFlight() {
+        return maxPartsInFlight;
+    }
+
+    public ShelfUploadOptions setMaxPartsInFlight(int maxPartsInFlight) {
+        if (maxPartsInFlight < 1)
+            throw new IllegalArgumentException("maxPartsInFlight < 1");
+        this.maxPartsInFlight = maxPartsInFlight;
+        return this;
+    }
+
+    public int getMinPartLength() {
+        return minPartLength;
+    }
+
+    public int getMaxPartLength() {
+        return maxPartLength;
+    }
+
+    /**
+     * Part length is tuned within these bounds by the throughput and round trip time of the sent parts.
+     * Equal bounds give parts of a fixed length
+     */
+    public ShelfUploadOptions setPartLengthBounds(int minPartLength, int maxPartLength) {
+        if (minPartLength < 1)
+            throw new IllegalArgumentException("minPartLength < 1");
+        if (maxPartLength < minPartLength)
+            throw new IllegalArgumentException("maxPartLength < minPartLength");
+        this.minPartLength = minPartLength;
+        this.maxPartLength = maxPartLength;
+        return this;
+    }
+
+    @Nullable
+    public Path getJournalPath() {
+        return journalPath;
+    }
+
+    /**
+     * Upload state is kept in this file until the upload completes,
+     * so an interrupted upload of the same data is resumed instead of restarted.
+     * The data is identified by its SHA-256, so with a journal the content is read once more before the upload
+     */
+    public ShelfUploadOptions setJournalPath(@Nullable Path journalPath) {
+        this.journalPath = journalPath;
+        return this;
+    }
+}
@@ -0,0 +1,57 @@
+package Diadoc.Api.shelf;
+
+import java.util.concurrent.TimeUnit;
+
+public class ShelfUploadResult {
+    private String nameOnShelf;
+    private long length;
+    private int partsCount;
+    private int partsSent;
+    private long bytesSent;
+    private int attempts;
+    private long elapsedNanos;
+
+    public ShelfUploadResult(String nameOnShelf, long length, int partsCount, int partsSent, long bytesSent, int attempts, long elapsedNanos) {
+        this.nameOnShelf = nameOnShelf;
+        this.length = length;
+        this.partsCount = partsCount;
+        this.partsSent = partsSent;
+        this.bytesSent = bytesSent;
+        this.attempts = attempts;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getNameOnShelf() {
+        return nameOnShelf;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public int getPartsCount() {
+        return partsCount;
+    }
+
+    public int getPartsSent() {
+        return partsSent;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    public double getThroughputBytesPerSecond() {
+        if (elapsedNanos <= 0)
+            return 0;
+        return bytesSent * 1e9 / elapsedNanos;
+    }
+}
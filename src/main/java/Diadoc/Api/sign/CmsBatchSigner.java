@@ -0,0 +1,142 @@
+package Diadoc.Api.sign;
+
+import Diadoc.Api.CertificateHelper;
+import Diadoc.Api.exceptions.DiadocSdkException;
+import Diadoc.Api.helpers.DaemonThreadFactory;
+
+import java.nio.file.Path;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Signs many payloads with one key on a fixed pool of threads.
+ * Every thread keeps its own initialized Signature, the certificate is encoded only once
+ */
+public class CmsBatchSigner implements AutoCloseable {
+    private final CmsSignerCertificate signerCertificate;
+    private final PrivateKey privateKey;
+    private final ExecutorService executor;
+    private final ThreadLocal<Signature> signatures = new ThreadLocal<>();
+
+    public CmsBatchSigner(X509Certificate certificate, PrivateKey privateKey) throws Exception {
+        this(certificate, privateKey, Runtime.getRuntime().availableProcessors());
+    }
+
+    public CmsBatchSigner(X509Certificate certificate, PrivateKey privateKey, int threads) throws Exception {
+        if (certificate == null)
+            throw new IllegalArgumentException("certificate");
+        if (privateKey == null)
+            throw new IllegalArgumentException("privateKey");
+        if (threads < 1)
+            throw new IllegalArgumentException("threads < 1");
+
+        this.signerCertificate = new CmsSignerCertificate(certificate);
+        this.privateKey = privateKey;
+        this.executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("diadoc-cms-signer"));
+    }
+
+    /**
+     * Signs on the calling thread
+     */
+    public byte[] sign(byte[] data, boolean detached) throws Exception {
+        var signature = getSignature();
+        byte[] sign;
+        try {
+            signature.update(data);
+            sign = signature.sign();
+        } catch (Exception e) {
+            //state of a failed Signature is undefined, the thread gets a new one
+            signatures.remove();
+            throw e;
+        }
+        return CertificateHelper.createCMS(data, sign, signerCertificate, detached);
+    }
+
+    /**
+     * Detached signature of the file content, the file is read in memory-mapped chunks
+     */
+    public byte[] sign(Path file) throws Exception {
+        var signature = getSignature();
+        byte[] sign;
+        try {
+            CertificateHelper.updateSignature(signature, file);
+            sign = signature.sign();
+        } catch (Exception e) {
+            signatures.remove();
+            throw e;
+        }
+        return CertificateHelper.createCMS(null, sign, signerCertificate, true);
+    }
+
+    public CompletableFuture<byte[]> signAsync(Path file) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return sign(file);
+            } catch (Exception e) {
+                throw new CompletionException(new DiadocSdkException(e));
+            }
+        }, executor);
+    }
+
+    public CompletableFuture<byte[]> signAsync(byte[] data, boolean detached) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return sign(data, detached);
+            } catch (Exception e) {
+                throw new CompletionException(new DiadocSdkException(e));
+            }
+        }, executor);
+    }
+
+    /**
+     * @return signatures in the order of the payloads
+     */
+    public List<byte[]> signAll(List<byte[]> payloads, boolean detached) throws DiadocSdkException {
+        if (payloads == null)
+            throw new IllegalArgumentException("payloads");
+
+        var results = new ArrayList<CompletableFuture<byte[]>>(payloads.size());
+        for (var payload : payloads)
+            results.add(signAsync(payload, detached));
+
+        var signatures = new ArrayList<byte[]>(payloads.size());
+        try {
+            for (var result : results)
+                signatures.add(result.get());
+        } catch (ExecutionException e) {
+            results.forEach(result -> result.cancel(false));
+            throw e.getCause() instanceof DiadocSdkException
+                    ? (DiadocSdkException) e.getCause()
+                    : new DiadocSdkException(e);
+        } catch (InterruptedException e) {
+            results.forEach(result -> result.cancel(false));
+            Thread.currentThread().interrupt();
+            throw new DiadocSdkException(e);
+        }
+        return signatures;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    //sign() returns the Signature to the state right after initSign, so it is initialized once per thread
+    private Signature getSignature() throws Exception {
+        var signature = signatures.get();
+        if (signature == null) {
+            signature = signerCertificate.getSignInfoProvider().getSignatureInstance();
+            signature.initSign(privateKey);
+            signatures.set(signature);
+        }
+        return signature;
+    }
+}
@@ -0,0 +1,130 @@
+package Diadoc.Api.sign;
+
+import com.objsys.asn1j.runtime.Asn1BerDecodeBuffer;
+import com.objsys.asn1j.runtime.Asn1BerEncodeBuffer;
+import com.objsys.asn1j.runtime.Asn1Null;
+import com.objsys.asn1j.runtime.Asn1ObjectIdentifier;
+import com.objsys.asn1j.runtime.Asn1OctetString;
+import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.CMSVersion;
+import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.CertificateChoices;
+import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.CertificateSet;
+import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.ContentInfo;
+import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.DigestAlgorithmIdentifier;
+import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.DigestAlgorithmIdentifiers;
+import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.EncapsulatedContentInfo;
+import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.IssuerAndSerialNumber;
+import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.SignatureAlgorithmIdentifier;
+import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.SignatureValue;
+import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.SignedData;
+import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.SignerIdentifier;
+import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.SignerInfo;
+import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.SignerInfos;
+import ru.CryptoPro.JCP.ASN.PKIX1Explicit88.Certificate;
+import ru.CryptoPro.JCP.ASN.PKIX1Explicit88.CertificateSerialNumber;
+import ru.CryptoPro.JCP.ASN.PKIX1Explicit88.Name;
+import ru.CryptoPro.JCP.params.OID;
+
+import java.math.BigInteger;
+import java.security.cert.X509Certificate;
+
+/**
+ * Signer certificate, issuer name and serial number encoded once, so they can be put into any number of CMS messages.
+ * Every message decodes its own copy of them, so messages may be created on many threads at once
+ */
+public class CmsSignerCertificate {
+    private static final String STR_CMS_OID_DATA = "1.2.840.113549.1.7.1";
+    private static final String STR_CMS_OID_SIGNED = "1.2.840.113549.1.7.2";
+
+    private final X509Certificate x509Certificate;
+    private final GOSTSignInfoProvider signInfoProvider;
+    private final byte[] encodedCertificate;
+    private final byte[] encodedIssuer;
+    private final BigInteger serialNumber;
+
+    public CmsSignerCertificate(X509Certificate x509Certificate) throws Exception {
+        this(x509Certificate, new GOSTSignInfoProvider(x509Certificate));
+    }
+
+    public CmsSignerCertificate(X509Certificate x509Certificate, GOSTSignInfoProvider signInfoProvider) throws Exception {
+        this.x509Certificate = x509Certificate;
+        this.signInfoProvider = signInfoProvider;
+        this.encodedCertificate = x509Certificate.getEncoded();
+        this.encodedIssuer = x509Certificate.getIssuerX500Principal().getEncoded();
+        this.serialNumber = x509Certificate.getSerialNumber();
+    }
+
+    public X509Certificate getX509Certificate() {
+        return x509Certificate;
+    }
+
+    public GOSTSignInfoProvider getSignInfoProvider() {
+        return signInfoProvider;
+    }
+
+    /**
+     * @return CMS SignedData of the signature, with the content unless detached
+     */
+    public byte[] createCMS(byte[] buffer, byte[] sign, boolean detached) throws Exception {
+        final ContentInfo all = new ContentInfo();
+        all.contentType = new Asn1ObjectIdentifier(new OID(STR_CMS_OID_SIGNED).value);
+        final SignedData cms = new SignedData();
+        all.content = cms;
+        cms.version = new CMSVersion(1);
+        // digest
+        cms.digestAlgorithms = new DigestAlgorithmIdentifiers(1);
+        final DigestAlgorithmIdentifier a = new DigestAlgorithmIdentifier(
+                new OID(signInfoProvider.getDigestOID()).value);
+        a.parameters = new Asn1Null();
+        cms.digestAlgorithms.elements[0] = a;
+        if (detached) {
+            cms.encapContentInfo = new EncapsulatedContentInfo(
+                    new Asn1ObjectIdentifier(
+                            new OID(STR_CMS_OID_DATA).value), null);
+        } else {
+            cms.encapContentInfo = new EncapsulatedContentInfo(
+                    new Asn1ObjectIdentifier(
+                            new OID(STR_CMS_OID_DATA).value),
+                    new Asn1OctetString(buffer));
+        }
+        // certificate
+        cms.certificates = new CertificateSet(1);
+        cms.certificates.elements = new CertificateChoices[1];
+        cms.certificates.elements[0] = new CertificateChoices();
+        cms.certificates.elements[0].set_certificate(decodeCertificate());
+
+        // signer info
+        cms.signerInfos = new SignerInfos(1);
+        cms.signerInfos.elements[0] = new SignerInfo();
+        cms.signerInfos.elements[0].version = new CMSVersion(1);
+        cms.signerInfos.elements[0].sid = new SignerIdentifier();
+        cms.signerInfos.elements[0].sid
+                .set_issuerAndSerialNumber(new IssuerAndSerialNumber(decodeIssuer(), getSerialNumber()));
+        cms.signerInfos.elements[0].digestAlgorithm = new DigestAlgorithmIdentifier(
+                new OID(signInfoProvider.getDigestOID()).value);
+        cms.signerInfos.elements[0].digestAlgorithm.parameters = new Asn1Null();
+        cms.signerInfos.elements[0].signatureAlgorithm = new SignatureAlgorithmIdentifier(
+                new OID(signInfoProvider.getSignOID()).value);
+        cms.signerInfos.elements[0].signatureAlgorithm.parameters = new Asn1Null();
+        cms.signerInfos.elements[0].signature = new SignatureValue(sign);
+        // encode
+        final Asn1BerEncodeBuffer asnBuf = new Asn1BerEncodeBuffer();
+        all.encode(asnBuf, true);
+        return asnBuf.getMsgCopy();
+    }
+
+    Certificate decodeCertificate() throws Exception {
+        var certificate = new Certificate();
+        certificate.decode(new Asn1BerDecodeBuffer(encodedCertificate));
+        return certificate;
+    }
+
+    Name decodeIssuer() throws Exception {
+        var issuer = new Name();
+        issuer.decode(new Asn1BerDecodeBuffer(encodedIssuer));
+        return issuer;
+    }
+
+    CertificateSerialNumber getSerialNumber() {
+        return new CertificateSerialNumber(serialNumber);
+    }
+}
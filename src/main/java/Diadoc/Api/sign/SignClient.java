@@ -10,6 +10,8 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static Diadoc.Api.Proto.AsyncMethodResultProtos.*;
 import static Diadoc.Api.Proto.CloudSignProtos.*;
@@ -54,6 +56,16 @@ public class SignClient {
         }
     }
 
+    public CompletableFuture<CloudSignResult> waitCloudSignResultAsync(String taskId, Integer timeoutInMillis) {
+        return diadocHttpClient.waitTaskResultAsync("/CloudSignResult", taskId, timeoutInMillis).thenApply(data -> {
+            try {
+                return CloudSignResult.parseFrom(data);
+            } catch (InvalidProtocolBufferException e) {
+                throw new CompletionException(new DiadocSdkException(e));
+            }
+        });
+    }
+
     public AsyncMethodResult cloudSignConfirm(String token, String confirmationCode, boolean returnContent) throws DiadocSdkException {
         try {
             var url = new URIBuilder(diadocHttpClient.getBaseUrl())
@@ -79,6 +91,16 @@ public class SignClient {
         }
     }
 
+    public CompletableFuture<CloudSignConfirmResult> waitCloudSignConfirmResultAsync(String taskId, Integer timeoutInMillis) {
+        return diadocHttpClient.waitTaskResultAsync("/CloudSignConfirmResult", taskId, timeoutInMillis).thenApply(data -> {
+            try {
+                return CloudSignConfirmResult.parseFrom(data);
+            } catch (InvalidProtocolBufferException e) {
+                throw new CompletionException(new DiadocSdkException(e));
+            }
+        });
+    }
+
     public AsyncMethodResult autoSignReceipts(String boxId, @Nullable String certificateThumbprint, @Nullable String batchKey) throws DiadocSdkException {
         if (boxId == null) {
             throw new IllegalArgumentException("boxId");
@@ -117,6 +139,16 @@ public class SignClient {
 
     }
 
+    public CompletableFuture<AutosignReceiptsResult> waitAutosignReceiptsResultAsync(String taskId, Integer timeoutInMillis) {
+        return diadocHttpClient.waitTaskResultAsync("/AutosignReceiptsResult", taskId, timeoutInMillis).thenApply(data -> {
+            try {
+                return AutosignReceiptsResult.parseFrom(data);
+            } catch (InvalidProtocolBufferException e) {
+                throw new CompletionException(new DiadocSdkException(e));
+            }
+        });
+    }
+
     public AsyncMethodResult dssSign(String boxId, DssSignRequest request) throws DiadocSdkException {
         return dssSign(boxId, request, null);
     }
@@ -14,6 +14,7 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static Diadoc.Api.Proto.Events.DiadocMessage_GetApiProtos.*;
 import static Diadoc.Api.Proto.Events.DiadocMessage_PostApiProtos.*;
@@ -26,37 +27,41 @@ public class TemplateClient {
     }
 
     public Template postTemplate(TemplateToPost templateToPost) throws DiadocSdkException {
-        if (templateToPost == null) {
-            throw new IllegalArgumentException("templateToPost");
-        }
-
         try {
-            var request = RequestBuilder.post(
-                    new URIBuilder(diadocHttpClient.getBaseUrl()).setPath("/PostTemplate").build())
-                    .setEntity(new ByteArrayEntity(templateToPost.toByteArray()));
-
-            return Template.parseFrom(diadocHttpClient.performRequest(request));
+            return Template.parseFrom(diadocHttpClient.performRequest(buildPostTemplateRequest(templateToPost)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
-    public Message transformTemplateToMessage(TemplateTransformationToPost templateTransformationToPost) throws DiadocSdkException {
-        if (templateTransformationToPost == null) {
-            throw new IllegalArgumentException("templateTransformationToPost");
+    public CompletableFuture<Template> postTemplateAsync(TemplateToPost templateToPost) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildPostTemplateRequest(templateToPost), Template::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
         }
+    }
 
+    public Message transformTemplateToMessage(TemplateTransformationToPost templateTransformationToPost) throws DiadocSdkException {
         try {
-            var request = RequestBuilder.post(
-                    new URIBuilder(diadocHttpClient.getBaseUrl()).setPath("/TransformTemplateToMessage").build())
-                    .setEntity(new ByteArrayEntity(templateTransformationToPost.toByteArray()));
-
-            return Message.parseFrom(diadocHttpClient.performRequest(request));
+            return Message.parseFrom(diadocHttpClient.performRequest(buildTransformTemplateToMessageRequest(templateTransformationToPost)));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<Message> transformTemplateToMessageAsync(TemplateTransformationToPost templateTransformationToPost) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildTransformTemplateToMessageRequest(templateTransformationToPost), Message::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     /**
      * Use getMessage from message client instead
      */
@@ -92,7 +97,50 @@ public class TemplateClient {
             String boxId,
             String templateId,
             DiadocMessage_PostApiProtos.TemplatePatchToPost templatePatchToPost) throws DiadocSdkException {
+        try {
+            return MessagePatch.parseFrom(diadocHttpClient.performRequest(buildPostTemplatePatchRequest(boxId, templateId, templatePatchToPost)));
+        } catch (URISyntaxException | IOException e) {
+            throw new DiadocSdkException(e);
+        }
+    }
+
+    public CompletableFuture<MessagePatch> postTemplatePatchAsync(
+            String boxId,
+            String templateId,
+            DiadocMessage_PostApiProtos.TemplatePatchToPost templatePatchToPost) {
+        try {
+            return diadocHttpClient.performRequestAsync(buildPostTemplatePatchRequest(boxId, templateId, templatePatchToPost), MessagePatch::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private RequestBuilder buildPostTemplateRequest(TemplateToPost templateToPost) throws URISyntaxException {
+        if (templateToPost == null) {
+            throw new IllegalArgumentException("templateToPost");
+        }
 
+        return RequestBuilder.post(
+                new URIBuilder(diadocHttpClient.getBaseUrl()).setPath("/PostTemplate").build())
+                .setEntity(new ByteArrayEntity(templateToPost.toByteArray()));
+    }
+
+    private RequestBuilder buildTransformTemplateToMessageRequest(TemplateTransformationToPost templateTransformationToPost) throws URISyntaxException {
+        if (templateTransformationToPost == null) {
+            throw new IllegalArgumentException("templateTransformationToPost");
+        }
+
+        return RequestBuilder.post(
+                new URIBuilder(diadocHttpClient.getBaseUrl()).setPath("/TransformTemplateToMessage").build())
+                .setEntity(new ByteArrayEntity(templateTransformationToPost.toByteArray()));
+    }
+
+    private RequestBuilder buildPostTemplatePatchRequest(
+            String boxId,
+            String templateId,
+            DiadocMessage_PostApiProtos.TemplatePatchToPost templatePatchToPost) throws URISyntaxException {
         if (boxId == null) {
             throw new IllegalArgumentException("boxId");
         }
@@ -103,18 +151,12 @@ public class TemplateClient {
             throw new IllegalArgumentException("templatePatchToPost");
         }
 
-        try {
-            var request = RequestBuilder.post(
-                    new URIBuilder(diadocHttpClient.getBaseUrl())
-                            .setPath("/PostTemplatePatch")
-                            .addParameter("boxId", boxId)
-                            .addParameter("templateId", templateId)
-                            .build())
-                    .setEntity(new ByteArrayEntity(templatePatchToPost.toByteArray()));
-
-            return MessagePatch.parseFrom(diadocHttpClient.performRequest(request));
-        } catch (URISyntaxException | IOException e) {
-            throw new DiadocSdkException(e);
-        }
+        return RequestBuilder.post(
+                new URIBuilder(diadocHttpClient.getBaseUrl())
+                        .setPath("/PostTemplatePatch")
+                        .addParameter("boxId", boxId)
+                        .addParameter("templateId", templateId)
+                        .build())
+                .setEntity(new ByteArrayEntity(templatePatchToPost.toByteArray()));
     }
 }
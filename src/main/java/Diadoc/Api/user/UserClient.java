@@ -8,6 +8,7 @@ import org.apache.http.entity.ByteArrayEntity;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.concurrent.CompletableFuture;
 
 import static Diadoc.Api.Proto.UserProtos.*;
 import static Diadoc.Api.Proto.Users.UserToUpdateProtos.*;
@@ -21,24 +22,36 @@ public class UserClient {
 
     public User getMyUser() throws DiadocSdkException {
         try {
-            var request = RequestBuilder.get(
-                    new URIBuilder(diadocHttpClient.getBaseUrl()).setPath("/GetMyUser").build());
-            return User.parseFrom(diadocHttpClient.performRequest(request));
+            return User.parseFrom(diadocHttpClient.performRequest(buildGetRequest("/GetMyUser")));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<User> getMyUserAsync() {
+        try {
+            return diadocHttpClient.performRequestAsync(buildGetRequest("/GetMyUser"), User::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        }
+    }
+
     public UserV2 getMyUserV2() throws DiadocSdkException {
         try {
-            var request = RequestBuilder.get(
-                    new URIBuilder(diadocHttpClient.getBaseUrl()).setPath("/V2/GetMyUser").build());
-            return UserV2.parseFrom(diadocHttpClient.performRequest(request));
+            return UserV2.parseFrom(diadocHttpClient.performRequest(buildGetRequest("/V2/GetMyUser")));
         } catch (URISyntaxException | IOException e) {
             throw new DiadocSdkException(e);
         }
     }
 
+    public CompletableFuture<UserV2> getMyUserV2Async() {
+        try {
+            return diadocHttpClient.performRequestAsync(buildGetRequest("/V2/GetMyUser"), UserV2::parseFrom);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new DiadocSdkException(e));
+        }
+    }
+
     public UserV2 updateMyUser(UserToUpdate userToUpdate) throws DiadocSdkException {
         if (userToUpdate == null) {
             throw new IllegalArgumentException("userToUpdate");
@@ -55,4 +68,9 @@ public class UserClient {
         }
     }
 
+    private RequestBuilder buildGetRequest(String path) throws URISyntaxException {
+        return RequestBuilder.get(
+                new URIBuilder(diadocHttpClient.getBaseUrl()).setPath(path).build());
+    }
+
 }
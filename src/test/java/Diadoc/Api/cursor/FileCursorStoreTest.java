@@ -0,0 +1,120 @@
+package Diadoc.Api.cursor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+public class FileCursorStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void loadsLastCursorOfEveryFeedAfterReopen() throws IOException {
+        var path = folder.getRoot().toPath().resolve("cursors.log");
+        try (var store = open(path)) {
+            store.save("events:box", "1");
+            store.save("events:other box", "7");
+            store.save("events:box", "2");
+        }
+
+        try (var store = open(path)) {
+            assertEquals("2", store.load("events:box"));
+            assertEquals("7", store.load("events:other box"));
+            assertNull(store.load("events:unknown box"));
+        }
+    }
+
+    @Test
+    public void writesSavedCursorsOnlyOnFlush() throws IOException {
+        var path = folder.getRoot().toPath().resolve("cursors.log");
+        try (var store = open(path)) {
+            store.save("events:box", "1");
+            assertEquals("1", store.load("events:box"));
+            assertEquals(0, Files.size(path));
+
+            store.flush();
+            assertTrue(Files.size(path) > 0);
+        }
+    }
+
+    @Test
+    public void dropsTornRecordAtEndOfLog() throws IOException {
+        var path = folder.getRoot().toPath().resolve("cursors.log");
+        try (var store = open(path)) {
+            store.save("events:box", "1");
+        }
+        long validLength = Files.size(path);
+        //a record header promising more bytes than were written
+        Files.write(path, new byte[]{0, 0, 0, 40, 1, 2, 3, 4, 0, 10, 'e'}, StandardOpenOption.APPEND);
+
+        try (var store = open(path)) {
+            assertEquals("1", store.load("events:box"));
+            assertEquals(validLength, Files.size(path));
+            store.save("events:box", "2");
+        }
+        try (var store = open(path)) {
+            assertEquals("2", store.load("events:box"));
+        }
+    }
+
+    @Test
+    public void dropsRecordWithBadChecksumAndEverythingAfterIt() throws IOException {
+        var path = folder.getRoot().toPath().resolve("cursors.log");
+        long firstRecordLength;
+        try (var store = open(path)) {
+            store.save("events:box", "1");
+            store.flush();
+            firstRecordLength = Files.size(path);
+            store.save("events:box", "2");
+            store.flush();
+            store.save("events:other box", "7");
+        }
+        try (var file = new RandomAccessFile(path.toFile(), "rw")) {
+            //the cursor of the second record
+            file.seek(2 * firstRecordLength - 1);
+            file.write('3');
+        }
+
+        try (var store = open(path)) {
+            assertEquals("1", store.load("events:box"));
+            assertNull(store.load("events:other box"));
+            assertEquals(firstRecordLength, Files.size(path));
+        }
+    }
+
+    @Test
+    public void rejectsInvalidArguments() throws IOException {
+        var path = folder.getRoot().toPath().resolve("cursors.log");
+        assertThrows(() -> new FileCursorStore(null));
+        assertThrows(() -> new FileCursorStore(path, Duration.ofSeconds(-1)));
+        try (var store = open(path)) {
+            assertThrows(() -> store.save(null, "1"));
+            assertThrows(() -> store.save("events:box", null));
+        }
+    }
+
+    private static FileCursorStore open(Path path) throws IOException {
+        return new FileCursorStore(path, Duration.ZERO);
+    }
+
+    private static void assertThrows(IoAction action) throws IOException {
+        try {
+            action.run();
+            fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    private interface IoAction {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,145 @@
+package Diadoc.Api.docflow;
+
+import Diadoc.Api.exceptions.DiadocSdkException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static Diadoc.Api.Proto.Docflow.DocflowApiProtos.*;
+import static Diadoc.Api.Proto.Docflow.DocflowApiV3Protos.*;
+import static Diadoc.Api.Proto.Docflow.DocumentWithDocflowV3Protos.*;
+import static Diadoc.Api.Proto.DocumentIdProtos.*;
+import static org.junit.Assert.*;
+
+public class DocflowBatchFetcherTest {
+    private static final String BOX_ID = "box";
+
+    @Test
+    public void keepsOrderOfRequestsWhenBatchesCompleteOutOfOrder() throws Exception {
+        var client = new FakeDocflowClient();
+        var fetcher = new DocflowBatchFetcher(client).setMaxBatchSize(3).setMaxBatchesInFlight(2);
+        var requests = createRequests(10);
+
+        var result = fetcher.getDocflowsAsync(BOX_ID, requests);
+        assertEquals(2, client.batches.size());
+        client.succeed(1);
+        client.succeed(0);
+        client.succeed(3);
+        client.succeed(2);
+        assertEquals(4, client.batches.size());
+
+        var documents = result.get(1, TimeUnit.SECONDS).getDocumentsList();
+        assertEquals(10, documents.size());
+        for (int i = 0; i < requests.size(); i++)
+            assertEquals(requests.get(i).getDocumentId(), documents.get(i).getDocumentId());
+    }
+
+    @Test
+    public void sendsAtMostMaxBatchesInFlight() {
+        var client = new FakeDocflowClient();
+        new DocflowBatchFetcher(client).setMaxBatchSize(1).setMaxBatchesInFlight(4).getDocflowsAsync(BOX_ID, createRequests(10));
+        assertEquals(4, client.batches.size());
+
+        client.succeed(2);
+        assertEquals(5, client.batches.size());
+    }
+
+    @Test
+    public void failsAtOnceAndStopsSendingWhenMiddleBatchFails() throws Exception {
+        var client = new FakeDocflowClient();
+        var result = new DocflowBatchFetcher(client).setMaxBatchSize(1).setMaxBatchesInFlight(4).getDocflowsAsync(BOX_ID, createRequests(10));
+        client.succeed(0);
+        client.succeed(1);
+
+        client.fail(2);
+        assertTrue(result.isCompletedExceptionally());
+        try {
+            result.get(1, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DiadocSdkException);
+        }
+
+        //batches already in flight complete, but start no more
+        client.succeed(3);
+        client.succeed(4);
+        client.succeed(5);
+        assertEquals(6, client.batches.size());
+    }
+
+    @Test
+    public void cancelsBatchesInFlightWhenResultIsCancelled() {
+        var client = new FakeDocflowClient();
+        var result = new DocflowBatchFetcher(client).setMaxBatchSize(1).setMaxBatchesInFlight(3).getDocflowsAsync(BOX_ID, createRequests(10));
+        client.succeed(0);
+
+        assertTrue(result.cancel(true));
+        assertFalse(client.responses.get(0).isCancelled());
+        for (int i = 1; i < 4; i++)
+            assertTrue(client.responses.get(i).isCancelled());
+        assertEquals(4, client.batches.size());
+    }
+
+    @Test(timeout = 5000)
+    public void getDocflowsDoesNotHangWhenBatchFails() {
+        var client = new FakeDocflowClient();
+        client.failAll = true;
+        try {
+            new DocflowBatchFetcher(client).setMaxBatchSize(1).setMaxBatchesInFlight(4).getDocflows(BOX_ID, createRequests(10));
+            fail();
+        } catch (DiadocSdkException e) {
+            assertEquals("batch failed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void completesEmptyRequests() throws Exception {
+        var result = new DocflowBatchFetcher(new FakeDocflowClient()).getDocflowsAsync(BOX_ID, new ArrayList<>());
+        assertEquals(0, result.get(1, TimeUnit.SECONDS).getDocumentsCount());
+    }
+
+    private static List<GetDocflowRequest> createRequests(int count) {
+        var requests = new ArrayList<GetDocflowRequest>();
+        for (int i = 0; i < count; i++) {
+            requests.add(GetDocflowRequest.newBuilder()
+                    .setDocumentId(DocumentId.newBuilder().setMessageId("message" + i).setEntityId("entity" + i))
+                    .build());
+        }
+        return requests;
+    }
+
+    private static class FakeDocflowClient extends DocflowClient {
+        private final List<GetDocflowBatchRequest> batches = new ArrayList<>();
+        private final List<CompletableFuture<GetDocflowBatchResponseV3>> responses = new ArrayList<>();
+        private boolean failAll;
+
+        FakeDocflowClient() {
+            super(null);
+        }
+
+        @Override
+        public CompletableFuture<GetDocflowBatchResponseV3> getDocflowsAsync(String boxId, GetDocflowBatchRequest getDocflowBatchRequest) {
+            batches.add(getDocflowBatchRequest);
+            if (failAll)
+                return CompletableFuture.failedFuture(new DiadocSdkException("batch failed"));
+            var response = new CompletableFuture<GetDocflowBatchResponseV3>();
+            responses.add(response);
+            return response;
+        }
+
+        void succeed(int batchIndex) {
+            var documents = GetDocflowBatchResponseV3.newBuilder();
+            for (var request : batches.get(batchIndex).getRequestsList())
+                documents.addDocuments(DocumentWithDocflowV3.newBuilder().setDocumentId(request.getDocumentId()).buildPartial());
+            responses.get(batchIndex).complete(documents.buildPartial());
+        }
+
+        void fail(int batchIndex) {
+            responses.get(batchIndex).completeExceptionally(new DiadocSdkException("batch failed"));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package Diadoc.Api.docflow;
+
+import Diadoc.Api.cursor.CursorStore;
+import Diadoc.Api.exceptions.DiadocSdkException;
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static Diadoc.Api.Proto.Docflow.DocflowApiProtos.*;
+import static Diadoc.Api.Proto.Docflow.DocflowApiV3Protos.*;
+import static Diadoc.Api.Proto.TimeBasedFilterProtos.*;
+import static org.junit.Assert.*;
+
+public class DocflowEventsCursorTest {
+    private static final String BOX_ID = "box";
+    private static final String FEED = "docflows:box";
+
+    @Test
+    public void savesIndexKeyOfEventOnlyAfterItIsHandled() throws DiadocSdkException {
+        var client = new FakeDocflowClient(5);
+        var store = new MemoryCursorStore();
+        try (var cursor = client.openDocflowEventsCursor(BOX_ID, createRequest().build(), false, store, FEED)) {
+            assertEquals("0", cursor.next().getEventId());
+            assertNull(store.load(FEED));
+
+            assertEquals("1", cursor.next().getEventId());
+            assertEquals("0", decode(store.load(FEED)));
+        }
+        assertEquals(0, store.flushes);
+    }
+
+    @Test
+    public void savesAndFlushesLastIndexKeyWhenFeedEnds() throws DiadocSdkException {
+        var client = new FakeDocflowClient(5);
+        var store = new MemoryCursorStore();
+        var eventIds = new ArrayList<String>();
+        try (var cursor = client.openDocflowEventsCursor(BOX_ID, createRequest().build(), false, store, FEED)) {
+            while (cursor.hasNext())
+                eventIds.add(cursor.next().getEventId());
+            assertFalse(cursor.hasNext());
+        }
+        assertEquals(List.of("0", "1", "2", "3", "4"), eventIds);
+        assertEquals("4", decode(store.load(FEED)));
+        assertEquals(1, store.flushes);
+    }
+
+    @Test
+    public void resumesAfterSavedIndexKey() throws DiadocSdkException {
+        var client = new FakeDocflowClient(5);
+        var store = new MemoryCursorStore();
+        store.save(FEED, Base64.getEncoder().encodeToString(ByteString.copyFromUtf8("2").toByteArray()));
+        var request = createRequest().setAfterIndexKey(ByteString.copyFromUtf8("0")).build();
+
+        var eventIds = new ArrayList<String>();
+        try (var cursor = client.openDocflowEventsCursor(BOX_ID, request, false, store, FEED)) {
+            cursor.forEachRemaining(event -> eventIds.add(event.getEventId()));
+        }
+        assertEquals(List.of("3", "4"), eventIds);
+    }
+
+    private static GetDocflowEventsRequest.Builder createRequest() {
+        return GetDocflowEventsRequest.newBuilder()
+                .setFilter(TimeBasedFilter.newBuilder().setSortDirection(SortDirection.Ascending));
+    }
+
+    private static String decode(String cursor) {
+        return new String(Base64.getDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+
+    private static class MemoryCursorStore implements CursorStore {
+        private final Map<String, String> cursors = new HashMap<>();
+        private int flushes;
+
+        @Override
+        public String load(String feed) {
+            return cursors.get(feed);
+        }
+
+        @Override
+        public void save(String feed, String cursor) {
+            cursors.put(feed, cursor);
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    //pages of two events, the index key of an event is its number
+    private static class FakeDocflowClient extends DocflowClient {
+        private final int eventsCount;
+
+        FakeDocflowClient(int eventsCount) {
+            super(null);
+            this.eventsCount = eventsCount;
+        }
+
+        @Override
+        public CompletableFuture<GetDocflowEventsResponseV3> getDocflowEventsAsync(String boxId, GetDocflowEventsRequest request) {
+            int first = request.hasAfterIndexKey() ? Integer.parseInt(request.getAfterIndexKey().toStringUtf8()) + 1 : 0;
+            var page = GetDocflowEventsResponseV3.newBuilder().setTotalCount(eventsCount - first);
+            for (int i = first; i < Math.min(first + 2, eventsCount); i++) {
+                page.addEvents(DocflowEventV3.newBuilder()
+                        .setEventId(Integer.toString(i))
+                        .setIndexKey(ByteString.copyFromUtf8(Integer.toString(i)))
+                        .buildPartial());
+            }
+            return CompletableFuture.completedFuture(page.buildPartial());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package Diadoc.Api.document;
+
+import Diadoc.Api.exceptions.DiadocSdkException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static Diadoc.Api.Proto.Documents.DocumentListProtos.*;
+import static Diadoc.Api.Proto.Documents.DocumentProtos.*;
+import static org.junit.Assert.*;
+
+public class PartitionedDocumentsListerTest {
+    private static final long FROM = 0;
+    private static final long TO = 10000;
+
+    @Test(timeout = 10000)
+    public void listsDocumentsOfRangesInOrder() throws DiadocSdkException {
+        var client = new FakeDocumentClient(5);
+        var documents = new ArrayList<String>();
+        try (var lister = new PartitionedDocumentsLister(client, 2).setMaxBufferedPages(2)) {
+            lister.listDocuments(createFilter(), document -> documents.add(document.getEntityId()));
+        }
+
+        var expected = new ArrayList<String>();
+        for (var range : List.of(FROM, (FROM + TO) / 2)) {
+            for (int i = 0; i < 5; i++)
+                expected.add(range + ":" + i);
+        }
+        assertEquals(expected, documents);
+    }
+
+    @Test(timeout = 10000)
+    public void fetchesAtMostMaxBufferedPagesAheadOfConsumer() throws Exception {
+        var client = new FakeDocumentClient(20);
+        var consumerBlocked = new CountDownLatch(1);
+        var unblockConsumer = new CountDownLatch(1);
+        var documents = new AtomicInteger();
+        try (var lister = new PartitionedDocumentsLister(client, 2).setMaxBufferedPages(2)) {
+            var listing = new Thread(() -> {
+                try {
+                    lister.listDocuments(createFilter(), document -> {
+                        if (documents.incrementAndGet() == 1) {
+                            consumerBlocked.countDown();
+                            await(unblockConsumer);
+                        }
+                    });
+                } catch (DiadocSdkException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            listing.start();
+            consumerBlocked.await();
+            Thread.sleep(300);
+
+            //the buffered pages and one more waiting to be buffered
+            assertEquals(3, client.getPagesFetched((FROM + TO) / 2));
+            assertEquals(4, client.getPagesFetched(FROM));
+
+            unblockConsumer.countDown();
+            listing.join();
+        }
+        assertEquals(40, documents.get());
+    }
+
+    @Test(timeout = 10000)
+    public void failsWhenPageOfRangeFails() {
+        var client = new FakeDocumentClient(5);
+        client.failingPage = 3;
+        var documents = new ArrayList<Document>();
+        try (var lister = new PartitionedDocumentsLister(client, 2)) {
+            lister.listDocuments(createFilter(), documents::add);
+            fail();
+        } catch (DiadocSdkException e) {
+            assertEquals("page failed", e.getMessage());
+            assertEquals(3, documents.size());
+        }
+    }
+
+    private static DocumentsFilter createFilter() {
+        return new DocumentsFilter().setBoxId("box").setTimestampFrom(new Date(FROM)).setTimestampTo(new Date(TO));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    //a range of one document per page, the index key of a document is the number of its page
+    private static class FakeDocumentClient extends DocumentClient {
+        private final int pagesPerRange;
+        private final Map<Long, AtomicInteger> pagesFetched = new ConcurrentHashMap<>();
+        private volatile int failingPage = -1;
+
+        FakeDocumentClient(int pagesPerRange) {
+            super(null);
+            this.pagesPerRange = pagesPerRange;
+        }
+
+        @Override
+        public DocumentList getDocuments(DocumentsFilter filter) throws DiadocSdkException {
+            long from = filter.getTimestampFrom().getTime();
+            pagesFetched.computeIfAbsent(from, ignored -> new AtomicInteger()).incrementAndGet();
+            int page = filter.getAfterIndexKey() == null ? 0 : Integer.parseInt(filter.getAfterIndexKey()) + 1;
+            if (page == failingPage)
+                throw new DiadocSdkException("page failed");
+            var document = Document.newBuilder()
+                    .setMessageId("message")
+                    .setEntityId(from + ":" + page)
+                    .setIndexKey(Integer.toString(page))
+                    .buildPartial();
+            return DocumentList.newBuilder()
+                    .setTotalCount(pagesPerRange)
+                    .addDocuments(document)
+                    .setHasMoreResults(page + 1 < pagesPerRange)
+                    .buildPartial();
+        }
+
+        int getPagesFetched(long from) {
+            return pagesFetched.get(from).get();
+        }
+    }
+}
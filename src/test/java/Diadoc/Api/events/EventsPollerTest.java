@@ -0,0 +1,64 @@
+package Diadoc.Api.events;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static Diadoc.Api.Proto.Events.DiadocMessage_GetApiProtos.*;
+import static org.junit.Assert.*;
+
+public class EventsPollerTest {
+    @Test(timeout = 10000)
+    public void retriesFailedEventAfterMaxPollIntervalWhilePollingGoesOn() throws Exception {
+        var client = new FakeEventsClient();
+        var errors = new CopyOnWriteArrayList<Throwable>();
+        var handled = new CopyOnWriteArrayList<String>();
+        var attempts = new AtomicInteger();
+        var options = new EventsPollerOptions()
+                .setPollIntervals(Duration.ofMillis(1), Duration.ofMillis(500))
+                .setMaxQueuedEvents(1000)
+                .setErrorHandler((boxId, e) -> errors.add(e));
+        try (var poller = new EventsPoller(client, options)) {
+            poller.subscribe("box", null, (boxId, event) -> {
+                if (attempts.incrementAndGet() == 1)
+                    throw new IllegalStateException("handler failed");
+                handled.add(event.getEventId());
+            });
+
+            while (errors.isEmpty())
+                Thread.sleep(10);
+            //polling goes on, but the failed event is not handled again before maxPollInterval
+            Thread.sleep(200);
+            assertEquals(1, attempts.get());
+            assertEquals(1, errors.size());
+            assertTrue(client.polls.get() > 1);
+
+            while (handled.isEmpty())
+                Thread.sleep(10);
+            assertEquals("1", handled.get(0));
+        }
+    }
+
+    //every poll returns one new event and reports more of them
+    private static class FakeEventsClient extends EventsClient {
+        private final AtomicInteger polls = new AtomicInteger();
+
+        FakeEventsClient() {
+            super(null);
+        }
+
+        @Override
+        public CompletableFuture<BoxEventList> getNewEventsAsync(String currentBoxId, String eventIdCurrent) {
+            int next = eventIdCurrent == null ? 1 : Integer.parseInt(eventIdCurrent) + 1;
+            polls.incrementAndGet();
+            var event = BoxEvent.newBuilder().setEventId(Integer.toString(next)).buildPartial();
+            return CompletableFuture.completedFuture(BoxEventList.newBuilder()
+                    .addEvents(event)
+                    .setTotalCount(next < 150 ? 2 : 1)
+                    .buildPartial());
+        }
+    }
+}
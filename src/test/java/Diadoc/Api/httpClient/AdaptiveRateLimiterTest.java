@@ -0,0 +1,95 @@
+package Diadoc.Api.httpClient;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveRateLimiterTest {
+    private static final String ENDPOINT = "/V3/GetDocument";
+
+    @Test
+    public void sendsSecondOfRequestsAtOnceAndDelaysTheRest() {
+        var limiter = new AdaptiveRateLimiter().setMaxRates(10, 10);
+        for (int i = 0; i < 10; i++)
+            assertEquals(0, limiter.acquire(ENDPOINT, null));
+
+        long delay = limiter.acquire(ENDPOINT, null);
+        assertTrue(delay > TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(delay <= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void decreasesRateAfterThrottlingAndIncreasesItAfterSuccess() {
+        var limiter = new AdaptiveRateLimiter().setMaxRates(10, 10).setAdjustment(1, 0.5);
+        limiter.acquire(ENDPOINT, null);
+
+        limiter.onResponse(ENDPOINT, null, 429, null);
+        assertEquals(5, limiter.getEndpointRates().get(ENDPOINT), 0);
+        limiter.onResponse(ENDPOINT, null, 503, null);
+        assertEquals(2.5, limiter.getEndpointRates().get(ENDPOINT), 0);
+
+        limiter.onResponse(ENDPOINT, null, 200, null);
+        assertEquals(3.5, limiter.getEndpointRates().get(ENDPOINT), 0);
+        for (int i = 0; i < 20; i++)
+            limiter.onResponse(ENDPOINT, null, 404, null);
+        assertEquals(10, limiter.getEndpointRates().get(ENDPOINT), 0);
+    }
+
+    @Test
+    public void keepsRateAfterServerErrors() {
+        var limiter = new AdaptiveRateLimiter().setMaxRates(10, 10);
+        limiter.acquire(ENDPOINT, null);
+        limiter.onResponse(ENDPOINT, null, 500, null);
+        limiter.onResponse(ENDPOINT, null, 502, null);
+        assertEquals(10, limiter.getEndpointRates().get(ENDPOINT), 0);
+    }
+
+    @Test
+    public void doesNotDecreaseRateBelowMinRate() {
+        var limiter = new AdaptiveRateLimiter().setMaxRates(10, 10).setMinRate(2);
+        for (int i = 0; i < 10; i++)
+            limiter.onResponse(ENDPOINT, null, 429, null);
+        assertEquals(2, limiter.getEndpointRates().get(ENDPOINT), 0);
+    }
+
+    @Test
+    public void stopsBucketForRetryAfter() {
+        var limiter = new AdaptiveRateLimiter().setMaxRates(100, 100);
+        limiter.onResponse(ENDPOINT, null, 429, 3);
+
+        long delay = limiter.acquire(ENDPOINT, null);
+        assertTrue(delay > TimeUnit.SECONDS.toNanos(2));
+        assertTrue(delay <= TimeUnit.SECONDS.toNanos(4));
+        assertEquals(0, limiter.acquire("/V5/GetMessage", null));
+    }
+
+    @Test
+    public void waitsForBusiestOfEndpointAndBoxBuckets() {
+        var limiter = new AdaptiveRateLimiter().setMaxRates(100, 2);
+        limiter.acquire(ENDPOINT, "box");
+        limiter.acquire(ENDPOINT, "box");
+
+        assertTrue(limiter.acquire("/V5/GetMessage", "box") > 0);
+        assertEquals(0, limiter.acquire("/V5/GetMessage", "other box"));
+        assertEquals(0, limiter.acquire("/V5/GetMessage", null));
+    }
+
+    @Test
+    public void rejectsInvalidSettings() {
+        var limiter = new AdaptiveRateLimiter();
+        assertThrows(() -> limiter.setMaxRates(limiter.getMinRate() / 2, 10));
+        assertThrows(() -> limiter.setMinRate(0));
+        assertThrows(() -> limiter.setAdjustment(1, 1));
+        assertThrows(() -> limiter.setAdjustment(0, 0.5));
+    }
+
+    private static void assertThrows(Runnable action) {
+        try {
+            action.run();
+            fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
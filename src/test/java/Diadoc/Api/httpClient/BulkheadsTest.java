@@ -0,0 +1,181 @@
+package Diadoc.Api.httpClient;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BulkheadsTest {
+    private static final String PATH = "/V3/GetDocument";
+
+    @Test
+    public void sendsRequestsOfUnknownPathsToDefaultGroup() {
+        var bulkheads = new Bulkheads().setGroup("documents", 2, PATH);
+        assertSame(bulkheads.getGroup(PATH), bulkheads.getGroup(PATH));
+        assertNotSame(bulkheads.getGroup(PATH), bulkheads.getGroup("/V5/GetMessage"));
+        assertSame(bulkheads.getGroup(Bulkheads.DEFAULT_GROUP), bulkheads.getGroup("/V5/GetMessage"));
+        assertEquals(2, bulkheads.getStats().get("documents").getMaxConcurrentRequests());
+    }
+
+    @Test
+    public void rejectsBlockingRequestToFullGroupAfterMaxWait() throws IOException {
+        var bulkheads = new Bulkheads().setGroup("documents", 2, PATH).setMaxWait(Duration.ZERO);
+        var group = bulkheads.getGroup(PATH);
+        var permit = group.acquire();
+        group.acquire();
+        assertRejected(group);
+
+        permit.release();
+        permit.release();
+        group.acquire();
+        var stats = bulkheads.getStats().get("documents");
+        assertEquals(2, stats.getInFlight());
+        assertEquals(1, stats.getRejected());
+    }
+
+    @Test
+    public void queuesAsyncRequestsToFullGroup() throws IOException {
+        var bulkheads = new Bulkheads().setGroup("documents", 1, PATH).setMaxQueuedRequests(1);
+        var group = bulkheads.getGroup(PATH);
+        var permit = group.acquire();
+        var acquired = new ArrayList<Bulkheads.Permit>();
+        var rejected = new ArrayList<BulkheadRejectedException>();
+
+        group.acquireAsync(acquired::add, rejected::add);
+        group.acquireAsync(acquired::add, rejected::add);
+        assertTrue(acquired.isEmpty());
+        assertEquals(1, rejected.size());
+        assertEquals(1, bulkheads.getStats().get("documents").getQueued());
+
+        permit.release();
+        assertEquals(1, acquired.size());
+        assertEquals(0, bulkheads.getStats().get("documents").getQueued());
+        assertEquals(1, bulkheads.getStats().get("documents").getInFlight());
+    }
+
+    @Test
+    public void opensCircuitAfterConsecutiveFailures() throws IOException {
+        var bulkheads = new Bulkheads().setCircuitBreaker(3, Duration.ofMinutes(1), 1);
+        var group = bulkheads.getGroup(PATH);
+        failRequest(group);
+        failRequest(group);
+        succeed(group);
+        failRequest(group);
+        failRequest(group);
+        assertEquals(CircuitState.CLOSED, bulkheads.getStats().get(Bulkheads.DEFAULT_GROUP).getCircuitState());
+
+        respond(group, 500);
+        assertEquals(CircuitState.OPEN, bulkheads.getStats().get(Bulkheads.DEFAULT_GROUP).getCircuitState());
+        assertRejected(group);
+    }
+
+    @Test
+    public void doesNotCountThrottlingAsFailure() throws IOException {
+        var bulkheads = new Bulkheads().setCircuitBreaker(2, Duration.ofMinutes(1), 1);
+        var group = bulkheads.getGroup(PATH);
+        failRequest(group);
+        respond(group, 503);
+        respond(group, 429);
+        respond(group, 404);
+        failRequest(group);
+        respond(group, 503);
+        assertEquals(CircuitState.CLOSED, bulkheads.getStats().get(Bulkheads.DEFAULT_GROUP).getCircuitState());
+    }
+
+    @Test
+    public void closesCircuitAfterSuccessfulTrial() throws IOException {
+        var bulkheads = new Bulkheads().setCircuitBreaker(1, Duration.ZERO, 1);
+        var group = bulkheads.getGroup(PATH);
+        failRequest(group);
+
+        var trial = group.acquire();
+        assertEquals(CircuitState.HALF_OPEN, bulkheads.getStats().get(Bulkheads.DEFAULT_GROUP).getCircuitState());
+        assertRejected(group);
+
+        trial.onResponse(200);
+        trial.release();
+        assertEquals(CircuitState.CLOSED, bulkheads.getStats().get(Bulkheads.DEFAULT_GROUP).getCircuitState());
+        group.acquire();
+        group.acquire();
+    }
+
+    @Test
+    public void opensCircuitAgainAfterFailedTrial() throws IOException {
+        var bulkheads = new Bulkheads().setCircuitBreaker(1, Duration.ofMillis(100), 1);
+        var group = bulkheads.getGroup(PATH);
+        failRequest(group);
+        assertRejected(group);
+
+        sleep(150);
+        failRequest(group);
+        assertEquals(CircuitState.OPEN, bulkheads.getStats().get(Bulkheads.DEFAULT_GROUP).getCircuitState());
+        assertRejected(group);
+    }
+
+    @Test
+    public void ignoresResultsOfRequestsSentBeforeCircuitOpened() throws IOException {
+        var bulkheads = new Bulkheads().setCircuitBreaker(1, Duration.ZERO, 1);
+        var group = bulkheads.getGroup(PATH);
+        var late = group.acquire();
+        failRequest(group);
+
+        var trial = group.acquire();
+        late.onResponse(200);
+        late.release();
+        assertEquals(CircuitState.HALF_OPEN, bulkheads.getStats().get(Bulkheads.DEFAULT_GROUP).getCircuitState());
+
+        trial.onFailure();
+        trial.release();
+        assertEquals(CircuitState.OPEN, bulkheads.getStats().get(Bulkheads.DEFAULT_GROUP).getCircuitState());
+    }
+
+    @Test
+    public void rejectsQueuedAsyncRequestsWhenCircuitOpens() throws IOException {
+        var bulkheads = new Bulkheads().setGroup("documents", 1, PATH).setCircuitBreaker(1, Duration.ofMinutes(1), 1);
+        var group = bulkheads.getGroup(PATH);
+        var permit = group.acquire();
+        List<BulkheadRejectedException> rejected = new ArrayList<>();
+        group.acquireAsync(ignored -> { throw new AssertionError(); }, rejected::add);
+
+        permit.onFailure();
+        assertEquals(1, rejected.size());
+        permit.release();
+        assertEquals(0, bulkheads.getStats().get("documents").getInFlight());
+    }
+
+    private static void succeed(Bulkheads.Group group) throws IOException {
+        respond(group, 200);
+    }
+
+    private static void respond(Bulkheads.Group group, int statusCode) throws IOException {
+        var permit = group.acquire();
+        permit.onResponse(statusCode);
+        permit.release();
+    }
+
+    private static void failRequest(Bulkheads.Group group) throws IOException {
+        var permit = group.acquire();
+        permit.onFailure();
+        permit.release();
+    }
+
+    private static void assertRejected(Bulkheads.Group group) throws IOException {
+        try {
+            group.acquire();
+            fail();
+        } catch (BulkheadRejectedException ignored) {
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package Diadoc.Api.httpClient;
+
+import Diadoc.Api.exceptions.DiadocSdkException;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DiadocHttpClientTest {
+    private HttpServer server;
+    private DiadocHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/V3/GetDocument", exchange -> {
+            var content = "document".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, content.length);
+            exchange.getResponseBody().write(content);
+            exchange.close();
+        });
+        server.createContext("/GetTaskResult", exchange -> {
+            exchange.getResponseHeaders().add("Retry-After", "Wed, 21 Oct 2015 07:28:00 GMT");
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.start();
+        client = new DiadocHttpClient(new BasicCredentialsProvider(), getBaseUrl(), null);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test(timeout = 10000)
+    public void failsAsyncRequestWhenParserThrowsRuntimeException() throws Exception {
+        var result = client.performRequestAsync(RequestBuilder.get(getBaseUrl() + "/V3/GetDocument"), content -> {
+            throw new NumberFormatException("bad content");
+        });
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DiadocSdkException);
+            assertTrue(e.getCause().getCause() instanceof NumberFormatException);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void readsResponseWithHttpDateRetryAfter() throws Exception {
+        var response = client.getResponseAsync(RequestBuilder.get(getBaseUrl() + "/GetTaskResult")).get(5, TimeUnit.SECONDS);
+        assertEquals(503, response.getStatusCode());
+        assertEquals(Integer.valueOf(0), response.getRetryAfter());
+    }
+
+    @Test(timeout = 10000)
+    public void stopsThreadsOnClose() throws Exception {
+        client.performRequestAsync(RequestBuilder.get(getBaseUrl() + "/V3/GetDocument")).get(5, TimeUnit.SECONDS);
+        assertTrue(hasThread("diadoc-http-async"));
+        assertTrue(hasThread("diadoc-http-scheduler"));
+
+        client.close();
+        for (var thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("diadoc-http"))
+                thread.join();
+        }
+        try {
+            client.performRequestAsync(RequestBuilder.get(getBaseUrl() + "/V3/GetDocument")).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DiadocSdkException);
+        }
+    }
+
+    private static boolean hasThread(String namePrefix) {
+        for (var thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith(namePrefix))
+                return true;
+        }
+        return false;
+    }
+
+    private String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+}
@@ -0,0 +1,105 @@
+package Diadoc.Api.httpClient;
+
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HedgingPolicyTest {
+    private static final String HOST = "https://diadoc-api.kontur.ru";
+    private static final String ENDPOINT = "/V3/GetDocument";
+
+    @Test
+    public void hedgesOnlyGetRequestsToHedgedPaths() {
+        var policy = new HedgingPolicy();
+        assertTrue(policy.isHedged(new HttpGet(HOST + ENDPOINT + "?boxId=box")));
+        assertFalse(policy.isHedged(new HttpPost(HOST + ENDPOINT)));
+        assertFalse(policy.isHedged(new HttpGet(HOST + "/V4/GetEntityContent")));
+
+        policy.addPath("/V4/GetEntityContent").removePath(ENDPOINT);
+        assertTrue(policy.isHedged(new HttpGet(HOST + "/V4/GetEntityContent")));
+        assertFalse(policy.isHedged(new HttpGet(HOST + ENDPOINT)));
+    }
+
+    @Test
+    public void usesInitialDelayUntilSampleIsFull() {
+        var policy = new HedgingPolicy().setSampleSize(16).setDelays(Duration.ZERO, Duration.ofSeconds(1));
+        var hedge = policy.start(ENDPOINT);
+        for (int i = 0; i < 15; i++)
+            hedge.onLatency(TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(TimeUnit.SECONDS.toNanos(1), hedge.getDelayNanos());
+
+        hedge.onLatency(TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(10), hedge.getDelayNanos());
+    }
+
+    @Test
+    public void delaysHedgeByLatencyPercentileButNotLessThanMinDelay() {
+        var policy = new HedgingPolicy().setSampleSize(100).setPercentile(0.9).setDelays(Duration.ofMillis(5), Duration.ofSeconds(1));
+        var hedge = policy.start(ENDPOINT);
+        for (int i = 1; i <= 100; i++)
+            hedge.onLatency(TimeUnit.MILLISECONDS.toNanos(i));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(90), hedge.getDelayNanos());
+
+        for (int i = 0; i < 100; i++)
+            hedge.onLatency(TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5), hedge.getDelayNanos());
+    }
+
+    @Test
+    public void countsStragglersLosingToHedgeAsTakingUntilHedgeWon() {
+        var policy = new HedgingPolicy().setSampleSize(100).setPercentile(0.9).setDelays(Duration.ofMillis(5), Duration.ofSeconds(1));
+        for (int i = 0; i < 100; i++) {
+            var hedge = policy.start(ENDPOINT);
+            //every fifth primary straggles and is cancelled when its hedge, sent after a second, responds 10 ms later
+            long latency = TimeUnit.MILLISECONDS.toNanos(i % 5 == 0 ? 1010 : 10);
+            hedge.onCompleted(System.nanoTime() + latency);
+        }
+
+        long delay = policy.start(ENDPOINT).getDelayNanos();
+        assertTrue(delay >= TimeUnit.MILLISECONDS.toNanos(1010));
+        assertTrue(delay < TimeUnit.MILLISECONDS.toNanos(1100));
+    }
+
+    @Test
+    public void sendsDuplicatesWithinBudget() {
+        var policy = new HedgingPolicy().setBudgetRatio(0.25);
+        var hedge = policy.start(ENDPOINT);
+        assertFalse(hedge.tryHedge());
+
+        policy.start(ENDPOINT);
+        policy.start(ENDPOINT);
+        hedge = policy.start(ENDPOINT);
+        assertTrue(hedge.tryHedge());
+        assertFalse(hedge.tryHedge());
+        hedge.onWin(true);
+
+        var stats = policy.getStats().get(ENDPOINT);
+        assertEquals(4, stats.getRequests());
+        assertEquals(1, stats.getHedges());
+        assertEquals(1, stats.getHedgeWins());
+        assertEquals(2, stats.getBudgetRejected());
+    }
+
+    @Test
+    public void rejectsInvalidSettings() {
+        var policy = new HedgingPolicy();
+        assertThrows(() -> policy.setPercentile(0.2));
+        assertThrows(() -> policy.setSampleSize(8));
+        assertThrows(() -> policy.setDelays(Duration.ofSeconds(2), Duration.ofSeconds(1)));
+        assertThrows(() -> policy.setBudgetRatio(2));
+        assertThrows(() -> policy.addPath(null));
+    }
+
+    private static void assertThrows(Runnable action) {
+        try {
+            action.run();
+            fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package Diadoc.Api.httpClient;
+
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RetryPolicyTest {
+    private static final String HOST = "https://diadoc-api.kontur.ru";
+
+    @Test
+    public void detectsIdempotentRequests() {
+        var policy = new RetryPolicy();
+        assertTrue(policy.isIdempotent(new HttpGet(HOST + "/V5/GetMessage")));
+        assertTrue(policy.isIdempotent(new HttpPost(HOST + "/V3/GetDocflows")));
+        assertTrue(policy.isIdempotent(new HttpPost(HOST + "/GenerateTorg12XmlForSeller")));
+        assertTrue(policy.isIdempotent(new HttpPost(HOST + "/CanSendInvoice")));
+        assertTrue(policy.isIdempotent(new HttpPost(HOST + "/V3/PostMessage?operationId=42")));
+        assertFalse(policy.isIdempotent(new HttpPost(HOST + "/V3/PostMessage")));
+        assertFalse(policy.isIdempotent(new HttpPost(HOST + "/V3/PostMessage?operationId=")));
+
+        policy.addIdempotentPath("/V3/PostMessage");
+        assertTrue(policy.isIdempotent(new HttpPost(HOST + "/V3/PostMessage")));
+    }
+
+    @Test
+    public void retriesNonIdempotentRequestOnlyIfItWasNotProcessed() {
+        var policy = new RetryPolicy();
+        assertTrue(start(policy, post()).onResponse(503, null) >= 0);
+        assertTrue(start(policy, post()).onResponse(429, null) >= 0);
+        assertTrue(start(policy, post()).onFailure(new ConnectException()) >= 0);
+        assertEquals(-1, start(policy, post()).onResponse(502, null));
+        assertEquals(-1, start(policy, post()).onResponse(504, null));
+        assertEquals(-1, start(policy, post()).onFailure(new SocketTimeoutException()));
+    }
+
+    @Test
+    public void retriesIdempotentRequestAfterGatewayErrorsAndTimeouts() {
+        var policy = new RetryPolicy();
+        assertTrue(start(policy, get()).onResponse(502, null) >= 0);
+        assertTrue(start(policy, get()).onResponse(504, null) >= 0);
+        assertTrue(start(policy, get()).onFailure(new SocketTimeoutException()) >= 0);
+        assertTrue(start(policy, get()).onFailure(new SocketException()) >= 0);
+        assertEquals(-1, start(policy, get()).onResponse(500, null));
+        assertEquals(-1, start(policy, get()).onResponse(404, null));
+        assertEquals(-1, start(policy, get()).onFailure(new InterruptedIOException()));
+        assertEquals(-1, start(policy, get()).onFailure(new ConnectionPoolTimeoutException()));
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() {
+        var policy = new RetryPolicy().setMaxAttempts(3);
+        var retry = start(policy, get());
+        assertTrue(retry.onResponse(503, null) >= 0);
+        assertTrue(retry.onResponse(503, null) >= 0);
+        assertEquals(-1, retry.onResponse(503, null));
+
+        var stats = policy.getStats().get("/V5/GetMessage");
+        assertEquals(2, stats.getRetries());
+        assertEquals(1, stats.getExhausted());
+    }
+
+    @Test
+    public void countsRequestsRecoveredByRetry() {
+        var policy = new RetryPolicy();
+        var retry = start(policy, get());
+        retry.onResponse(503, null);
+        retry.onResponse(200, null);
+
+        assertEquals(1, policy.getStats().get("/V5/GetMessage").getRecovered());
+    }
+
+    @Test
+    public void keepsDelaysBetweenBaseAndMaxDelayButNotShorterThanRetryAfter() {
+        var policy = new RetryPolicy().setMaxAttempts(10).setDelays(Duration.ofMillis(100), Duration.ofMillis(300));
+        var retry = start(policy, get());
+        for (int i = 0; i < 8; i++) {
+            long delay = retry.onResponse(503, null);
+            assertTrue(delay >= TimeUnit.MILLISECONDS.toNanos(100));
+            assertTrue(delay <= TimeUnit.MILLISECONDS.toNanos(300));
+        }
+
+        assertTrue(start(policy, get()).onResponse(429, 5) >= TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    public void spendsBudgetSavedByRequests() {
+        var policy = new RetryPolicy().setBudget(0.5, 0);
+        assertTrue(start(policy, get()).onResponse(503, null) >= 0);
+        assertEquals(-1, start(policy, get()).onResponse(503, null));
+
+        //the failed request and one more have saved a retry
+        start(policy, get());
+        assertTrue(start(policy, get()).onResponse(503, null) >= 0);
+
+        var stats = policy.getStats().get("/V5/GetMessage");
+        assertEquals(1, stats.getBudgetRejected());
+        assertEquals(2, stats.getRetries());
+    }
+
+    @Test
+    public void rejectsInvalidSettings() {
+        var policy = new RetryPolicy();
+        assertThrows(() -> policy.setMaxAttempts(0));
+        assertThrows(() -> policy.setDelays(Duration.ZERO, Duration.ofSeconds(1)));
+        assertThrows(() -> policy.setDelays(Duration.ofSeconds(2), Duration.ofSeconds(1)));
+        assertThrows(() -> policy.setBudget(-1, 0));
+    }
+
+    private static RetryPolicy.Retry start(RetryPolicy policy, HttpUriRequest request) {
+        return policy.start(request, request.getURI().getPath());
+    }
+
+    private static HttpUriRequest get() {
+        return new HttpGet(HOST + "/V5/GetMessage");
+    }
+
+    private static HttpUriRequest post() {
+        return new HttpPost(HOST + "/V3/PostMessage");
+    }
+
+    private static void assertThrows(Runnable action) {
+        try {
+            action.run();
+            fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
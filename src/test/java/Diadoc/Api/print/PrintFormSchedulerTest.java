@@ -0,0 +1,71 @@
+package Diadoc.Api.print;
+
+import Diadoc.Api.print.models.DocumentProtocolResult;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static Diadoc.Api.Proto.Documents.DocumentProtocolProtos.*;
+import static org.junit.Assert.*;
+
+public class PrintFormSchedulerTest {
+    @Test(timeout = 10000)
+    public void completesManyJobsAnsweredInlineWithoutRecursion() throws Exception {
+        var client = new FakePrintFormClient(1);
+        try (var scheduler = new PrintFormScheduler(client, 1)) {
+            var results = new ArrayList<CompletableFuture<DocumentProtocol>>();
+            //the jobs are queued while the first one holds the only slot
+            for (int i = 0; i < 100000; i++)
+                results.add(scheduler.generateDocumentProtocol("box", "message", Integer.toString(i)));
+            assertEquals(1, client.requests);
+
+            client.pending.get(0).complete(new DocumentProtocolResult(DocumentProtocol.getDefaultInstance()));
+            for (var result : results)
+                assertNotNull(result.get(1, TimeUnit.SECONDS));
+        }
+        assertEquals(100000, client.requests);
+    }
+
+    @Test(timeout = 10000)
+    public void sendsAtMostMaxConcurrentRequests() throws Exception {
+        var client = new FakePrintFormClient(Integer.MAX_VALUE);
+        try (var scheduler = new PrintFormScheduler(client, 2)) {
+            var results = new ArrayList<CompletableFuture<DocumentProtocol>>();
+            for (int i = 0; i < 5; i++)
+                results.add(scheduler.generateDocumentProtocol("box", "message", Integer.toString(i)));
+            assertEquals(2, client.requests);
+
+            results.get(3).cancel(false);
+            client.pending.get(0).complete(new DocumentProtocolResult(DocumentProtocol.getDefaultInstance()));
+            assertEquals(3, client.requests);
+            client.pending.get(1).complete(new DocumentProtocolResult(DocumentProtocol.getDefaultInstance()));
+            client.pending.get(2).complete(new DocumentProtocolResult(DocumentProtocol.getDefaultInstance()));
+            assertEquals(4, client.requests);
+            assertTrue(results.get(2).isDone());
+        }
+    }
+
+    private static class FakePrintFormClient extends PrintFormClient {
+        private final int pendingRequests;
+        private final List<CompletableFuture<DocumentProtocolResult>> pending = new ArrayList<>();
+        private int requests;
+
+        //the first pendingRequests requests are completed by the test, the rest are answered at once
+        FakePrintFormClient(int pendingRequests) {
+            super(null);
+            this.pendingRequests = pendingRequests;
+        }
+
+        @Override
+        public CompletableFuture<DocumentProtocolResult> generateDocumentProtocolAsync(String boxId, String messageId, String documentId) {
+            if (requests++ >= pendingRequests)
+                return CompletableFuture.completedFuture(new DocumentProtocolResult(DocumentProtocol.getDefaultInstance()));
+            var response = new CompletableFuture<DocumentProtocolResult>();
+            pending.add(response);
+            return response;
+        }
+    }
+}
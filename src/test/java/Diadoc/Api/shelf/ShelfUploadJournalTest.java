@@ -0,0 +1,92 @@
+package Diadoc.Api.shelf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ShelfUploadJournalTest {
+    private Path directory;
+    private Path journalPath;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("shelf-journal-test");
+        journalPath = directory.resolve("upload.journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(journalPath);
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void resumesJournalOfSameContent() throws IOException {
+        var journal = ShelfUploadJournal.open(journalPath, 100, "fingerprint", "first");
+        journal.plan(new ShelfPart(0, 0, 60));
+        journal.plan(new ShelfPart(1, 60, 40));
+        journal.acknowledge(List.of(0));
+
+        var resumed = ShelfUploadJournal.open(journalPath, 100, "fingerprint", "second");
+        assertEquals("first", resumed.getNameOnShelf());
+        assertEquals(2, resumed.getParts().size());
+        assertEquals(40, resumed.getParts().get(1).getLength());
+        assertEquals(Set.of(0), resumed.getAcknowledgedParts());
+    }
+
+    @Test
+    public void startsFreshJournalForOtherContentOfSameLength() throws IOException {
+        var journal = ShelfUploadJournal.open(journalPath, 100, "fingerprint", "first");
+        journal.plan(new ShelfPart(0, 0, 100));
+        journal.acknowledge(List.of(0));
+
+        var fresh = ShelfUploadJournal.open(journalPath, 100, "other fingerprint", "second");
+        assertEquals("second", fresh.getNameOnShelf());
+        assertTrue(fresh.getParts().isEmpty());
+        assertTrue(fresh.getAcknowledgedParts().isEmpty());
+    }
+
+    @Test
+    public void startsFreshJournalForJournalWithoutFingerprint() throws IOException {
+        Files.write(journalPath, "{\"nameOnShelf\":\"old\",\"length\":100,\"parts\":[],\"acknowledgedParts\":[]}".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("new", ShelfUploadJournal.open(journalPath, 100, "fingerprint", "new").getNameOnShelf());
+    }
+
+    @Test
+    public void startsFreshJournalForCorruptedFile() throws IOException {
+        Files.write(journalPath, "{\"nameOnShelf\":".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("new", ShelfUploadJournal.open(journalPath, 100, "fingerprint", "new").getNameOnShelf());
+    }
+
+    @Test
+    public void forgetsMissingParts() throws IOException {
+        var journal = ShelfUploadJournal.open(journalPath, 100, "fingerprint", "first");
+        journal.acknowledge(List.of(0, 1, 2));
+        journal.forget(List.of(1));
+
+        assertEquals(Set.of(0, 2), ShelfUploadJournal.open(journalPath, 100, "fingerprint", "second").getAcknowledgedParts());
+    }
+
+    @Test
+    public void fingerprintDependsOnWholeContent() throws IOException {
+        var data = new byte[ShelfPartSource.FINGERPRINT_CHUNK_LENGTH * 2 + 10];
+        var fingerprint = new ByteArrayPartSource(data).getFingerprint();
+        assertEquals(fingerprint, new ByteArrayPartSource(data.clone()).getFingerprint());
+
+        var changed = Arrays.copyOf(data, data.length);
+        changed[changed.length - 1] = 1;
+        assertNotEquals(fingerprint, new ByteArrayPartSource(changed).getFingerprint());
+    }
+}